@@ -0,0 +1,79 @@
+package benchmark;
+
+import data.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import service.IUserService;
+import service.UserService;
+import spring.AppConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Checks a batch of usernames against a User source with 1ms of simulated latency, blocking on a pool of platform
+ * threads against chaining the asynchronous lookups.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AsyncCheckBenchmark {
+    private static final int BATCH_SIZE = 200;
+    private static final int POOL_SIZE = 8;
+
+    private AnnotationConfigApplicationContext ctx;
+    private ExecutorService pool;
+    private IUserService userService;
+    private List<String> usernames;
+
+    @Setup
+    public void setup() {
+        Fixtures.discardStdout();
+        // every check has to go all the way down
+        System.setProperty("resultCacheSize", "0");
+        System.setProperty("userProviderLatencyMicros", "1000");
+        System.setProperty("userFilterFalsePositiveRate", "0");
+        ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        pool = Executors.newFixedThreadPool(POOL_SIZE);
+        ctx.getBean(UserService.class).setBatchExecutor(pool, POOL_SIZE);
+        userService = ctx.getBean(IUserService.class);
+        usernames = new ArrayList<>(Fixtures.usernames(BATCH_SIZE));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<Result> blockingPool() {
+        return userService.checkUsernames(usernames);
+    }
+
+    @Benchmark
+    public List<Result> async() {
+        final List<CompletableFuture<Result>> futures =
+                usernames.stream().map(userService::checkUsernameAsync).collect(Collectors.toList());
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import data.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import service.IUserService;
+import spring.AppConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of the batch check against checking usernames one at a time, for an import holding repeated usernames.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchCheckBenchmark {
+    private static final int BATCH_SIZE = 10000;
+
+    private AnnotationConfigApplicationContext ctx;
+    private IUserService userService;
+    private List<String> usernames;
+
+    @Setup
+    public void setup() {
+        Fixtures.discardStdout();
+        // every check has to go all the way down
+        System.setProperty("resultCacheSize", "0");
+        ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        userService = ctx.getBean(IUserService.class);
+
+        // a tenth of the batch is repeated, some taken and restricted usernames mixed in
+        final List<String> distinct = new ArrayList<>(Fixtures.usernames(BATCH_SIZE * 9 / 10));
+        distinct.add("cannabis_lover");
+        final Random random = new Random(7);
+        usernames = new ArrayList<>(distinct);
+        while (usernames.size() < BATCH_SIZE) {
+            usernames.add(distinct.get(random.nextInt(distinct.size())));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Result> oneAtATime() {
+        return usernames.stream().map(userService::checkUsername).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Result> batch() {
+        return userService.checkUsernames(usernames);
+    }
+}
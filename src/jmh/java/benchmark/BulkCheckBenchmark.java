@@ -0,0 +1,119 @@
+package benchmark;
+
+import data.IUserProvider;
+import data.IUsernameReservations;
+import data.Outcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import service.BulkUsernameChecker;
+import spring.AppConfig;
+import validation.IUserValidator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks a CSV file of usernames, a tenth of them taken, into a results file: the pipelined bulk checker against
+ * reading it a String per line and checking each in turn. Run with "-prof gc" for the allocation per file, which
+ * only grows with the file size for the line by line check.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class BulkCheckBenchmark {
+    private static final int DISTINCT_USERNAMES = 100000;
+
+    @Param({"1000000", "4000000"})
+    private int rows;
+
+    private AnnotationConfigApplicationContext ctx;
+    private BulkUsernameChecker bulkUsernameChecker;
+    private IUserValidator userValidator;
+    private IUserProvider userProvider;
+    private IUsernameReservations reservations;
+    private Path input;
+    private Path output;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.discardStdout();
+        final List<String> usernames = new ArrayList<>(Fixtures.usernames(DISTINCT_USERNAMES));
+        System.setProperty("existentUsers", String.join(",", usernames.subList(0, DISTINCT_USERNAMES / 10)));
+        ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        bulkUsernameChecker = ctx.getBean(BulkUsernameChecker.class);
+        userValidator = ctx.getBean(IUserValidator.class);
+        userProvider = ctx.getBean(IUserProvider.class);
+        reservations = ctx.getBean(IUsernameReservations.class);
+
+        input = Files.createTempFile("usernames", ".csv");
+        output = Files.createTempFile("results", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write(usernames.get(i % DISTINCT_USERNAMES));
+                writer.write(",signup-");
+                writer.write(Integer.toString(i));
+                writer.write('\n');
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ctx.close();
+        System.clearProperty("existentUsers");
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public long pipelined() throws IOException {
+        return bulkUsernameChecker.check(input, output).getTotal();
+    }
+
+    @Benchmark
+    public long lineByLine() throws IOException {
+        long total = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String username = line.split(",", 2)[0].trim();
+                final Outcome outcome;
+                if (!userValidator.isValid(username)) {
+                    outcome = Outcome.INVALID;
+                } else if (userProvider.exists(username) || reservations.isReserved(username)) {
+                    outcome = Outcome.TAKEN;
+                } else if (userValidator.isRestricted(username)) {
+                    outcome = Outcome.RESTRICTED;
+                } else {
+                    outcome = Outcome.AVAILABLE;
+                }
+                writer.write(username + "," + outcome + "\n");
+                total++;
+            }
+        }
+        return total;
+    }
+}
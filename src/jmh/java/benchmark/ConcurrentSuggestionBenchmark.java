@@ -0,0 +1,110 @@
+package benchmark;
+
+import data.CompactUserProvider;
+import data.IUserProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import service.IRandomSource;
+import service.UsernameGenerator;
+import validation.IUserValidator;
+import validation.UserValidator;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random suggestion generation throughput with every thread generating at once, decorations drawn from a single shared
+ * java.util.Random (as the decorators used to) against the per thread sources.
+ * Runs on all the cores by default, pass -t 1,2,4... to see how throughput scales with the number of threads.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ConcurrentSuggestionBenchmark {
+    @Param({"shared", "threadLocal", "seeded"})
+    private String random;
+
+    private AnnotationConfigApplicationContext ctx;
+    private UsernameGenerator usernameGenerator;
+
+    @Setup
+    public void setup() {
+        ctx = new AnnotationConfigApplicationContext(GeneratorConfig.class);
+        usernameGenerator = ctx.getBean(UsernameGenerator.class);
+        switch (random) {
+            case "shared":
+                usernameGenerator.setRandomSource(new SharedRandomSource());
+                break;
+            case "seeded":
+                usernameGenerator.setRandomSource(IRandomSource.seeded(2017L));
+                break;
+            default:
+                usernameGenerator.setRandomSource(IRandomSource.threadLocal());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<String> generateSuggestions() {
+        return usernameGenerator.generateSuggestions("fatmike");
+    }
+
+    /**
+     * The former decorators randomness, a single seed updated with CAS by every thread.
+     */
+    static final class SharedRandomSource implements IRandomSource {
+        private final Random random = new Random();
+
+        @Override
+        public int nextInt(int bound) {
+            return random.nextInt(bound);
+        }
+
+        @Override
+        public boolean nextBoolean() {
+            return random.nextBoolean();
+        }
+    }
+
+    @Configuration
+    static class GeneratorConfig {
+        @Bean
+        public IUserValidator userValidator() {
+            return new UserValidator(6, Fixtures.restrictedWords(1000));
+        }
+
+        @Bean
+        public IUserProvider userProvider() {
+            return new CompactUserProvider(Fixtures.usernames(100000));
+        }
+
+        @Bean
+        public UsernameGenerator usernameGenerator() {
+            return new UsernameGenerator();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic data sets shared by the benchmarks.
+ * @author victor.
+ */
+final class Fixtures {
+    private static final long SEED = 2017L;
+    private static final Set<String> BASE_RESTRICTED_WORDS =
+            new HashSet<>(Arrays.asList("cannabis", "abuse", "crack", "damn", "drunk", "grass"));
+
+    private Fixtures() {
+    }
+
+    /**
+     * Builds a blocklist starting with the app.properties words and topped up with random lowercase words.
+     * @param size number of words
+     * @return set of restricted words
+     */
+    static Set<String> restrictedWords(int size) {
+        final Set<String> words = new LinkedHashSet<>(BASE_RESTRICTED_WORDS);
+        final Random random = new Random(SEED);
+        while (words.size() < size) {
+            words.add(randomWord(random, 4 + random.nextInt(6)));
+        }
+        return words;
+    }
+
+    /**
+     * Builds a set of random usernames always including the app.properties ones.
+     * @param size number of usernames
+     * @return set of usernames
+     */
+    static Set<String> usernames(int size) {
+        final Set<String> usernames = new LinkedHashSet<>(Arrays.asList("fatmike", "elhefe", "smelly", "melvin"));
+        final Random random = new Random(SEED + 1);
+        while (usernames.size() < size) {
+            usernames.add(randomWord(random, 6 + random.nextInt(8)));
+        }
+        return usernames;
+    }
+
+    /**
+     * Drops whatever the code under measurement prints, JMH reports through its own channel.
+     */
+    static void discardStdout() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    /**
+     * Splits a comma separated list, as AppConfig does with its list properties.
+     * @param list comma separated list
+     * @return list items
+     */
+    static List<String> split(String list) {
+        return Arrays.asList(list.split(","));
+    }
+
+    static String randomWord(Random random, int length) {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,184 @@
+package benchmark;
+
+import http.BufferPool;
+import http.UsernameCheckServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import service.IUserService;
+import spring.AppConfig;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local load generator for the HTTP front end: every benchmark thread is a keep-alive client connection, JMH samples
+ * the latency of each call and reports its percentiles (p50, p99...).
+ * One request at a time, 16 pipelined requests, and a batch of 14 usernames in a single request. A tenth of the
+ * usernames are taken, so their responses carry suggestions.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class HttpServerBenchmark {
+    private static final int PIPELINE_DEPTH = 16;
+    private static final int BATCH_SIZE = 14;
+
+    private AnnotationConfigApplicationContext ctx;
+    private UsernameCheckServer server;
+    private List<String> usernames;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.discardStdout();
+        // every check has to go all the way down
+        System.setProperty("resultCacheSize", "0");
+        usernames = new ArrayList<>(Fixtures.usernames(10000));
+        System.setProperty("existentUsers", String.join(",", usernames.subList(0, 1000)));
+        ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        server = new UsernameCheckServer(ctx.getBean(IUserService.class), new InetSocketAddress("localhost", 0),
+                ForkJoinPool.commonPool(), new BufferPool(64 * 1024, 256));
+        server.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+        ctx.close();
+        System.clearProperty("existentUsers");
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private Socket socket;
+        private OutputStream out;
+        private InputStream in;
+        private byte[][] checks;
+        private byte[][] pipelines;
+        private byte[][] batches;
+        private int next;
+
+        @Setup
+        public void connect(HttpServerBenchmark benchmark) throws IOException {
+            socket = new Socket("localhost", benchmark.server.getPort());
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+
+            final List<String> usernames = benchmark.usernames;
+            checks = new byte[usernames.size()][];
+            for (int i = 0; i < usernames.size(); i++) {
+                checks[i] = ascii("GET /check?username=" + usernames.get(i) + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            }
+            pipelines = new byte[usernames.size() / PIPELINE_DEPTH][];
+            for (int i = 0; i < pipelines.length; i++) {
+                final StringBuilder requests = new StringBuilder();
+                for (int j = 0; j < PIPELINE_DEPTH; j++) {
+                    requests.append("GET /check?username=").append(usernames.get(i * PIPELINE_DEPTH + j))
+                            .append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                }
+                pipelines[i] = ascii(requests.toString());
+            }
+            batches = new byte[usernames.size() / BATCH_SIZE][];
+            for (int i = 0; i < batches.length; i++) {
+                final String body = String.join("\n", usernames.subList(i * BATCH_SIZE, (i + 1) * BATCH_SIZE));
+                batches[i] = ascii("POST /check HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length()
+                        + "\r\n\r\n" + body);
+            }
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        private int send(final byte[][] requests) throws IOException {
+            final byte[] request = requests[next++ % requests.length];
+            out.write(request);
+            out.flush();
+            return request.length;
+        }
+
+        /**
+         * @return length of the response body
+         */
+        private int readResponse() throws IOException {
+            int contentLength = 0;
+            int matched = 0;
+            final StringBuilder line = new StringBuilder();
+            while (matched < 4) {
+                final int b = in.read();
+                if (b < 0) {
+                    throw new IOException("Connection closed");
+                }
+                matched = (b == '\r' || b == '\n') ? matched + 1 : 0;
+                if (b == '\n') {
+                    if (line.length() > 16 && line.substring(0, 16).equalsIgnoreCase("Content-Length: ")) {
+                        contentLength = Integer.parseInt(line.substring(16));
+                    }
+                    line.setLength(0);
+                } else if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            for (long skipped = 0; skipped < contentLength; ) {
+                final long n = in.skip(contentLength - skipped);
+                if (n <= 0) {
+                    throw new IOException("Connection closed");
+                }
+                skipped += n;
+            }
+            return contentLength;
+        }
+
+        private static byte[] ascii(final String text) {
+            return text.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Benchmark
+    public int check(Client client) throws IOException {
+        client.send(client.checks);
+        return client.readResponse();
+    }
+
+    @Benchmark
+    public int pipelined(Client client) throws IOException {
+        client.send(client.pipelines);
+        int length = 0;
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            length += client.readResponse();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int batch(Client client) throws IOException {
+        client.send(client.batches);
+        return client.readResponse();
+    }
+}
@@ -0,0 +1,97 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import validation.UserValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Restricted word checks of the candidates a suggestion generation goes through, in candidates per second: a full
+ * rescan of every candidate against the check resuming the matcher from the state reached on the initial username.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalRestrictionBenchmark {
+    private static final int CANDIDATES = 256;
+
+    @Param({"6", "20000"})
+    private int blocklistSize;
+
+    @Param({"false", "true"})
+    private boolean canonical;
+
+    @Param({"fatmike_2017"})
+    private String username;
+
+    private UserValidator userValidator;
+    private String[] candidates;
+
+    @Setup
+    public void setup() {
+        userValidator = new UserValidator(6, Fixtures.restrictedWords(blocklistSize), canonical);
+        // what the generators try: digit suffixes, '_' delimiters and the capitalized repeat
+        final String capitalized = Character.toUpperCase(username.charAt(0)) + username.substring(1);
+        final List<String> all = new ArrayList<>(CANDIDATES);
+        for (int i = 0; all.size() < CANDIDATES; i++) {
+            switch (i % 4) {
+                case 0:
+                    all.add(username + i);
+                    break;
+                case 1:
+                    all.add(username + '_' + i);
+                    break;
+                case 2:
+                    all.add(username + capitalized + i);
+                    break;
+                default:
+                    final int at = 1 + i % (username.length() - 1);
+                    all.add(username.substring(0, at) + '_' + username.substring(at) + i);
+            }
+        }
+        candidates = all.toArray(new String[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public int rescan() {
+        int restricted = 0;
+        for (String candidate : candidates) {
+            if (userValidator.isRestricted(candidate)) {
+                restricted++;
+            }
+        }
+        return restricted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public int incremental() {
+        final Predicate<CharSequence> check = userValidator.restrictionCheck(username);
+        int restricted = 0;
+        for (String candidate : candidates) {
+            if (check.test(candidate)) {
+                restricted++;
+            }
+        }
+        return restricted;
+    }
+}
@@ -0,0 +1,147 @@
+package benchmark;
+
+import data.CompactUserProvider;
+import data.IUserProvider;
+import data.LatencySimulatingUserProvider;
+import data.User;
+import data.UserProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import service.EnumeratingUsernameGenerator;
+import service.IUsernameGenerator;
+import validation.IUserValidator;
+import validation.UserValidator;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Ranked suggestion generation for a taken username whose number suffix variants are mostly taken, over a compact store
+ * behind a simulated remote latency: candidates looked up batch after batch against answered out of a single prefix
+ * query. Setup prints the heap cost of the prefix index, which is the compact store itself, against the HashSet<User>
+ * store.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PrefixSuggestionBenchmark {
+    private static final int STORE_SIZE = 1000000;
+
+    @Param({"false", "true"})
+    private boolean prefixIndex;
+
+    @Param({"0", "500"})
+    private long latencyMicros;
+
+    private AnnotationConfigApplicationContext ctx;
+    private IUsernameGenerator usernameGenerator;
+
+    @Setup
+    public void setup() {
+        GeneratorConfig.latencyMicros = latencyMicros;
+        ctx = new AnnotationConfigApplicationContext(GeneratorConfig.class);
+        final CompactUserProvider store = ctx.getBean(CompactUserProvider.class);
+        System.out.printf("%nPrefix index (CompactUserProvider): %.1f bytes per entry, HashSet<User>: %.1f bytes per "
+                + "entry%n", store.bytesPerEntry(), hashSetBytesPerEntry(ctx.getBean("usernames", Set.class)));
+        Fixtures.discardStdout();
+
+        final EnumeratingUsernameGenerator generator = ctx.getBean(EnumeratingUsernameGenerator.class);
+        // through the latency, prefix queries are round trips as well
+        generator.setPrefixQueries(prefixIndex);
+        usernameGenerator = generator;
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<String> generateSuggestions() {
+        return usernameGenerator.generateSuggestions("fatmike");
+    }
+
+    /**
+     * Heap taken by a UserProvider over copies of the usernames (its Strings included), measured as the used heap
+     * growth.
+     */
+    private static double hashSetBytesPerEntry(final Set<?> usernames) {
+        final long before = usedHeap();
+        final IUserProvider userProvider = new UserProvider(usernames.stream()
+                .map(username -> new User(new String(username.toString().toCharArray())))
+                .collect(Collectors.toSet()));
+        final long after = usedHeap();
+        Reference.reachabilityFence(userProvider);
+        return (double) (after - before) / usernames.size();
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Configuration
+    static class GeneratorConfig {
+        private static long latencyMicros;
+
+        @Bean
+        public IUserValidator userValidator() {
+            return new UserValidator(6, Fixtures.restrictedWords(1000));
+        }
+
+        @Bean
+        public Set<String> usernames() {
+            final Set<String> usernames = Fixtures.usernames(STORE_SIZE);
+            // most of the number suffix variants are taken already
+            for (int i = 1; i <= 8; i++) {
+                usernames.add("fatmike" + i);
+                usernames.add("fatmike_" + i);
+            }
+            usernames.add("fatmikeFatmike");
+            return usernames;
+        }
+
+        @Bean
+        public CompactUserProvider compactUserProvider() {
+            return new CompactUserProvider(usernames());
+        }
+
+        @Bean
+        @Primary
+        public IUserProvider userProvider() {
+            return latencyMicros > 0
+                    ? new LatencySimulatingUserProvider(compactUserProvider(), latencyMicros)
+                    : compactUserProvider();
+        }
+
+        @Bean
+        public EnumeratingUsernameGenerator enumeratingUsernameGenerator() {
+            return new EnumeratingUsernameGenerator();
+        }
+    }
+}
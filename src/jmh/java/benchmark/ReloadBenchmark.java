@@ -0,0 +1,120 @@
+package benchmark;
+
+import metrics.ITimer;
+import metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import data.Result;
+import service.DataReloader;
+import service.IUserService;
+import spring.AppConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Check latency while the blocklist and the users are reloaded over and over in the background, against no reload at
+ * all: the replacement data is built aside, the checks only ever see the swap. The reload durations are printed to
+ * stderr on tear down.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ReloadBenchmark {
+    @Param({"200000"})
+    private int storeSize;
+
+    @Param({"20000"})
+    private int blocklistSize;
+
+    // pause between two reloads in the background, 0 never reloads
+    @Param({"0", "100"})
+    private long reloadPauseMillis;
+
+    private Path restrictedWordsFile;
+    private Path existentUsersFile;
+    private AnnotationConfigApplicationContext ctx;
+    private IUserService userService;
+    private DataReloader dataReloader;
+    private Thread reloader;
+    private List<String> usernames;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.discardStdout();
+        usernames = new ArrayList<>(Fixtures.usernames(storeSize));
+        restrictedWordsFile = Files.createTempFile("restricted", ".txt");
+        existentUsersFile = Files.createTempFile("users", ".txt");
+        Files.write(restrictedWordsFile, Fixtures.restrictedWords(blocklistSize), StandardCharsets.UTF_8);
+        Files.write(existentUsersFile, usernames, StandardCharsets.UTF_8);
+        // every check has to go all the way down
+        System.setProperty("resultCacheSize", "0");
+        System.setProperty("userStore", "compact");
+        System.setProperty("restrictedWordsFile", restrictedWordsFile.toString());
+        System.setProperty("existentUsersFile", existentUsersFile.toString());
+        ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        userService = ctx.getBean(IUserService.class);
+        dataReloader = ctx.getBean(DataReloader.class);
+        dataReloader.setMetricsRegistry(ctx.getBean(MetricsRegistry.class));
+
+        if (reloadPauseMillis > 0) {
+            reloader = new Thread(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        dataReloader.reload(restrictedWordsFile);
+                        dataReloader.reload(existentUsersFile);
+                        TimeUnit.MILLISECONDS.sleep(reloadPauseMillis);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } catch (InterruptedException e) {
+                    // done
+                }
+            }, "benchmark-reloader");
+            reloader.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        if (reloader != null) {
+            reloader.interrupt();
+            reloader.join();
+            final ITimer reloads = ctx.getBean(MetricsRegistry.class).timer("reload.duration");
+            System.err.printf("%d reloads, mean %.1fms, max %.1fms%n", reloads.getCount(),
+                    reloads.getTotalNanos() / 1e6 / reloads.getCount(), reloads.getMaxNanos() / 1e6);
+        }
+        ctx.close();
+        Files.deleteIfExists(restrictedWordsFile);
+        Files.deleteIfExists(existentUsersFile);
+        System.clearProperty("userStore");
+        System.clearProperty("restrictedWordsFile");
+        System.clearProperty("existentUsersFile");
+    }
+
+    @Benchmark
+    public Result checkUsername() {
+        return userService.checkUsername(usernames.get(next++ % usernames.size()));
+    }
+}
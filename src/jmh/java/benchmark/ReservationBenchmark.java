@@ -0,0 +1,59 @@
+package benchmark;
+
+import data.CompactUserProvider;
+import data.Reservation;
+import data.UsernameReservations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserve and release throughput with every thread signing up at once, over a few hot usernames (heavy conflicts) or
+ * many (barely any). Runs on all the cores by default, pass -t to change it.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ReservationBenchmark {
+    @Param({"16", "100000"})
+    private int wantedUsernames;
+
+    private UsernameReservations reservations;
+    private List<String> usernames;
+
+    @Setup
+    public void setup() {
+        reservations = new UsernameReservations(new CompactUserProvider(Fixtures.usernames(100000)));
+        usernames = new ArrayList<>();
+        for (int i = 0; i < wantedUsernames; i++) {
+            usernames.add("signup" + i);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease() {
+        final String username = usernames.get(ThreadLocalRandom.current().nextInt(usernames.size()));
+        final Optional<Reservation> reservation = reservations.reserve(username, 1, TimeUnit.MINUTES);
+        return reservation.isPresent() && reservations.release(reservation.get());
+    }
+}
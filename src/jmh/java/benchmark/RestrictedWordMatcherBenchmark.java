@@ -0,0 +1,70 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import validation.RestrictedWordMatcher;
+import validation.UserValidator;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Aho-Corasick matcher against the former stream + String.contains() restricted word lookup, plus the
+ * UserValidator entry point wrapping the matcher, matching exact spellings or canonical forms.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestrictedWordMatcherBenchmark {
+    @Param({"6", "1000", "20000"})
+    private int blocklistSize;
+
+    @Param({"fatmike_2017"})
+    private String username;
+
+    private Set<String> restrictedWords;
+    private RestrictedWordMatcher matcher;
+    private UserValidator userValidator;
+    private UserValidator canonicalUserValidator;
+
+    @Setup
+    public void setup() {
+        restrictedWords = Fixtures.restrictedWords(blocklistSize);
+        matcher = new RestrictedWordMatcher(restrictedWords);
+        userValidator = new UserValidator(6, restrictedWords);
+        canonicalUserValidator = new UserValidator(6, restrictedWords, true);
+    }
+
+    @Benchmark
+    public boolean stream() {
+        return restrictedWords.stream().anyMatch(s -> username.contains(s));
+    }
+
+    @Benchmark
+    public boolean automaton() {
+        return matcher.matches(username);
+    }
+
+    @Benchmark
+    public boolean isRestricted() {
+        return userValidator.isRestricted(username);
+    }
+
+    @Benchmark
+    public boolean isRestrictedCanonical() {
+        return canonicalUserValidator.isRestricted(username);
+    }
+}
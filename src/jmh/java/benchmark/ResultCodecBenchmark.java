@@ -0,0 +1,104 @@
+package benchmark;
+
+import data.Result;
+import data.ResultCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import service.IUserService;
+import spring.AppConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ships a batch of check results, a tenth of them taken and so carrying suggestions: Java serialization against the
+ * binary ResultCodec, suggestions relative to the username or not. Encoded sizes are printed to stderr on setup.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultCodecBenchmark {
+    @Param({"14"})
+    private int batchSize;
+
+    @Param({"true", "false"})
+    private boolean relativeSuggestions;
+
+    private ArrayList<Result> batch;
+    private byte[] serialized;
+    private ResultCodec codec;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.discardStdout();
+        final List<String> usernames = new ArrayList<>(Fixtures.usernames(2 * batchSize));
+        System.setProperty("existentUsers", String.join(",", usernames.subList(0, batchSize)));
+        try (AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            // every tenth username taken
+            final List<String> checked = new ArrayList<>();
+            for (int i = 0; i < batchSize; i++) {
+                checked.add(usernames.get(i % 10 == 0 ? i / 10 : batchSize + i));
+            }
+            batch = new ArrayList<>(ctx.getBean(IUserService.class).checkUsernames(checked));
+        } finally {
+            System.clearProperty("existentUsers");
+        }
+
+        serialized = javaSerialize();
+        codec = new ResultCodec(relativeSuggestions);
+        buffer = ByteBuffer.allocate(codec.encodedSize(batch));
+        codec.encode(batch, buffer);
+        System.err.printf("%d results: java serialization %d bytes, binary %d bytes%n",
+                batch.size(), serialized.length, buffer.capacity());
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(batch);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object javaDeserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer binaryEncode() {
+        buffer.clear();
+        codec.encode(batch, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public List<Result> binaryDecode() {
+        return ResultCodec.decodeAll(ByteBuffer.wrap(buffer.array()));
+    }
+}
@@ -0,0 +1,110 @@
+package benchmark;
+
+import data.CompactUserProvider;
+import data.IUserProvider;
+import data.LatencySimulatingUserProvider;
+import data.ShardedUserProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Latency of a suggestion sized batch lookup against a single remote User source and against the same usernames
+ * spread over remote shards, the batch being scattered to the shards and gathered back. Also measures the cost of
+ * routing a single lookup through the hash ring.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedUserProviderBenchmark {
+    private static final int BATCH_SIZE = 14;
+    private static final int VIRTUAL_NODES = 128;
+
+    @Param({"1", "4"})
+    private int shards;
+
+    @Param({"0", "500"})
+    private long latencyMicros;
+
+    private ExecutorService executor;
+    private IUserProvider userProvider;
+    private List<List<String>> batches;
+    private String[] lookups;
+    private int next;
+
+    @Setup
+    public void setup() {
+        final List<String> usernames = new ArrayList<>(Fixtures.usernames(100000));
+        executor = Executors.newCachedThreadPool();
+        if (shards == 1) {
+            userProvider = remote(usernames);
+        } else {
+            final List<String> shardIds = IntStream.range(0, shards)
+                    .mapToObj(shard -> "shard-" + shard)
+                    .collect(Collectors.toList());
+            final Map<String, IUserProvider> parts = new LinkedHashMap<>();
+            ShardedUserProvider.partition(usernames, shardIds, VIRTUAL_NODES)
+                    .forEach((shardId, part) -> parts.put(shardId, remote(part)));
+            userProvider = new ShardedUserProvider(parts, VIRTUAL_NODES, executor);
+        }
+
+        // half taken, half free usernames per batch
+        final Random random = new Random(11);
+        batches = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            final List<String> batch = new ArrayList<>(BATCH_SIZE);
+            while (batch.size() < BATCH_SIZE) {
+                batch.add(batch.size() % 2 == 0
+                        ? usernames.get(random.nextInt(usernames.size()))
+                        : Fixtures.randomWord(random, 15));
+            }
+            batches.add(batch);
+        }
+        lookups = batches.stream().flatMap(List::stream).toArray(String[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public Set<String> findTaken() {
+        return userProvider.findTaken(batches.get(next++ & 255));
+    }
+
+    @Benchmark
+    public boolean exists() {
+        return userProvider.exists(lookups[next++ % lookups.length]);
+    }
+
+    private IUserProvider remote(final List<String> usernames) {
+        final IUserProvider userProvider = new CompactUserProvider(usernames);
+        return latencyMicros > 0 ? new LatencySimulatingUserProvider(userProvider, latencyMicros) : userProvider;
+    }
+}
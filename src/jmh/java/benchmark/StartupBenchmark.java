@@ -0,0 +1,90 @@
+package benchmark;
+
+import data.Result;
+import data.UserIndexWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import service.IUserService;
+import spring.AppConfig;
+import spring.FastStart;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first result of a fresh JVM, as the command line gets it: context up and one username checked. Every
+ * measurement runs in a JVM of its own, with nothing loaded nor compiled yet. The annotation driven context over
+ * AppConfig against FastStart, with the app.properties users, a million users read from a file, or a snapshot of
+ * them (an index file written offline, mapped by the "mapped" store).
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+    @Param({"standard", "fast"})
+    private String startupMode;
+
+    @Param({"properties", "file", "snapshot"})
+    private String users;
+
+    @Param({"1000000"})
+    private int storeSize;
+
+    private Path usersFile;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.discardStdout();
+        if ("file".equals(users)) {
+            usersFile = Files.createTempFile("users", ".txt");
+            Files.write(usersFile, Fixtures.usernames(storeSize), StandardCharsets.UTF_8);
+            System.setProperty("existentUsersFile", usersFile.toString());
+        } else if ("snapshot".equals(users)) {
+            usersFile = Files.createTempFile("users", ".idx");
+            UserIndexWriter.write(new ArrayList<>(Fixtures.usernames(storeSize)), usersFile);
+            System.setProperty("userStore", "mapped");
+            System.setProperty("userIndexFile", usersFile.toString());
+        }
+        // what Fixtures left behind is not startup work
+        System.gc();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (usersFile != null) {
+            Files.deleteIfExists(usersFile);
+        }
+        System.clearProperty("existentUsersFile");
+        System.clearProperty("userStore");
+        System.clearProperty("userIndexFile");
+    }
+
+    @Benchmark
+    public Result firstResult() throws IOException {
+        try (GenericApplicationContext ctx = "fast".equals(startupMode)
+                ? FastStart.context()
+                : new AnnotationConfigApplicationContext(AppConfig.class)) {
+            return ctx.getBean(IUserService.class).checkUsername("fatmike");
+        }
+    }
+}
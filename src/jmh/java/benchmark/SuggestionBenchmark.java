@@ -0,0 +1,154 @@
+package benchmark;
+
+import data.CompactUserProvider;
+import data.IUserProvider;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import service.EnumeratingUsernameGenerator;
+import service.IUsernameGenerator;
+import service.UsernameGenerator;
+import validation.IUserValidator;
+import validation.UserValidator;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suggestion generation for a taken username whose most obvious variants are taken as well, random decoration against
+ * the ranked enumeration. Besides the time per request it reports how many candidates were examined per accepted
+ * suggestion.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuggestionBenchmark {
+    @Param({"random", "enumerative"})
+    private String mode;
+
+    private AnnotationConfigApplicationContext ctx;
+    private IUsernameGenerator usernameGenerator;
+
+    @Setup
+    public void setup() {
+        Fixtures.discardStdout();
+        ctx = new AnnotationConfigApplicationContext(GeneratorConfig.class);
+        usernameGenerator = "enumerative".equals(mode)
+                ? ctx.getBean(EnumeratingUsernameGenerator.class)
+                : ctx.getBean(UsernameGenerator.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<String> generateSuggestions(Counters counters) {
+        final List<String> suggestions = usernameGenerator.generateSuggestions("fatmike");
+        counters.accepted += suggestions.size();
+        return suggestions;
+    }
+
+    /**
+     * Candidates examined (every distinct candidate goes through the restriction check once) and suggestions accepted,
+     * their ratio is the candidates examined per accepted suggestion.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long examined;
+        public long accepted;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            examined = 0;
+            accepted = 0;
+            CountingValidator.examined = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void collect() {
+            examined = CountingValidator.examined;
+        }
+    }
+
+    static final class CountingValidator implements IUserValidator {
+        // single benchmark thread, no need to synchronize
+        private static long examined;
+        private final IUserValidator delegate;
+
+        CountingValidator(IUserValidator delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void validateUsername(String username) {
+            delegate.validateUsername(username);
+        }
+
+        @Override
+        public boolean isRestricted(CharSequence username) {
+            examined++;
+            return delegate.isRestricted(username);
+        }
+
+        @Override
+        public IUserValidator snapshot() {
+            final IUserValidator pinned = delegate.snapshot();
+            return pinned == delegate ? this : new CountingValidator(pinned);
+        }
+    }
+
+    @Configuration
+    static class GeneratorConfig {
+        @Bean
+        public IUserValidator userValidator() {
+            return new CountingValidator(new UserValidator(6, Fixtures.restrictedWords(1000)));
+        }
+
+        @Bean
+        public IUserProvider userProvider() {
+            final Set<String> usernames = Fixtures.usernames(100000);
+            // the first variants of the name are taken already
+            for (int i = 1; i <= 5; i++) {
+                usernames.add("fatmike" + i);
+                usernames.add("fatmike_" + i);
+            }
+            usernames.add("fatmikeFatmike");
+            return new CompactUserProvider(usernames);
+        }
+
+        @Bean
+        public UsernameGenerator usernameGenerator() {
+            return new UsernameGenerator();
+        }
+
+        @Bean
+        public EnumeratingUsernameGenerator enumeratingUsernameGenerator() {
+            // every candidate looked up as the random decoration does, PrefixSuggestionBenchmark covers prefix queries
+            final EnumeratingUsernameGenerator usernameGenerator = new EnumeratingUsernameGenerator();
+            usernameGenerator.setPrefixQueries(false);
+            return usernameGenerator;
+        }
+    }
+}
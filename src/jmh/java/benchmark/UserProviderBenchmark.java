@@ -0,0 +1,102 @@
+package benchmark;
+
+import data.CanonicalUserProvider;
+import data.CompactUserProvider;
+import data.IUserProvider;
+import data.MappedUserProvider;
+import data.User;
+import data.UserIndexWriter;
+import data.UserProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import validation.UsernameCanonicalizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Lookup cost of the User sources across store sizes, for a taken and an available username.
+ * The canonical lookup covers every spelling of the username at once, over a compact store of canonical forms.
+ * The compact store prints its footprint per entry on setup, the mapped one reads an index file written on setup.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserProviderBenchmark {
+    @Param({"1000", "1000000"})
+    private int storeSize;
+
+    @Param({"fatmike", "myUsername"})
+    private String username;
+
+    private IUserProvider userProvider;
+    private CompactUserProvider compactUserProvider;
+    private MappedUserProvider mappedUserProvider;
+    private IUserProvider canonicalUserProvider;
+    private Path indexFile;
+
+    @Setup
+    public void setup() throws IOException {
+        final Set<String> usernames = Fixtures.usernames(storeSize);
+        userProvider = new UserProvider(usernames.stream().map(User::new).collect(Collectors.toSet()));
+        compactUserProvider = new CompactUserProvider(usernames);
+        System.out.printf("%nCompactUserProvider: %d entries, %.1f bytes per entry%n",
+                compactUserProvider.size(), compactUserProvider.bytesPerEntry());
+        indexFile = Files.createTempFile("users", ".idx");
+        UserIndexWriter.write(usernames, indexFile);
+        mappedUserProvider = new MappedUserProvider(indexFile);
+        canonicalUserProvider = new CanonicalUserProvider(
+                new CompactUserProvider(usernames.stream()
+                        .map(UsernameCanonicalizer::canonicalize)
+                        .collect(Collectors.toList())),
+                UsernameCanonicalizer::canonicalize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(indexFile);
+    }
+
+    @Benchmark
+    public boolean hashSetGet() {
+        return userProvider.get(username).isPresent();
+    }
+
+    @Benchmark
+    public boolean compactGet() {
+        return compactUserProvider.get(username).isPresent();
+    }
+
+    @Benchmark
+    public boolean compactExists() {
+        return compactUserProvider.exists(username);
+    }
+
+    @Benchmark
+    public boolean mappedExists() {
+        return mappedUserProvider.exists(username);
+    }
+
+    @Benchmark
+    public boolean canonicalExists() {
+        return canonicalUserProvider.exists(username);
+    }
+}
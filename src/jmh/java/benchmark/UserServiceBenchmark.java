@@ -0,0 +1,69 @@
+package benchmark;
+
+import data.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import service.IUserService;
+import spring.AppConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of a single username check, wired as the application does, for each outcome: an available username,
+ * a taken one (which also generates the suggestions) and one holding a restricted word.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+    @Param({"available", "taken", "restricted"})
+    private String outcome;
+
+    private AnnotationConfigApplicationContext ctx;
+    private IUserService userService;
+    private String username;
+
+    @Setup
+    public void setup() {
+        Fixtures.discardStdout();
+        // every check has to go all the way down
+        System.setProperty("resultCacheSize", "0");
+        ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        userService = ctx.getBean(IUserService.class);
+        switch (outcome) {
+            case "taken":
+                username = "fatmike";
+                break;
+            case "restricted":
+                username = "cannabis_lover";
+                break;
+            default:
+                username = "myUsername";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public Result checkUsername() {
+        return userService.checkUsername(username);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import data.CompactUserProvider;
+import data.IUserProvider;
+import data.MappedUserProvider;
+import data.User;
+import data.UserIndexWriter;
+import data.UserProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Time from nothing to a store answering its first lookup: building the in-memory stores out of the username list
+ * (which AppConfig first has to parse from existentUsers) against mapping an index file written offline.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserStoreStartupBenchmark {
+    @Param({"1000000"})
+    private int storeSize;
+
+    private String existentUsers;
+    private Path indexFile;
+
+    @Setup
+    public void setup() throws IOException {
+        final List<String> usernames = Fixtures.usernames(storeSize).stream().collect(Collectors.toList());
+        existentUsers = String.join(",", usernames);
+        indexFile = Files.createTempFile("users", ".idx");
+        UserIndexWriter.write(usernames, indexFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(indexFile);
+    }
+
+    @Benchmark
+    public boolean hashSet() {
+        final IUserProvider userProvider = new UserProvider(
+                Fixtures.split(existentUsers).stream().map(User::new).collect(Collectors.toSet()));
+        return userProvider.get("fatmike").isPresent();
+    }
+
+    @Benchmark
+    public boolean compact() {
+        return new CompactUserProvider(Fixtures.split(existentUsers)).exists("fatmike");
+    }
+
+    @Benchmark
+    public boolean mapped() throws IOException {
+        return new MappedUserProvider(indexFile).exists("fatmike");
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import data.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import service.IUserService;
+import service.UserService;
+import spring.AppConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks a batch of usernames, a tenth of them taken, against a User source with 1ms of simulated latency: blocking
+ * lookups on pools of platform threads against the virtual thread per check mode, whose suggestions generation also
+ * fans its candidate lookups out on virtual threads.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class VirtualThreadCheckBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    // platform pool size, 0 for a virtual thread per check
+    @Param({"8", "64", "0"})
+    private int platformThreads;
+
+    private AnnotationConfigApplicationContext ctx;
+    private ExecutorService pool;
+    private IUserService userService;
+    private List<String> usernames;
+
+    @Setup
+    public void setup() {
+        Fixtures.discardStdout();
+        usernames = new ArrayList<>(Fixtures.usernames(BATCH_SIZE));
+        // every check has to go all the way down
+        System.setProperty("resultCacheSize", "0");
+        System.setProperty("userProviderLatencyMicros", "1000");
+        System.setProperty("userFilterFalsePositiveRate", "0");
+        System.setProperty("existentUsers", String.join(",", usernames.subList(0, BATCH_SIZE / 10)));
+        System.setProperty("executionMode", platformThreads > 0 ? "platform" : "virtual");
+        ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        if (platformThreads > 0) {
+            pool = Executors.newFixedThreadPool(platformThreads);
+            ctx.getBean(UserService.class).setBatchExecutor(pool, platformThreads);
+        }
+        userService = ctx.getBean(IUserService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        ctx.close();
+        System.clearProperty("existentUsers");
+        System.clearProperty("executionMode");
+    }
+
+    @Benchmark
+    public List<Result> checkUsernames() {
+        return userService.checkUsernames(usernames);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import data.WritableUserProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Lookups running next to a steady stream of registrations, with background compactions kicking in every few thousand
+ * registrations. Lookup latency should not move whether a compaction is running or not.
+ * @author victor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WritableUserProviderBenchmark {
+    private static final int STORE_SIZE = 100000;
+    private static final int COMPACTION_THRESHOLD = 5000;
+
+    private final AtomicLong registrations = new AtomicLong();
+    private Path dir;
+    private WritableUserProvider userProvider;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("users");
+        userProvider = new WritableUserProvider(dir, Fixtures.usernames(STORE_SIZE), COMPACTION_THRESHOLD);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        userProvider.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public boolean exists() {
+        return userProvider.exists("fatmike");
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean register() {
+        return userProvider.register("registered" + registrations.incrementAndGet());
+    }
+}
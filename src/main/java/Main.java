@@ -1,25 +1,59 @@
+import http.BufferPool;
+import http.UsernameCheckServer;
+import metrics.IMetricsRegistry;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import service.BulkUsernameChecker;
 import service.IUserService;
-import service.UserService;
 import spring.AppConfig;
+import spring.FastStart;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main entry point.
+ * Checks the usernames given as arguments, serves checks over HTTP with "--serve [port]", or checks a whole file
+ * with "--bulk input output [--header]", --header skipping the CSV header line. Running with -DstartupMode=fast
+ * wires the beans through FastStart, for the command line and batch jobs.
  * @author victor.
  */
 public class Main {
-    public static void main(String[] args) {
+    private static final int DEFAULT_PORT = 8080;
+
+    public static void main(String[] args) throws IOException {
         if (args.length == 0) {
             System.out.println("No username provided");
         }
 
-        AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
-        ctx.register(AppConfig.class);
-        ctx.refresh();
+        final GenericApplicationContext ctx;
+        if ("fast".equals(System.getProperty("startupMode"))) {
+            ctx = FastStart.context();
+        } else {
+            ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        }
+
+        IUserService userService = ctx.getBean(IUserService.class);
+        if (args.length > 0 && "--serve".equals(args[0])) {
+            final int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            final UsernameCheckServer server = new UsernameCheckServer(userService, new InetSocketAddress(port),
+                    ForkJoinPool.commonPool(), new BufferPool(64 * 1024, 256));
+            server.setMetricsRegistry(ctx.getBean(IMetricsRegistry.class));
+            server.start();
+            System.out.println("Serving username checks on port " + server.getPort());
+            return;
+        }
+        if ((args.length == 3 || args.length == 4 && "--header".equals(args[3])) && "--bulk".equals(args[0])) {
+            final BulkUsernameChecker.Summary summary = ctx.getBean(BulkUsernameChecker.class)
+                    .check(Paths.get(args[1]), Paths.get(args[2]), args.length == 4);
+            System.out.println(summary);
+            ctx.close();
+            return;
+        }
 
-        IUserService userService = ctx.getBean(UserService.class);
-        Arrays.stream(args).forEach(s -> System.out.println(userService.checkUsername(s)));
+        userService.checkUsernames(Arrays.asList(args)).forEach(System.out::println);
     }
 }
@@ -0,0 +1,42 @@
+package data;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non blocking view of a blocking User source, see IAsyncUserProvider.of().
+ * @author victor.
+ */
+class AsyncUserProviderAdapter implements IAsyncUserProvider {
+    private final IUserProvider userProvider;
+    private final Executor executor;
+
+    /**
+     * @param userProvider blocking User source
+     * @param executor executor the blocking lookups run on, null to run them on the calling thread
+     */
+    AsyncUserProviderAdapter(IUserProvider userProvider, Executor executor) {
+        if (userProvider == null) {
+            throw new IllegalArgumentException("Wrapped user provider cannot be null");
+        }
+        this.userProvider = userProvider;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getAsync(final String identifier) {
+        return executor == null
+                ? CompletableFuture.completedFuture(userProvider.get(identifier))
+                : CompletableFuture.supplyAsync(() -> userProvider.get(identifier), executor);
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> findTakenAsync(final Collection<String> identifiers) {
+        return executor == null
+                ? CompletableFuture.completedFuture(userProvider.findTaken(identifiers))
+                : CompletableFuture.supplyAsync(() -> userProvider.findTaken(identifiers), executor);
+    }
+}
@@ -0,0 +1,83 @@
+package data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter over CharSequence values.
+ * Bits can be added while other threads are querying, and neither operation allocates.
+ * @author victor.
+ */
+public class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Sizes the filter for the expected number of values and the wanted false positive rate.
+     * @param expectedInsertions expected number of values
+     * @param falsePositiveRate wanted false positive rate, between 0 and 1 (both exclusive)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+
+        final long n = Math.max(1, expectedInsertions);
+        final long m = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        final long words = (m + 63) >>> 6;
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter would be too big");
+        }
+
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * LN2));
+    }
+
+    /**
+     * Adds a value.
+     * @param value value
+     */
+    public void put(CharSequence value) {
+        final long hash = Hashing.hash64(value);
+        final long h1 = hash >>> 32;
+        final long h2 = hash & 0xFFFFFFFFL;
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            final int word = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                // retry, another bit of the same word was set concurrently
+            }
+        }
+    }
+
+    /**
+     * Tells if the value might have been added.
+     * @param value value
+     * @return false when the value was definitely never added, true when it might have been.
+     */
+    public boolean mightContain(CharSequence value) {
+        final long hash = Hashing.hash64(value);
+        final long h1 = hash >>> 32;
+        final long h2 = hash & 0xFFFFFFFFL;
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+}
@@ -0,0 +1,216 @@
+package data;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * User source decorator answering "definitely absent" from a Bloom filter, so that most of the lookups for available
+ * usernames never reach the wrapped (and possibly slow) source.
+ * Usernames registered after creation must be added through add() (or notified as registered) to keep the filter in
+ * sync. A filter cannot rule out prefixes, the prefix index is the wrapped source's one.
+ * @author victor.
+ */
+public class BloomFilterUserProvider implements IUserProvider, IAsyncUserProvider, IRegistrationListener {
+    private final IUserProvider delegate;
+    private final IAsyncUserProvider asyncDelegate;
+    private final BloomFilter filter;
+
+    private final LongAdder filterHits;
+    private final LongAdder filterMisses;
+    private final LongAdder falsePositives;
+
+    /**
+     * @param delegate wrapped User source
+     * @param usernames usernames already held by the wrapped source
+     * @param expectedInsertions expected number of usernames, including the ones registered later on
+     * @param falsePositiveRate wanted false positive rate, between 0 and 1 (both exclusive)
+     */
+    public BloomFilterUserProvider(IUserProvider delegate, Collection<String> usernames, long expectedInsertions,
+                                   double falsePositiveRate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Wrapped user provider cannot be null");
+        }
+        this.delegate = delegate;
+        this.asyncDelegate = IAsyncUserProvider.of(delegate);
+        this.filter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        if (usernames != null) {
+            usernames.forEach(filter::put);
+        }
+        this.filterHits = new LongAdder();
+        this.filterMisses = new LongAdder();
+        this.falsePositives = new LongAdder();
+    }
+
+    /**
+     * Same filter and counters over another wrapped source.
+     */
+    private BloomFilterUserProvider(BloomFilterUserProvider source, IUserProvider delegate) {
+        this.delegate = delegate;
+        this.asyncDelegate = IAsyncUserProvider.of(delegate);
+        this.filter = source.filter;
+        this.filterHits = source.filterHits;
+        this.filterMisses = source.filterMisses;
+        this.falsePositives = source.falsePositives;
+    }
+
+    /**
+     * Gets a Optional object wrapping the actual User which matches the identifier, only asking the wrapped source when
+     * the filter cannot rule the username out.
+     * @param username username
+     * @return Optional instance wrapping User object when found, otherwise empty.
+     */
+    @Override
+    public Optional<User> get(final String username) {
+        if (!mightExist(username)) {
+            return Optional.empty();
+        }
+
+        final Optional<User> userOpt = delegate.get(username);
+        if (!userOpt.isPresent()) {
+            falsePositives.increment();
+        }
+        return userOpt;
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getAsync(final String username) {
+        if (!mightExist(username)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        return asyncDelegate.getAsync(username).thenApply(userOpt -> {
+            if (!userOpt.isPresent()) {
+                falsePositives.increment();
+            }
+            return userOpt;
+        });
+    }
+
+    @Override
+    public boolean exists(final CharSequence username) {
+        if (!mightExist(username)) {
+            return false;
+        }
+
+        final boolean exists = delegate.exists(username);
+        if (!exists) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    /**
+     * Looks up the batch on the wrapped source, leaving out the usernames ruled out by the filter.
+     * @param usernames usernames
+     * @return the usernames a user exists for
+     */
+    @Override
+    public Set<String> findTaken(final Collection<String> usernames) {
+        final List<String> candidates = mightExist(usernames);
+        if (candidates.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        final Set<String> taken = delegate.findTaken(candidates);
+        falsePositives.add(candidates.size() - taken.size());
+        return taken;
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> findTakenAsync(final Collection<String> usernames) {
+        final List<String> candidates = mightExist(usernames);
+        if (candidates.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashSet<>());
+        }
+
+        return asyncDelegate.findTakenAsync(candidates).thenApply(taken -> {
+            falsePositives.add(candidates.size() - taken.size());
+            return taken;
+        });
+    }
+
+    @Override
+    public Optional<IPrefixIndex> prefixIndex() {
+        return delegate.prefixIndex();
+    }
+
+    /**
+     * @return filter over the wrapped source's snapshot, sharing this one's filter and counters
+     */
+    @Override
+    public IUserProvider snapshot() {
+        final IUserProvider pinned = delegate.snapshot();
+        return pinned == delegate ? this : new BloomFilterUserProvider(this, pinned);
+    }
+
+    /**
+     * Records a newly registered username.
+     * @param username username
+     */
+    public void add(final String username) {
+        filter.put(username);
+    }
+
+    @Override
+    public void onRegistered(final String username) {
+        add(username);
+    }
+
+    /**
+     * @return number of lookups answered by the filter alone
+     */
+    public long getFilterHits() {
+        return filterHits.sum();
+    }
+
+    /**
+     * @return number of lookups passed on to the wrapped source
+     */
+    public long getFilterMisses() {
+        return filterMisses.sum();
+    }
+
+    /**
+     * @return number of lookups passed on to the wrapped source that did not find the username
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * @return ratio of lookups answered by the filter alone, 0 when there were none
+     */
+    public double getFilterHitRate() {
+        final long hits = filterHits.sum();
+        final long total = hits + filterMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return ratio of the lookups for absent usernames that the filter failed to rule out, 0 when there were none
+     */
+    public double getObservedFalsePositiveRate() {
+        final long falsePositives = this.falsePositives.sum();
+        final long absent = falsePositives + filterHits.sum();
+        return absent == 0 ? 0 : (double) falsePositives / absent;
+    }
+
+    private List<String> mightExist(final Collection<String> usernames) {
+        return usernames.stream().filter(this::mightExist).collect(Collectors.toList());
+    }
+
+    private boolean mightExist(final CharSequence username) {
+        if (filter.mightContain(username)) {
+            filterMisses.increment();
+            return true;
+        }
+        filterHits.increment();
+        return false;
+    }
+}
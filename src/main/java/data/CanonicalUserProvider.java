@@ -0,0 +1,148 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * User source decorator looking usernames up by their canonical form, over a User source holding canonical forms only.
+ * Every spelling of a username is then found with a single lookup ("FatMike" and "fatm1ke" are taken once "fatmike"
+ * is), and the variants within a batch are looked up once. Prefix queries go by canonical form too, over a source
+ * that has a prefix index.
+ * @author victor.
+ */
+public class CanonicalUserProvider implements IUserProvider, IAsyncUserProvider {
+    private final IUserProvider delegate;
+    private final IAsyncUserProvider asyncDelegate;
+    private final Function<? super CharSequence, String> canonicalizer;
+
+    /**
+     * @param delegate User source holding the canonical forms of the usernames
+     * @param canonicalizer maps a username to its canonical form
+     */
+    public CanonicalUserProvider(IUserProvider delegate, Function<? super CharSequence, String> canonicalizer) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Wrapped User source cannot be null");
+        }
+        if (canonicalizer == null) {
+            throw new IllegalArgumentException("Canonicalizer cannot be null");
+        }
+        this.delegate = delegate;
+        this.asyncDelegate = IAsyncUserProvider.of(delegate);
+        this.canonicalizer = canonicalizer;
+    }
+
+    /**
+     * @param username username, in any spelling
+     * @return Optional instance wrapping the User holding the canonical username when found, otherwise empty.
+     */
+    @Override
+    public Optional<User> get(final String username) {
+        return delegate.get(canonicalizer.apply(username));
+    }
+
+    @Override
+    public boolean exists(final CharSequence username) {
+        return delegate.exists(canonicalizer.apply(username));
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getAsync(final String username) {
+        return asyncDelegate.getAsync(canonicalizer.apply(username));
+    }
+
+    /**
+     * @param usernames usernames, in any spelling
+     * @return the given usernames whose canonical form a user exists for
+     */
+    @Override
+    public Set<String> findTaken(final Collection<String> usernames) {
+        final Map<String, List<String>> variants = variants(usernames);
+        return taken(variants, delegate.findTaken(variants.keySet()));
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> findTakenAsync(final Collection<String> usernames) {
+        final Map<String, List<String>> variants = variants(usernames);
+        return asyncDelegate.findTakenAsync(variants.keySet()).thenApply(taken -> taken(variants, taken));
+    }
+
+    /**
+     * @return the wrapped source's prefix index, queried and listing usernames by canonical form
+     */
+    @Override
+    public Optional<IPrefixIndex> prefixIndex() {
+        return delegate.prefixIndex().map(CanonicalPrefixIndex::new);
+    }
+
+    @Override
+    public IUserProvider snapshot() {
+        final IUserProvider pinned = delegate.snapshot();
+        return pinned == delegate ? this : new CanonicalUserProvider(pinned, canonicalizer);
+    }
+
+    /**
+     * @return the usernames grouped by canonical form
+     */
+    private Map<String, List<String>> variants(final Collection<String> usernames) {
+        final Map<String, List<String>> variants = new LinkedHashMap<>();
+        for (String username : usernames) {
+            variants.computeIfAbsent(canonicalizer.apply(username), canonical -> new ArrayList<>(1)).add(username);
+        }
+        return variants;
+    }
+
+    private static Set<String> taken(final Map<String, List<String>> variants, final Set<String> canonicalTaken) {
+        final Set<String> taken = new HashSet<>();
+        for (String canonical : canonicalTaken) {
+            final List<String> usernames = variants.get(canonical);
+            if (usernames != null) {
+                taken.addAll(usernames);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Prefix index over the canonical forms, taking prefixes in any spelling.
+     */
+    private final class CanonicalPrefixIndex implements IPrefixIndex {
+        private final IPrefixIndex delegate;
+
+        private CanonicalPrefixIndex(IPrefixIndex delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int countWithPrefix(final CharSequence prefix) {
+            return delegate.countWithPrefix(canonicalizer.apply(prefix));
+        }
+
+        /**
+         * @param prefix prefix, in any spelling
+         * @param limit max number of usernames listed
+         * @return canonical usernames starting with the canonical prefix
+         */
+        @Override
+        public List<String> findWithPrefix(final CharSequence prefix, final int limit) {
+            return delegate.findWithPrefix(canonicalizer.apply(prefix), limit);
+        }
+
+        @Override
+        public CompletableFuture<List<String>> findWithPrefixAsync(final CharSequence prefix, final int limit) {
+            return delegate.findWithPrefixAsync(canonicalizer.apply(prefix), limit);
+        }
+
+        @Override
+        public String indexedForm(final CharSequence username) {
+            return canonicalizer.apply(username);
+        }
+    }
+}
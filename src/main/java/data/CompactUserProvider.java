@@ -0,0 +1,260 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Memory compact User source meant for very big username sets.
+ * Usernames are kept UTF-8 encoded, sorted and packed one after the other in byte pages (each entry prefixed by its
+ * varint length), plus a single long offset per entry and an open addressing table of entry numbers keyed by the
+ * username hash. There is no per-username object at all, and existence checks hash the looked up text and compare it
+ * against the encoded bytes, without allocating. Entries stay sorted so that they can be walked in order, which also
+ * makes the store a prefix index at no extra memory cost: the usernames under a prefix are a contiguous range found
+ * with two binary searches.
+ * @author victor.
+ */
+public class CompactUserProvider implements IUserProvider, IPrefixIndex {
+    // Pages are capped so that a single array never gets near the max array size, entries never straddle pages.
+    private static final int PAGE_BITS = 26;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final long POS_MASK = PAGE_SIZE - 1;
+    // Rough header sizes of the page arrays and of this very object, for the footprint estimate.
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int OBJECT_OVERHEAD = 32;
+
+    private final byte[][] pages;
+    private final long[] offsets;
+    // entry number + 1 for each used slot, 0 for empty ones
+    private final int[] table;
+
+    /**
+     * Builds the store, sorting and removing duplicates from the provided usernames.
+     * @param usernames usernames to hold, null entries are ignored
+     */
+    public CompactUserProvider(Collection<String> usernames) {
+        final String[] sorted = usernames != null
+                ? usernames.stream().filter(Objects::nonNull).toArray(String[]::new)
+                : new String[0];
+        Arrays.parallelSort(sorted, Utf8::compare);
+
+        // first pass drops duplicates and sizes the arena so pages are allocated just as big as needed
+        final List<String> distinct = new ArrayList<>(sorted.length);
+        long remaining = 0;
+        for (String username : sorted) {
+            if (!distinct.isEmpty() && distinct.get(distinct.size() - 1).equals(username)) {
+                continue;
+            }
+            distinct.add(username);
+            final int length = Utf8.encodedLength(username);
+            remaining += Varint.size(length) + length;
+        }
+
+        final List<byte[]> pageList = new ArrayList<>();
+        final long[] entryOffsets = new long[distinct.size()];
+        byte[] page = new byte[0];
+        int pos = 0;
+        for (int i = 0; i < entryOffsets.length; i++) {
+            final String username = distinct.get(i);
+            final int length = Utf8.encodedLength(username);
+            final int entrySize = Varint.size(length) + length;
+            if (pos + entrySize > page.length) {
+                if (pos > 0) {
+                    pageList.add(pos == page.length ? page : trim(page, pos));
+                }
+                page = new byte[(int) Math.max(entrySize, Math.min(PAGE_SIZE, remaining))];
+                pos = 0;
+            }
+
+            entryOffsets[i] = ((long) pageList.size() << PAGE_BITS) | pos;
+            pos = Varint.write(length, page, pos);
+            pos = Utf8.encode(username, page, pos);
+            remaining -= entrySize;
+        }
+        if (pos > 0) {
+            pageList.add(pos == page.length ? page : trim(page, pos));
+        }
+
+        this.pages = pageList.toArray(new byte[pageList.size()][]);
+        this.offsets = entryOffsets;
+
+        this.table = new int[tableCapacity(entryOffsets.length)];
+        final int mask = table.length - 1;
+        for (int i = 0; i < entryOffsets.length; i++) {
+            int slot = hash(distinct.get(i)) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Gets a Optional object wrapping the actual User which matches the identifier
+     * @param username username
+     * @return Optional instance wrapping User object when found, otherwise empty.
+     */
+    @Override
+    public Optional<User> get(final String username) {
+        return exists(username) ? Optional.of(new User(username)) : Optional.empty();
+    }
+
+    /**
+     * Checks if the username is held, without allocating.
+     * @param username username
+     * @return true if found, otherwise false
+     */
+    @Override
+    public boolean exists(final CharSequence username) {
+        final int mask = table.length - 1;
+        int slot = hash(username) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (compareTo(username, entry - 1) == 0) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return this store, whose entries are sorted
+     */
+    @Override
+    public Optional<IPrefixIndex> prefixIndex() {
+        return Optional.of(this);
+    }
+
+    /**
+     * Counts the usernames under the prefix without walking them.
+     * @param prefix prefix
+     * @return number of held usernames starting with the prefix
+     */
+    @Override
+    public int countWithPrefix(final CharSequence prefix) {
+        final int from = lowerBound(prefix);
+        // entries from there on start with the prefix up to the first one that does not
+        int lo = from;
+        int hi = offsets.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (startsWith(mid, prefix)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - from;
+    }
+
+    @Override
+    public List<String> findWithPrefix(final CharSequence prefix, final int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        final List<String> usernames = new ArrayList<>(Math.min(limit, 16));
+        for (int entry = lowerBound(prefix); entry < offsets.length && usernames.size() < limit
+                && startsWith(entry, prefix); entry++) {
+            final long offset = offsets[entry];
+            final byte[] page = pages[(int) (offset >>> PAGE_BITS)];
+            final int pos = (int) (offset & POS_MASK);
+            final int length = Varint.read(page, pos);
+            usernames.add(Utf8.decode(page, pos + Varint.size(length), length));
+        }
+        return usernames;
+    }
+
+    /**
+     * @return number of held usernames
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Estimates the heap used by the store.
+     * @return footprint in bytes
+     */
+    public long memoryFootprint() {
+        long bytes = OBJECT_OVERHEAD
+                + ARRAY_OVERHEAD + (long) pages.length * 8
+                + ARRAY_OVERHEAD + (long) offsets.length * 8
+                + ARRAY_OVERHEAD + (long) table.length * 4;
+        for (byte[] page : pages) {
+            bytes += ARRAY_OVERHEAD + page.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return average footprint per held username in bytes, 0 when empty
+     */
+    public double bytesPerEntry() {
+        return offsets.length == 0 ? 0 : (double) memoryFootprint() / offsets.length;
+    }
+
+    private int compareTo(CharSequence username, int entry) {
+        final long offset = offsets[entry];
+        final byte[] page = pages[(int) (offset >>> PAGE_BITS)];
+        final int pos = (int) (offset & POS_MASK);
+        final int length = Varint.read(page, pos);
+        return Utf8.compare(username, page, pos + Varint.size(length), length);
+    }
+
+    /**
+     * @return number of the first entry sorting at or after the text
+     */
+    private int lowerBound(CharSequence text) {
+        int lo = 0;
+        int hi = offsets.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (compareTo(text, mid) > 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private boolean startsWith(int entry, CharSequence prefix) {
+        final long offset = offsets[entry];
+        final byte[] page = pages[(int) (offset >>> PAGE_BITS)];
+        final int pos = (int) (offset & POS_MASK);
+        final int length = Varint.read(page, pos);
+        return Utf8.startsWith(page, pos + Varint.size(length), length, prefix);
+    }
+
+    private static int hash(CharSequence username) {
+        int h = 0;
+        for (int i = 0, len = username.length(); i < len; i++) {
+            h = 31 * h + username.charAt(i);
+        }
+        // murmur3 finalizer, linear probing needs the low bits well mixed
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableCapacity(int entries) {
+        // load factor kept at or under 2/3
+        int capacity = 2;
+        while (capacity < entries + (entries >>> 1) + 1) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static byte[] trim(byte[] array, int length) {
+        final byte[] trimmed = new byte[length];
+        System.arraycopy(array, 0, trimmed, 0, length);
+        return trimmed;
+    }
+}
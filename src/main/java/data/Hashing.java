@@ -0,0 +1,29 @@
+package data;
+
+/**
+ * Hash functions shared by the data structures of this package.
+ * @author victor.
+ */
+final class Hashing {
+    private Hashing() {
+    }
+
+    /**
+     * 64 bits hash of the chars, well spread over both halves.
+     * @param value text
+     * @return hash
+     */
+    static long hash64(CharSequence value) {
+        // FNV-1a over the chars, then the murmur3 64 bits finalizer to spread both halves
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0, len = value.length(); i < len; i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,68 @@
+package data;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Non blocking User source, for stores where a lookup means waiting on I/O.
+ * @author victor.
+ */
+public interface IAsyncUserProvider {
+    CompletableFuture<Optional<User>> getAsync(final String identifier);
+
+    /**
+     * Looks up a batch of identifiers at once.
+     * Remote sources should override it to answer the whole batch in a single round trip, by default every
+     * identifier is looked up concurrently.
+     * @param identifiers identifiers
+     * @return future completed with the identifiers a user exists for
+     */
+    default CompletableFuture<Set<String>> findTakenAsync(final Collection<String> identifiers) {
+        final List<CompletableFuture<Optional<User>>> lookups =
+                identifiers.stream().map(this::getAsync).collect(Collectors.toList());
+        return CompletableFuture
+                .allOf(lookups.toArray(new CompletableFuture[lookups.size()]))
+                .thenApply(v -> {
+                    final Set<String> taken = new HashSet<>();
+                    int i = 0;
+                    for (String identifier : identifiers) {
+                        if (lookups.get(i++).join().isPresent()) {
+                            taken.add(identifier);
+                        }
+                    }
+                    return taken;
+                });
+    }
+
+    /**
+     * Adapts a blocking User source by running its lookups on the calling thread. Only meant for in-process sources
+     * whose lookups never wait.
+     * @param userProvider blocking User source
+     * @return non blocking view of the User source
+     */
+    static IAsyncUserProvider of(final IUserProvider userProvider) {
+        if (userProvider instanceof IAsyncUserProvider) {
+            return (IAsyncUserProvider) userProvider;
+        }
+        return new AsyncUserProviderAdapter(userProvider, null);
+    }
+
+    /**
+     * Adapts a blocking User source by running its lookups on the given executor.
+     * @param userProvider blocking User source
+     * @param executor executor the blocking lookups run on
+     * @return non blocking view of the User source
+     */
+    static IAsyncUserProvider of(final IUserProvider userProvider, final Executor executor) {
+        if (userProvider instanceof IAsyncUserProvider) {
+            return (IAsyncUserProvider) userProvider;
+        }
+        return new AsyncUserProviderAdapter(userProvider, executor);
+    }
+}
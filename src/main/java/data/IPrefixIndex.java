@@ -0,0 +1,44 @@
+package data;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * User source able to answer for all the usernames under a prefix at once, with a single walk over its sorted entries.
+ * Suggestion candidates mostly extend the username they are made from, so a single prefix query tells which of them
+ * are taken.
+ * @author victor.
+ */
+public interface IPrefixIndex {
+    /**
+     * @param prefix prefix, normalized by the index the same way usernames are
+     * @return number of held usernames starting with the prefix
+     */
+    int countWithPrefix(CharSequence prefix);
+
+    /**
+     * @param prefix prefix, normalized by the index the same way usernames are
+     * @param limit max number of usernames listed
+     * @return held usernames starting with the prefix in code point order, at most limit of them, in indexed form
+     */
+    List<String> findWithPrefix(CharSequence prefix, int limit);
+
+    /**
+     * Non blocking counterpart of findWithPrefix(), answered on the calling thread unless overridden.
+     * @param prefix prefix, normalized by the index the same way usernames are
+     * @param limit max number of usernames listed
+     * @return future completed with the held usernames starting with the prefix, as findWithPrefix() lists them
+     */
+    default CompletableFuture<List<String>> findWithPrefixAsync(CharSequence prefix, int limit) {
+        return CompletableFuture.completedFuture(findWithPrefix(prefix, limit));
+    }
+
+    /**
+     * Form a username is held in, the one findWithPrefix() lists usernames in.
+     * @param username username
+     * @return the username itself unless the index normalizes usernames
+     */
+    default String indexedForm(CharSequence username) {
+        return username.toString();
+    }
+}
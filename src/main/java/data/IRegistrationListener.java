@@ -0,0 +1,9 @@
+package data;
+
+/**
+ * Gets told about usernames that just got taken, so that whatever assumed they were available can catch up.
+ * @author victor.
+ */
+public interface IRegistrationListener {
+    void onRegistered(String username);
+}
@@ -0,0 +1,12 @@
+package data;
+
+/**
+ * Gets told about usernames being reserved or given back, so that whatever assumed they were available, or taken, can
+ * catch up. Expiring reservations go unnoticed.
+ * @author victor.
+ */
+public interface IReservationListener {
+    void onReserved(String username);
+
+    void onReleased(String username);
+}
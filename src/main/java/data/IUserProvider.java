@@ -1,10 +1,59 @@
 package data;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * @author victor.
  */
 public interface IUserProvider {
     Optional<User> get(final String identifier);
+
+    /**
+     * Checks if a user exists for the identifier.
+     * Implementations able to look up a CharSequence directly should override it to skip the String and Optional
+     * allocations.
+     * @param identifier identifier
+     * @return true if found, otherwise false
+     */
+    default boolean exists(final CharSequence identifier) {
+        return get(identifier.toString()).isPresent();
+    }
+
+    /**
+     * Looks up a batch of identifiers at once.
+     * Remote sources should override it to answer the whole batch in a single round trip.
+     * @param identifiers identifiers
+     * @return the identifiers a user exists for
+     */
+    default Set<String> findTaken(final Collection<String> identifiers) {
+        final Set<String> taken = new HashSet<>();
+        for (String identifier : identifiers) {
+            if (exists(identifier)) {
+                taken.add(identifier);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Prefix index over the usernames this User source holds, when it can answer prefix queries.
+     * Decorators hand out their wrapped source's one, seen through whatever they change about the lookups.
+     * @return the prefix index, empty unless the source keeps its usernames sorted
+     */
+    default Optional<IPrefixIndex> prefixIndex() {
+        return Optional.empty();
+    }
+
+    /**
+     * User source answering as this one does now whatever is reloaded later, for work spanning several lookups (see
+     * service.CheckSnapshot). Reloadable sources return their current one, decorators wrap their wrapped source's
+     * snapshot.
+     * @return this source unless its data can be replaced
+     */
+    default IUserProvider snapshot() {
+        return this;
+    }
 }
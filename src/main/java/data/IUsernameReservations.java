@@ -0,0 +1,45 @@
+package data;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets a username be held for a while between being offered and being registered, so that two concurrent signups
+ * cannot claim the same one.
+ * @author victor.
+ */
+public interface IUsernameReservations {
+    /**
+     * Reserves a username that is neither taken nor reserved already.
+     * @param username username
+     * @param ttl how long the reservation lasts
+     * @param unit time unit of ttl
+     * @return the reservation, empty if the username is taken or reserved
+     */
+    Optional<Reservation> reserve(String username, long ttl, TimeUnit unit);
+
+    /**
+     * Registers the reserved username, as long as the reservation did not expire meanwhile.
+     * @param reservation reservation
+     * @return true if registered
+     */
+    boolean commit(Reservation reservation);
+
+    /**
+     * Gives the reserved username back.
+     * @param reservation reservation
+     * @return true if it was still reserved
+     */
+    boolean release(Reservation reservation);
+
+    /**
+     * @param username username
+     * @return true if somebody holds a live reservation on the username
+     */
+    boolean isReserved(CharSequence username);
+
+    /**
+     * @param listener listener told about every reservation made and given back, committed ones included
+     */
+    void addReservationListener(IReservationListener listener);
+}
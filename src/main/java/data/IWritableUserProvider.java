@@ -0,0 +1,16 @@
+package data;
+
+/**
+ * User source that usernames can be registered into while it is being looked up.
+ * @author victor.
+ */
+public interface IWritableUserProvider extends IUserProvider {
+    /**
+     * Registers a username, telling the registration listeners once it is done.
+     * @param username username
+     * @return true if registered, false if it was already taken
+     */
+    boolean register(String username);
+
+    void addRegistrationListener(IRegistrationListener listener);
+}
@@ -0,0 +1,159 @@
+package data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Simulates a remote User source by delaying every lookup on the wrapped one.
+ * Blocking lookups sleep the calling thread, asynchronous ones are scheduled on a timer so no thread waits meanwhile,
+ * and run and completed on the completion executor so that what follows them does not queue on the timer thread.
+ * @author victor.
+ */
+public class LatencySimulatingUserProvider implements IUserProvider, IAsyncUserProvider {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "user-provider-latency");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final IUserProvider delegate;
+    private final long latencyMicros;
+    private final Executor completionExecutor;
+
+    /**
+     * @param delegate wrapped User source
+     * @param latencyMicros latency added to each lookup, in microseconds
+     */
+    public LatencySimulatingUserProvider(IUserProvider delegate, long latencyMicros) {
+        this(delegate, latencyMicros, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param delegate wrapped User source
+     * @param latencyMicros latency added to each lookup, in microseconds
+     * @param completionExecutor executor the asynchronous lookups are run and completed on
+     */
+    public LatencySimulatingUserProvider(IUserProvider delegate, long latencyMicros, Executor completionExecutor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Wrapped user provider cannot be null");
+        }
+        if (completionExecutor == null) {
+            throw new IllegalArgumentException("Completion executor cannot be null");
+        }
+        this.delegate = delegate;
+        this.latencyMicros = latencyMicros;
+        this.completionExecutor = completionExecutor;
+    }
+
+    @Override
+    public Optional<User> get(final String identifier) {
+        roundTrip();
+        return delegate.get(identifier);
+    }
+
+    /**
+     * Looks up the whole batch paying the latency only once, as a remote store answering batches would.
+     * @param identifiers identifiers
+     * @return the identifiers a user exists for
+     */
+    @Override
+    public Set<String> findTaken(final Collection<String> identifiers) {
+        roundTrip();
+        return delegate.findTaken(identifiers);
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getAsync(final String identifier) {
+        return delayed(() -> delegate.get(identifier));
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> findTakenAsync(final Collection<String> identifiers) {
+        return delayed(() -> delegate.findTaken(identifiers));
+    }
+
+    /**
+     * @return the wrapped source's prefix index, paying the latency on each query as well
+     */
+    @Override
+    public Optional<IPrefixIndex> prefixIndex() {
+        return delegate.prefixIndex().map(DelayedPrefixIndex::new);
+    }
+
+    @Override
+    public IUserProvider snapshot() {
+        final IUserProvider pinned = delegate.snapshot();
+        return pinned == delegate ? this : new LatencySimulatingUserProvider(pinned, latencyMicros, completionExecutor);
+    }
+
+    private void roundTrip() {
+        try {
+            TimeUnit.MICROSECONDS.sleep(latencyMicros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting on the user provider", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> delayed(final Supplier<T> lookup) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Runnable completion = () -> {
+            try {
+                future.complete(lookup.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        };
+        TIMER.schedule(() -> {
+            try {
+                completionExecutor.execute(completion);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }, latencyMicros, TimeUnit.MICROSECONDS);
+        return future;
+    }
+
+    /**
+     * Prefix index queried through the simulated latency.
+     */
+    private final class DelayedPrefixIndex implements IPrefixIndex {
+        private final IPrefixIndex delegate;
+
+        private DelayedPrefixIndex(IPrefixIndex delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int countWithPrefix(final CharSequence prefix) {
+            roundTrip();
+            return delegate.countWithPrefix(prefix);
+        }
+
+        @Override
+        public List<String> findWithPrefix(final CharSequence prefix, final int limit) {
+            roundTrip();
+            return delegate.findWithPrefix(prefix, limit);
+        }
+
+        @Override
+        public CompletableFuture<List<String>> findWithPrefixAsync(final CharSequence prefix, final int limit) {
+            return delayed(() -> delegate.findWithPrefix(prefix, limit));
+        }
+
+        @Override
+        public String indexedForm(final CharSequence username) {
+            return delegate.indexedForm(username);
+        }
+    }
+}
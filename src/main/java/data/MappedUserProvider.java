@@ -0,0 +1,223 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * User source reading an index file built by UserIndexWriter straight from memory mapped segments.
+ * Opening it only maps the file, nothing is parsed or copied to the heap: the usernames stay in the page cache and are
+ * brought in as lookups touch them. A lookup binary searches the block table for the block the username would be in
+ * and scans that block, comparing the looked up text against the encoded bytes without allocating. Prefix queries
+ * start the same way and scan on until the entries leave the prefix.
+ * @author victor.
+ */
+public class MappedUserProvider implements IUserProvider, IPrefixIndex {
+    private final ByteBuffer[] segments;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final LongBuffer blockOffsets;
+    private final int blockSize;
+    private final long size;
+
+    /**
+     * Maps the index file, the file can be closed or even deleted afterwards.
+     * @param indexFile index file
+     * @throws IOException if the file cannot be read or is not an index file
+     */
+    public MappedUserProvider(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, UserIndexWriter.HEADER_SIZE);
+            if (header.getInt(0) != UserIndexWriter.MAGIC) {
+                throw new IOException(indexFile + " is not a username index file");
+            }
+            if (header.getInt(4) != UserIndexWriter.VERSION) {
+                throw new IOException("Unsupported username index version " + header.getInt(4));
+            }
+            this.blockSize = header.getInt(8);
+            this.segmentBits = header.getInt(12);
+            this.segmentMask = (1L << segmentBits) - 1;
+            this.size = header.getLong(16);
+            final long blockTableOffset = header.getLong(24);
+            final long blockCount = header.getLong(32);
+
+            if (blockCount * 8 > Integer.MAX_VALUE) {
+                throw new IOException("Block table of " + blockCount + " blocks is too big to be mapped");
+            }
+            this.blockOffsets = channel.map(FileChannel.MapMode.READ_ONLY, blockTableOffset, blockCount * 8)
+                    .asLongBuffer();
+
+            this.segments = new ByteBuffer[(int) ((blockTableOffset + segmentMask) >>> segmentBits)];
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long) i << segmentBits;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(segmentMask + 1, blockTableOffset - start));
+            }
+        }
+    }
+
+    /**
+     * Gets a Optional object wrapping the actual User which matches the identifier
+     * @param username username
+     * @return Optional instance wrapping User object when found, otherwise empty.
+     */
+    @Override
+    public Optional<User> get(final String username) {
+        return exists(username) ? Optional.of(new User(username)) : Optional.empty();
+    }
+
+    /**
+     * Checks if the username is held, without allocating.
+     * @param username username
+     * @return true if found, otherwise false
+     */
+    @Override
+    public boolean exists(final CharSequence username) {
+        // last block whose first entry sorts before or equal to the username
+        int lo = 0;
+        int hi = blockOffsets.limit() - 1;
+        int block = -1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int cmp = compareTo(username, blockOffsets.get(mid));
+            if (cmp == 0) {
+                return true;
+            }
+            if (cmp > 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return false;
+        }
+
+        final long offset = blockOffsets.get(block);
+        final ByteBuffer segment = segments[(int) (offset >>> segmentBits)];
+        int pos = (int) (offset & segmentMask);
+        for (int entry = entriesIn(block); entry > 0; entry--) {
+            final int length = Varint.read(segment, pos);
+            pos += Varint.size(length);
+            final int cmp = Utf8.compare(username, segment, pos, length);
+            if (cmp <= 0) {
+                return cmp == 0;
+            }
+            pos += length;
+        }
+        return false;
+    }
+
+    /**
+     * @return this store, whose entries are sorted
+     */
+    @Override
+    public Optional<IPrefixIndex> prefixIndex() {
+        return Optional.of(this);
+    }
+
+    @Override
+    public int countWithPrefix(final CharSequence prefix) {
+        return scanPrefix(prefix, Integer.MAX_VALUE, null);
+    }
+
+    @Override
+    public List<String> findWithPrefix(final CharSequence prefix, final int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        final List<String> usernames = new ArrayList<>(Math.min(limit, 16));
+        scanPrefix(prefix, limit, usernames);
+        return usernames;
+    }
+
+    /**
+     * @return number of held usernames
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Walks every held username, in code point order.
+     * @param action action run for each username
+     */
+    public void forEach(final Consumer<? super String> action) {
+        for (int block = 0; block < blockOffsets.limit(); block++) {
+            final long offset = blockOffsets.get(block);
+            final ByteBuffer segment = segments[(int) (offset >>> segmentBits)];
+            int pos = (int) (offset & segmentMask);
+            for (int entry = entriesIn(block); entry > 0; entry--) {
+                final int length = Varint.read(segment, pos);
+                pos += Varint.size(length);
+                action.accept(Utf8.decode(segment, pos, length));
+                pos += length;
+            }
+        }
+    }
+
+    /**
+     * Walks the usernames under the prefix, from the last block starting before it.
+     * @param usernames where the usernames are decoded to, null to only count them
+     * @return number of usernames walked, at most limit
+     */
+    private int scanPrefix(final CharSequence prefix, final int limit, final List<String> usernames) {
+        int lo = 0;
+        int hi = blockOffsets.limit() - 1;
+        int block = 0;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (compareTo(prefix, blockOffsets.get(mid)) > 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        int count = 0;
+        for (; block < blockOffsets.limit(); block++) {
+            final long offset = blockOffsets.get(block);
+            final ByteBuffer segment = segments[(int) (offset >>> segmentBits)];
+            int pos = (int) (offset & segmentMask);
+            for (int entry = entriesIn(block); entry > 0; entry--) {
+                final int length = Varint.read(segment, pos);
+                pos += Varint.size(length);
+                if (Utf8.startsWith(segment, pos, length, prefix)) {
+                    if (count == limit) {
+                        return count;
+                    }
+                    if (usernames != null) {
+                        usernames.add(Utf8.decode(segment, pos, length));
+                    }
+                    count++;
+                } else if (Utf8.compare(prefix, segment, pos, length) < 0) {
+                    // past the usernames under the prefix
+                    return count;
+                }
+                pos += length;
+            }
+        }
+        return count;
+    }
+
+    private int entriesIn(final int block) {
+        return block < blockOffsets.limit() - 1 ? blockSize : (int) (size - (long) block * blockSize);
+    }
+
+    private int compareTo(final CharSequence username, final long offset) {
+        final ByteBuffer segment = segments[(int) (offset >>> segmentBits)];
+        final int pos = (int) (offset & segmentMask);
+        final int length = Varint.read(segment, pos);
+        return Utf8.compare(username, segment, pos + Varint.size(length), length);
+    }
+}
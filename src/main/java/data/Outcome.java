@@ -0,0 +1,43 @@
+package data;
+
+/**
+ * What a username check concluded.
+ * @author victor.
+ */
+public enum Outcome {
+    AVAILABLE("' is available"),
+    TAKEN("' is already taken. Here is some suggestions."),
+    RESTRICTED("' contains a restricted word. Here is some suggestions."),
+    // the username did not pass the basic validation (empty, too short...), the message tells why
+    INVALID(null);
+
+    private static final String MESSAGE_PREFIX = "Provided username '";
+
+    private final String messageSuffix;
+
+    Outcome(String messageSuffix) {
+        this.messageSuffix = messageSuffix;
+    }
+
+    /**
+     * @param username checked username
+     * @return message a check of the username ending with this outcome comes with, null if it depends on the check
+     */
+    public String message(final String username) {
+        return messageSuffix != null ? MESSAGE_PREFIX + username + messageSuffix : null;
+    }
+
+    /**
+     * Tells if a message is the one message() would build, without building it.
+     * @param message message
+     * @param username checked username
+     * @return true if message() returns the same text for the username
+     */
+    public boolean isMessage(final String message, final String username) {
+        return messageSuffix != null && message != null && username != null
+                && message.length() == MESSAGE_PREFIX.length() + username.length() + messageSuffix.length()
+                && message.startsWith(MESSAGE_PREFIX)
+                && message.startsWith(username, MESSAGE_PREFIX.length())
+                && message.endsWith(messageSuffix);
+    }
+}
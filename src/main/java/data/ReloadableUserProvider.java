@@ -0,0 +1,82 @@
+package data;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * User source whose data can be replaced while it serves lookups. The replacement is built aside and swapped in at
+ * once, each lookup goes to the User source current when it starts and keeps reading it until it is done, so it never
+ * sees a half built one nor waits for a reload. Lookups spanning several calls hold on to snapshot() instead.
+ * @author victor.
+ */
+public class ReloadableUserProvider implements IUserProvider, IAsyncUserProvider {
+    private volatile IUserProvider current;
+
+    /**
+     * @param initial User source served until the first reload
+     */
+    public ReloadableUserProvider(IUserProvider initial) {
+        swap(initial);
+    }
+
+    /**
+     * Serves the lookups starting from now out of the given User source.
+     * @param userProvider replacement User source
+     * @return the replaced User source
+     */
+    public IUserProvider swap(final IUserProvider userProvider) {
+        if (userProvider == null) {
+            throw new IllegalArgumentException("User provider cannot be null");
+        }
+        final IUserProvider replaced = current;
+        current = userProvider;
+        return replaced;
+    }
+
+    public IUserProvider getCurrent() {
+        return current;
+    }
+
+    @Override
+    public Optional<User> get(final String identifier) {
+        return current.get(identifier);
+    }
+
+    @Override
+    public boolean exists(final CharSequence identifier) {
+        return current.exists(identifier);
+    }
+
+    @Override
+    public Set<String> findTaken(final Collection<String> identifiers) {
+        return current.findTaken(identifiers);
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getAsync(final String identifier) {
+        return IAsyncUserProvider.of(current).getAsync(identifier);
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> findTakenAsync(final Collection<String> identifiers) {
+        return IAsyncUserProvider.of(current).findTakenAsync(identifiers);
+    }
+
+    /**
+     * @return the prefix index of the User source current now, it keeps answering for it after a reload
+     */
+    @Override
+    public Optional<IPrefixIndex> prefixIndex() {
+        return current.prefixIndex();
+    }
+
+    /**
+     * @return the User source current now, it keeps its usernames after a reload
+     */
+    @Override
+    public IUserProvider snapshot() {
+        return current.snapshot();
+    }
+}
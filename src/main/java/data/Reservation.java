@@ -0,0 +1,33 @@
+package data;
+
+/**
+ * Temporary claim on a username, handed out by IUsernameReservations.
+ * Only the very instance handed out can commit or release the claim.
+ * @author victor.
+ */
+public final class Reservation {
+    private final String username;
+    private final long expiresAt;
+
+    Reservation(String username, long expiresAt) {
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @param now current System.nanoTime()
+     * @return true if the reservation is over
+     */
+    boolean isExpired(long now) {
+        return expiresAt - now <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{username='" + username + "'}";
+    }
+}
@@ -1,17 +1,20 @@
 package data;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * Represents the result for the username check.
- * Contains the actual success flag, a message explaining what happened and, in case it applies, a list of username
- * suggestions.
+ * Contains the checked username, the actual success flag, the outcome of the check, a message explaining what happened
+ * and, in case it applies, a list of username suggestions.
  * @author victor.
  */
 public class Result implements Serializable {
+    private String username;
     private boolean success;
+    private Outcome outcome;
     private String messg;
     private List<String> suggestedUsernames;
 
@@ -21,6 +24,26 @@ public class Result implements Serializable {
         this.suggestedUsernames = suggestedUsernames != null ? suggestedUsernames : Collections.emptyList();
     }
 
+    /**
+     * Copies a result, suggestions list included, so that the copy can be changed on its own.
+     * @param result copied result
+     */
+    public Result(Result result) {
+        this.username = result.username;
+        this.success = result.success;
+        this.outcome = result.outcome;
+        this.messg = result.messg;
+        this.suggestedUsernames = new ArrayList<>(result.suggestedUsernames);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
     public boolean isSuccess() {
         return success;
     }
@@ -29,6 +52,14 @@ public class Result implements Serializable {
         this.success = success;
     }
 
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(Outcome outcome) {
+        this.outcome = outcome;
+    }
+
     public String getMessg() {
         return messg;
     }
@@ -49,6 +80,9 @@ public class Result implements Serializable {
     public String toString() {
         final StringBuilder sb = new StringBuilder("Result{");
         sb.append("success=").append(success);
+        if (outcome != null) {
+            sb.append(", outcome=").append(outcome);
+        }
         if (messg != null) {
             sb.append(", messg='").append(messg).append('\'');
         }
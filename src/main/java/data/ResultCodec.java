@@ -0,0 +1,275 @@
+package data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact binary wire format for check results, meant for shipping them between services in place of Java
+ * serialization. Encodes straight into and decodes straight out of ByteBuffers, heap ones through their backing array.
+ * A Result is:
+ * <ul>
+ *     <li>a flags byte: outcome code (0 for none, ordinal + 1 otherwise) in the low 3 bits, then the success flag,
+ *     username present, message present, suggestions relative to the username and standard message bits</li>
+ *     <li>the username and the message, each as a varint UTF-8 length and the UTF-8 bytes. The message is left out
+ *     when it is the one the outcome comes with (see Outcome.message()), the standard message bit telling decode to
+ *     rebuild it. Without either message bit there is no message</li>
+ *     <li>a varint suggestion count and the suggestions. Relative to the username, each one starts with the varint
+ *     number of leading chars it shares with the username, followed by the rest of it only</li>
+ * </ul>
+ * A batch is a varint Result count followed by the Results.
+ * Outcome codes follow the declaration order, new outcomes have to be appended.
+ * @author victor.
+ */
+public final class ResultCodec {
+    private static final int OUTCOME_MASK = 0x07;
+    private static final int SUCCESS = 0x08;
+    private static final int USERNAME = 0x10;
+    private static final int MESSAGE = 0x20;
+    private static final int RELATIVE_SUGGESTIONS = 0x40;
+    private static final int STANDARD_MESSAGE = 0x80;
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final boolean relativeSuggestions;
+
+    /**
+     * @param relativeSuggestions true to encode the suggestions relative to the username, which most of them extend
+     */
+    public ResultCodec(boolean relativeSuggestions) {
+        this.relativeSuggestions = relativeSuggestions;
+    }
+
+    /**
+     * @param result result
+     * @return number of bytes encode() writes for the result
+     */
+    public int encodedSize(final Result result) {
+        final String username = result.getUsername();
+        int size = 1;
+        if (username != null) {
+            size += stringSize(username, 0);
+        }
+        if (result.getMessg() != null && !hasStandardMessage(result)) {
+            size += stringSize(result.getMessg(), 0);
+        }
+        final List<String> suggestions = result.getSuggestedUsernames();
+        size += Varint.size(suggestions.size());
+        final boolean relative = relativeSuggestions && username != null;
+        for (int i = 0; i < suggestions.size(); i++) {
+            final String suggestion = suggestions.get(i);
+            if (relative) {
+                final int shared = sharedChars(username, suggestion);
+                size += Varint.size(shared) + stringSize(suggestion, shared);
+            } else {
+                size += stringSize(suggestion, 0);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param results results
+     * @return number of bytes encode() writes for the batch
+     */
+    public int encodedSize(final List<Result> results) {
+        int size = Varint.size(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            size += encodedSize(results.get(i));
+        }
+        return size;
+    }
+
+    /**
+     * Writes the result at the buffer position, moving it past the written bytes.
+     * @param result result
+     * @param dst destination buffer
+     * @throws java.nio.BufferOverflowException if the buffer runs out of room, see encodedSize()
+     */
+    public void encode(final Result result, final ByteBuffer dst) {
+        final String username = result.getUsername();
+        final boolean standardMessage = hasStandardMessage(result);
+        final boolean message = !standardMessage && result.getMessg() != null;
+        final boolean relative = relativeSuggestions && username != null;
+        int flags = result.getOutcome() != null ? result.getOutcome().ordinal() + 1 : 0;
+        if (result.isSuccess()) {
+            flags |= SUCCESS;
+        }
+        if (username != null) {
+            flags |= USERNAME;
+        }
+        if (message) {
+            flags |= MESSAGE;
+        } else if (standardMessage) {
+            flags |= STANDARD_MESSAGE;
+        }
+        if (relative) {
+            flags |= RELATIVE_SUGGESTIONS;
+        }
+        dst.put((byte) flags);
+
+        if (username != null) {
+            putString(username, 0, dst);
+        }
+        if (message) {
+            putString(result.getMessg(), 0, dst);
+        }
+        final List<String> suggestions = result.getSuggestedUsernames();
+        Varint.write(suggestions.size(), dst);
+        for (int i = 0; i < suggestions.size(); i++) {
+            final String suggestion = suggestions.get(i);
+            if (relative) {
+                final int shared = sharedChars(username, suggestion);
+                Varint.write(shared, dst);
+                putString(suggestion, shared, dst);
+            } else {
+                putString(suggestion, 0, dst);
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of results at the buffer position, moving it past the written bytes.
+     * @param results results
+     * @param dst destination buffer
+     * @throws java.nio.BufferOverflowException if the buffer runs out of room, see encodedSize()
+     */
+    public void encode(final List<Result> results, final ByteBuffer dst) {
+        Varint.write(results.size(), dst);
+        for (int i = 0; i < results.size(); i++) {
+            encode(results.get(i), dst);
+        }
+    }
+
+    /**
+     * Reads a result at the buffer position, moving it past the read bytes.
+     * @param src source buffer
+     * @return decoded result
+     * @throws IllegalArgumentException if the bytes are no encoded result
+     * @throws BufferUnderflowException if the buffer ends before the result does
+     */
+    public static Result decode(final ByteBuffer src) {
+        final int flags = src.get() & 0xFF;
+        final int outcomeCode = flags & OUTCOME_MASK;
+        if (outcomeCode > OUTCOMES.length || (flags & STANDARD_MESSAGE) != 0
+                && ((flags & MESSAGE) != 0 || (flags & USERNAME) == 0 || outcomeCode == 0)) {
+            throw new IllegalArgumentException("Not an encoded result, flags " + Integer.toHexString(flags));
+        }
+        final Outcome outcome = outcomeCode > 0 ? OUTCOMES[outcomeCode - 1] : null;
+        final String username = (flags & USERNAME) != 0 ? getString(src) : null;
+        final String messg;
+        if ((flags & MESSAGE) != 0) {
+            messg = getString(src);
+        } else if ((flags & STANDARD_MESSAGE) != 0) {
+            messg = outcome.message(username);
+        } else {
+            messg = null;
+        }
+
+        final int count = Varint.read(src);
+        if (count > src.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final List<String> suggestions = count > 0 ? new ArrayList<>(count) : Collections.emptyList();
+        for (int i = 0; i < count; i++) {
+            if ((flags & RELATIVE_SUGGESTIONS) != 0) {
+                final int shared = Varint.read(src);
+                if (username == null || shared > username.length()) {
+                    throw new IllegalArgumentException("Suggestion shares " + shared + " chars with the username");
+                }
+                suggestions.add(shared > 0 ? getString(src, username, shared) : getString(src));
+            } else {
+                suggestions.add(getString(src));
+            }
+        }
+
+        final Result result = new Result((flags & SUCCESS) != 0, suggestions, messg);
+        result.setUsername(username);
+        result.setOutcome(outcome);
+        return result;
+    }
+
+    /**
+     * Reads a batch of results at the buffer position, moving it past the read bytes.
+     * @param src source buffer
+     * @return decoded results
+     * @throws IllegalArgumentException if the bytes are no encoded batch
+     * @throws BufferUnderflowException if the buffer ends before the batch does
+     */
+    public static List<Result> decodeAll(final ByteBuffer src) {
+        final int count = Varint.read(src);
+        if (count > src.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final List<Result> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(decode(src));
+        }
+        return results;
+    }
+
+    /**
+     * @return true if the message is the one the outcome comes with for the username, it is rebuilt on decode then
+     */
+    private static boolean hasStandardMessage(final Result result) {
+        final String messg = result.getMessg();
+        return messg != null && result.getOutcome() != null && result.getUsername() != null
+                && result.getOutcome().isMessage(messg, result.getUsername());
+    }
+
+    /**
+     * Number of leading chars the suggestion shares with the username, never splitting a surrogate pair.
+     */
+    private static int sharedChars(final String username, final String suggestion) {
+        final int max = Math.min(username.length(), suggestion.length());
+        int shared = 0;
+        while (shared < max && username.charAt(shared) == suggestion.charAt(shared)) {
+            shared++;
+        }
+        if (shared > 0 && shared < suggestion.length() && Character.isHighSurrogate(suggestion.charAt(shared - 1))) {
+            shared--;
+        }
+        return shared;
+    }
+
+    /**
+     * @return encoded size of the text from the given char on, length prefix included
+     */
+    private static int stringSize(final String text, final int from) {
+        final int length = Utf8.encodedLength(text, from, text.length());
+        return Varint.size(length) + length;
+    }
+
+    private static void putString(final String text, final int from, final ByteBuffer dst) {
+        final int length = Utf8.encodedLength(text, from, text.length());
+        Varint.write(length, dst);
+        Utf8.encode(text, from, text.length(), dst, length);
+    }
+
+    private static String getString(final ByteBuffer src) {
+        final int length = getLength(src);
+        final String text = Utf8.decode(src, src.position(), length);
+        src.position(src.position() + length);
+        return text;
+    }
+
+    /**
+     * Reads the rest of a suggestion, appended straight to the chars it shares with the username.
+     */
+    private static String getString(final ByteBuffer src, final String username, final int shared) {
+        final int length = getLength(src);
+        final StringBuilder sb = new StringBuilder(shared + length).append(username, 0, shared);
+        Utf8.decode(src, src.position(), length, sb);
+        src.position(src.position() + length);
+        return sb.toString();
+    }
+
+    private static int getLength(final ByteBuffer src) {
+        final int length = Varint.read(src);
+        if (length > src.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,269 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * User source spreading the usernames over several shards (other User sources, possibly living in other JVMs) with
+ * consistent hashing: every shard owns a number of virtual nodes on a hash ring, and a username belongs to the shard
+ * owning the first virtual node at or after its hash.
+ * Adding or removing a shard only moves the usernames of the virtual nodes involved, about 1/N of them. The routing
+ * table is rebuilt on each change and swapped in whole, so lookups never lock. Moving the data itself between shards
+ * is up to the shards.
+ * Batches are split by shard and the parts looked up in parallel, each shard answering its part in one go.
+ * @author victor.
+ */
+public class ShardedUserProvider implements IUserProvider, IAsyncUserProvider {
+    private final int virtualNodes;
+    private final Executor executor;
+    private volatile Ring ring;
+
+    /**
+     * @param shards shards by shard identifier
+     * @param virtualNodes virtual nodes per shard, the more the more even the spread
+     * @param executor executor blocking shard lookups run on when a batch is scattered
+     */
+    public ShardedUserProvider(Map<String, ? extends IUserProvider> shards, int virtualNodes, Executor executor) {
+        if (shards == null) {
+            throw new IllegalArgumentException("Shards cannot be null");
+        }
+        this.virtualNodes = virtualNodes;
+        this.executor = executor != null ? executor : ForkJoinPool.commonPool();
+        this.ring = new Ring(new LinkedHashMap<>(shards), virtualNodes, this.executor);
+    }
+
+    /**
+     * Splits usernames up the way a ShardedUserProvider over the given shard identifiers would, before having any shard
+     * at hand (to load each shard with its own part of a dataset, for instance).
+     * @param usernames usernames
+     * @param shardIds shard identifiers
+     * @param virtualNodes virtual nodes per shard
+     * @return usernames by owning shard identifier, every shard identifier included
+     */
+    public static Map<String, List<String>> partition(Collection<String> usernames, Collection<String> shardIds,
+                                                      int virtualNodes) {
+        final Map<String, IUserProvider> shards = new LinkedHashMap<>();
+        shardIds.forEach(id -> shards.put(id, null));
+        final Ring ring = new Ring(shards, virtualNodes, null);
+
+        final Map<String, List<String>> parts = new LinkedHashMap<>();
+        shardIds.forEach(id -> parts.put(id, new ArrayList<>()));
+        usernames.forEach(username -> parts.get(ring.shardIdOf(username)).add(username));
+        return parts;
+    }
+
+    /**
+     * @param username username
+     * @return identifier of the shard the username belongs to
+     */
+    public String shardOf(CharSequence username) {
+        return ring.shardIdOf(username);
+    }
+
+    /**
+     * Adds a shard, or replaces the one with the same identifier.
+     * @param shardId shard identifier
+     * @param shard shard
+     */
+    public synchronized void addShard(String shardId, IUserProvider shard) {
+        if (shard == null) {
+            throw new IllegalArgumentException("Shard cannot be null");
+        }
+        final Map<String, IUserProvider> shards = new LinkedHashMap<>(ring.shards);
+        shards.put(shardId, shard);
+        ring = new Ring(shards, virtualNodes, executor);
+    }
+
+    /**
+     * Removes a shard, its usernames belong to the neighbouring shards from then on.
+     * @param shardId shard identifier
+     */
+    public synchronized void removeShard(String shardId) {
+        final Map<String, IUserProvider> shards = new LinkedHashMap<>(ring.shards);
+        if (shards.remove(shardId) != null) {
+            if (shards.isEmpty()) {
+                throw new IllegalStateException("The last shard cannot be removed");
+            }
+            ring = new Ring(shards, virtualNodes, executor);
+        }
+    }
+
+    public Set<String> getShardIds() {
+        return Collections.unmodifiableSet(ring.shards.keySet());
+    }
+
+    @Override
+    public Optional<User> get(final String username) {
+        return ring.shardOf(username).get(username);
+    }
+
+    @Override
+    public boolean exists(final CharSequence username) {
+        return ring.shardOf(username).exists(username);
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getAsync(final String username) {
+        final Ring current = ring;
+        return current.asyncShards[current.indexOf(username)].getAsync(username);
+    }
+
+    /**
+     * Looks up the batch on every shard involved in parallel, blocking until all of them answered.
+     * @param usernames usernames
+     * @return the usernames a user exists for
+     */
+    @Override
+    public Set<String> findTaken(final Collection<String> usernames) {
+        final Ring current = ring;
+        final List<String>[] parts = current.split(usernames);
+        int involved = -1;
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i] != null) {
+                involved = involved == -1 ? i : -2;
+            }
+        }
+        if (involved == -1) {
+            return Collections.emptySet();
+        }
+        // a single shard involved, nothing to scatter
+        if (involved >= 0) {
+            return current.shard(involved).findTaken(parts[involved]);
+        }
+        return current.scatter(parts).join();
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> findTakenAsync(final Collection<String> usernames) {
+        final Ring current = ring;
+        return current.scatter(current.split(usernames));
+    }
+
+    /**
+     * @return this source when no shard can be reloaded, otherwise one over the shards' snapshots
+     */
+    @Override
+    public IUserProvider snapshot() {
+        final Map<String, IUserProvider> shards = ring.shards;
+        final Map<String, IUserProvider> pinned = new LinkedHashMap<>();
+        boolean changed = false;
+        for (Map.Entry<String, IUserProvider> shard : shards.entrySet()) {
+            final IUserProvider snapshot = shard.getValue().snapshot();
+            changed |= snapshot != shard.getValue();
+            pinned.put(shard.getKey(), snapshot);
+        }
+        return changed ? new ShardedUserProvider(pinned, virtualNodes, executor) : this;
+    }
+
+    /**
+     * Immutable routing table, virtual node hashes sorted along with the shard owning each of them.
+     */
+    private static final class Ring {
+        private final Map<String, IUserProvider> shards;
+        private final String[] shardIds;
+        private final IUserProvider[] shardArray;
+        private final IAsyncUserProvider[] asyncShards;
+        private final long[] points;
+        private final int[] owners;
+
+        private Ring(Map<String, IUserProvider> shards, int virtualNodes, Executor executor) {
+            if (shards.isEmpty()) {
+                throw new IllegalArgumentException("At least one shard is needed");
+            }
+            if (virtualNodes < 1) {
+                throw new IllegalArgumentException("Virtual nodes must be at least 1");
+            }
+            this.shards = Collections.unmodifiableMap(shards);
+            this.shardIds = shards.keySet().toArray(new String[shards.size()]);
+            this.shardArray = shards.values().toArray(new IUserProvider[shards.size()]);
+            this.asyncShards = new IAsyncUserProvider[shardArray.length];
+            for (int i = 0; i < shardArray.length; i++) {
+                asyncShards[i] = shardArray[i] != null ? IAsyncUserProvider.of(shardArray[i], executor) : null;
+            }
+
+            // hash -> owner, a colliding virtual node goes to the smallest shard identifier so the ring does not
+            // depend on the order shards were added in
+            final Map<Long, Integer> nodes = new HashMap<>();
+            for (int shard = 0; shard < shardIds.length; shard++) {
+                for (int node = 0; node < virtualNodes; node++) {
+                    final int owner = shard;
+                    nodes.merge(Hashing.hash64(shardIds[shard] + '#' + node), owner,
+                            (a, b) -> shardIds[a].compareTo(shardIds[b]) <= 0 ? a : b);
+                }
+            }
+            this.points = new long[nodes.size()];
+            int i = 0;
+            for (Long point : nodes.keySet()) {
+                points[i++] = point;
+            }
+            Arrays.sort(points);
+            this.owners = new int[points.length];
+            for (i = 0; i < points.length; i++) {
+                owners[i] = nodes.get(points[i]);
+            }
+        }
+
+        private int indexOf(final CharSequence username) {
+            final long hash = Hashing.hash64(username);
+            int node = Arrays.binarySearch(points, hash);
+            if (node < 0) {
+                node = -node - 1;
+            }
+            // wraps around the ring
+            return owners[node == points.length ? 0 : node];
+        }
+
+        private String shardIdOf(final CharSequence username) {
+            return shardIds[indexOf(username)];
+        }
+
+        private IUserProvider shardOf(final CharSequence username) {
+            return shardArray[indexOf(username)];
+        }
+
+        private IUserProvider shard(final int index) {
+            return shardArray[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<String>[] split(final Collection<String> usernames) {
+            final List<String>[] parts = new List[shardArray.length];
+            for (String username : usernames) {
+                final int shard = indexOf(username);
+                if (parts[shard] == null) {
+                    parts[shard] = new ArrayList<>();
+                }
+                parts[shard].add(username);
+            }
+            return parts;
+        }
+
+        private CompletableFuture<Set<String>> scatter(final List<String>[] parts) {
+            final List<CompletableFuture<Set<String>>> lookups = new ArrayList<>();
+            for (int shard = 0; shard < parts.length; shard++) {
+                if (parts[shard] != null) {
+                    lookups.add(asyncShards[shard].findTakenAsync(parts[shard]));
+                }
+            }
+            return CompletableFuture
+                    .allOf(lookups.toArray(new CompletableFuture[lookups.size()]))
+                    .thenApply(v -> {
+                        final Set<String> taken = new HashSet<>();
+                        lookups.forEach(lookup -> taken.addAll(lookup.join()));
+                        return taken;
+                    });
+        }
+    }
+}
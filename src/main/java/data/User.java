@@ -15,7 +15,7 @@ public class User implements IUser {
     }
 
     public String getUsername() {
-        return null;
+        return username;
     }
 
     //this is going on a set later
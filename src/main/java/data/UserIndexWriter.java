@@ -0,0 +1,166 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Builds the immutable username index files read by MappedUserProvider, offline.
+ * Usage: UserIndexWriter &lt;dump&gt; &lt;index&gt;, where dump is a UTF-8 text file holding a username per line.
+ *
+ * File layout (big endian):
+ * <pre>
+ * header     magic "UIDX", version, entries per block, segment bits, entry count, block table offset, block count
+ * entries    sorted by code point and deduplicated, each one its varint UTF-8 length followed by the UTF-8 bytes
+ * block table offset of the first entry of every block of entries
+ * </pre>
+ * Lookups binary search the block table and then scan a single block. Blocks never straddle a segment boundary
+ * (the writer pads up to the next segment instead), so readers can map the entries in several segments, each of them
+ * under the 2GB a single mapping can take.
+ * @author victor.
+ */
+public final class UserIndexWriter {
+    static final int MAGIC = 0x55494458;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final int DEFAULT_BLOCK_SIZE = 16;
+    static final int DEFAULT_SEGMENT_BITS = 30;
+
+    private UserIndexWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: UserIndexWriter <dump> <index>");
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final List<String> usernames = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    usernames.add(line);
+                }
+            }
+        }
+        final long count = write(usernames, Paths.get(args[1]));
+        System.out.println(String.format("Wrote %d usernames to %s in %d ms",
+                count, args[1], (System.nanoTime() - start) / 1000000));
+    }
+
+    /**
+     * Writes an index file holding the usernames.
+     * @param usernames usernames, in any order, null entries and duplicates are ignored
+     * @param indexFile file to write, replaced if it exists
+     * @return number of usernames written
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(Collection<String> usernames, Path indexFile) throws IOException {
+        return write(usernames, indexFile, DEFAULT_BLOCK_SIZE, DEFAULT_SEGMENT_BITS);
+    }
+
+    static long write(Collection<String> usernames, Path indexFile, int blockSize, int segmentBits) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        if (segmentBits < 8 || segmentBits > 30) {
+            throw new IllegalArgumentException("Segment bits must be between 8 and 30");
+        }
+
+        final String[] sorted = usernames.stream().filter(Objects::nonNull).toArray(String[]::new);
+        Arrays.sort(sorted, Utf8::compare);
+
+        final long segmentSize = 1L << segmentBits;
+        long[] blockOffsets = new long[16];
+        int blockCount = 0;
+        long count = 0;
+        byte[] block = new byte[4096];
+        int blockLength = 0;
+        int blockEntries = 0;
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = HEADER_SIZE;
+            channel.position(pos);
+            for (int i = 0; i <= sorted.length; i++) {
+                final boolean last = i == sorted.length;
+                if (!last && i > 0 && sorted[i].equals(sorted[i - 1])) {
+                    continue;
+                }
+
+                if (blockEntries == blockSize || (last && blockEntries > 0)) {
+                    if (blockLength > segmentSize - HEADER_SIZE) {
+                        throw new IllegalArgumentException("Block of " + blockLength + " bytes does not fit a segment");
+                    }
+                    // pad so the block starts and ends within the same segment
+                    if ((pos & (segmentSize - 1)) + blockLength > segmentSize) {
+                        final long padding = segmentSize - (pos & (segmentSize - 1));
+                        writeFully(channel, ByteBuffer.allocate((int) padding));
+                        pos += padding;
+                    }
+                    if (blockCount == blockOffsets.length) {
+                        blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                    }
+                    blockOffsets[blockCount++] = pos;
+                    writeFully(channel, ByteBuffer.wrap(block, 0, blockLength));
+                    pos += blockLength;
+                    blockLength = 0;
+                    blockEntries = 0;
+                }
+                if (last) {
+                    break;
+                }
+
+                final int length = Utf8.encodedLength(sorted[i]);
+                final int entrySize = Varint.size(length) + length;
+                if (blockLength + entrySize > block.length) {
+                    block = Arrays.copyOf(block, Math.max(block.length * 2, blockLength + entrySize));
+                }
+                blockLength = Varint.write(length, block, blockLength);
+                blockLength = Utf8.encode(sorted[i], block, blockLength);
+                blockEntries++;
+                count++;
+            }
+
+            final ByteBuffer blockTable = ByteBuffer.allocate(blockCount * 8);
+            for (int i = 0; i < blockCount; i++) {
+                blockTable.putLong(blockOffsets[i]);
+            }
+            blockTable.flip();
+            writeFully(channel, blockTable);
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(blockSize)
+                    .putInt(segmentBits)
+                    .putLong(count)
+                    .putLong(pos)
+                    .putLong(blockCount);
+            header.clear();
+            channel.position(0);
+            writeFully(channel, header);
+        }
+        return count;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
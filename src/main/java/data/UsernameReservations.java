@@ -0,0 +1,137 @@
+package data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Reservations kept in a ConcurrentHashMap, claimed and given back with its atomic single key operations
+ * (putIfAbsent, replace and remove against the expected value), so no lock is shared between usernames.
+ * Expired reservations are taken over by the next reserve() of the same username, and swept every now and then.
+ * Usernames are reserved by the form the User source matches them by, so that over canonical forms a single spelling
+ * of a username can be reserved at a time.
+ * @author victor.
+ */
+public class UsernameReservations implements IUsernameReservations {
+    private static final int PURGE_INTERVAL = 1024;
+
+    private final IUserProvider userProvider;
+    private final Function<? super CharSequence, String> canonicalizer;
+    // canonical username -> reservation
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicInteger reservesUntilPurge = new AtomicInteger(PURGE_INTERVAL);
+    private final List<IReservationListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param userProvider User source the reserved usernames are checked against and, if writable, committed to
+     */
+    public UsernameReservations(IUserProvider userProvider) {
+        this(userProvider, CharSequence::toString);
+    }
+
+    /**
+     * @param userProvider User source the reserved usernames are checked against and, if writable, committed to
+     * @param canonicalizer maps a username to the form the User source matches it by (see CanonicalUserProvider)
+     */
+    public UsernameReservations(IUserProvider userProvider, Function<? super CharSequence, String> canonicalizer) {
+        if (userProvider == null) {
+            throw new IllegalArgumentException("User provider cannot be null");
+        }
+        if (canonicalizer == null) {
+            throw new IllegalArgumentException("Canonicalizer cannot be null");
+        }
+        this.userProvider = userProvider;
+        this.canonicalizer = canonicalizer;
+    }
+
+    @Override
+    public Optional<Reservation> reserve(final String username, final long ttl, final TimeUnit unit) {
+        if (reservesUntilPurge.decrementAndGet() <= 0) {
+            reservesUntilPurge.set(PURGE_INTERVAL);
+            purgeExpired();
+        }
+        if (userProvider.exists(username)) {
+            return Optional.empty();
+        }
+
+        final long now = System.nanoTime();
+        final String key = canonicalizer.apply(username);
+        final Reservation reservation = new Reservation(username, now + unit.toNanos(ttl));
+        final Reservation current = reservations.putIfAbsent(key, reservation);
+        if (current == null || current.isExpired(now) && reservations.replace(key, current, reservation)) {
+            listeners.forEach(listener -> listener.onReserved(username));
+            return Optional.of(reservation);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Registers the reserved username on the User source, which has to be writable.
+     * @param reservation reservation
+     * @return true if registered, false if the reservation expired or someone registered the username bypassing the
+     * reservations
+     */
+    @Override
+    public boolean commit(final Reservation reservation) {
+        if (!(userProvider instanceof IWritableUserProvider)) {
+            throw new IllegalStateException("The user provider does not take registrations");
+        }
+        final String username = reservation.getUsername();
+        final String key = canonicalizer.apply(username);
+        if (reservation.isExpired(System.nanoTime()) || reservations.get(key) != reservation) {
+            release(reservation);
+            return false;
+        }
+
+        // registered while still holding the reservation, so nobody can reserve the username in between
+        try {
+            return ((IWritableUserProvider) userProvider).register(username);
+        } finally {
+            release(reservation);
+        }
+    }
+
+    @Override
+    public boolean release(final Reservation reservation) {
+        if (!reservations.remove(canonicalizer.apply(reservation.getUsername()), reservation)) {
+            return false;
+        }
+        listeners.forEach(listener -> listener.onReleased(reservation.getUsername()));
+        return true;
+    }
+
+    @Override
+    public boolean isReserved(final CharSequence username) {
+        if (reservations.isEmpty()) {
+            return false;
+        }
+        final Reservation reservation = reservations.get(canonicalizer.apply(username));
+        return reservation != null && !reservation.isExpired(System.nanoTime());
+    }
+
+    @Override
+    public void addReservationListener(final IReservationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return number of reservations held, expired ones not swept yet included
+     */
+    public int size() {
+        return reservations.size();
+    }
+
+    private void purgeExpired() {
+        final long now = System.nanoTime();
+        reservations.forEach((username, reservation) -> {
+            if (reservation.isExpired(now)) {
+                reservations.remove(username, reservation);
+            }
+        });
+    }
+}
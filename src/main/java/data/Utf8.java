@@ -0,0 +1,362 @@
+package data;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 helpers working straight over CharSequence and byte arrays so that lookups against encoded usernames never
+ * need to build intermediate String or byte[] objects.
+ * Ordering is by code point, which is also the unsigned byte order of the encoded form.
+ * @author victor.
+ */
+public final class Utf8 {
+    private Utf8() {
+    }
+
+    /**
+     * Number of bytes needed to encode the text.
+     * @param text text
+     * @return encoded length
+     */
+    public static int encodedLength(CharSequence text) {
+        return encodedLength(text, 0, text.length());
+    }
+
+    /**
+     * Number of bytes needed to encode a range of the text.
+     * @param text text
+     * @param from index of the first char of the range
+     * @param to index right after the last char of the range
+     * @return encoded length
+     */
+    public static int encodedLength(CharSequence text, int from, int to) {
+        int length = 0;
+        for (int i = from; i < to; ) {
+            final int cp = Character.codePointAt(text, i);
+            length += encodedLength(cp);
+            i += Character.charCount(cp);
+        }
+        return length;
+    }
+
+    /**
+     * Encodes the text into the given array.
+     * @param text text
+     * @param dst destination array, it must have room for encodedLength(text) bytes from pos on
+     * @param pos position to start writing at
+     * @return position right after the last written byte
+     */
+    public static int encode(CharSequence text, byte[] dst, int pos) {
+        return encode(text, 0, text.length(), dst, pos);
+    }
+
+    /**
+     * Encodes a range of the text into the given array.
+     * @param text text
+     * @param from index of the first char of the range
+     * @param to index right after the last char of the range
+     * @param dst destination array, it must have room for encodedLength(text, from, to) bytes from pos on
+     * @param pos position to start writing at
+     * @return position right after the last written byte
+     */
+    public static int encode(CharSequence text, int from, int to, byte[] dst, int pos) {
+        for (int i = from; i < to; ) {
+            final int cp = Character.codePointAt(text, i);
+            if (cp < 0x80) {
+                dst[pos++] = (byte) cp;
+            } else if (cp < 0x800) {
+                dst[pos++] = (byte) (0xC0 | (cp >>> 6));
+                dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (cp < 0x10000) {
+                dst[pos++] = (byte) (0xE0 | (cp >>> 12));
+                dst[pos++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                dst[pos++] = (byte) (0xF0 | (cp >>> 18));
+                dst[pos++] = (byte) (0x80 | ((cp >>> 12) & 0x3F));
+                dst[pos++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            i += Character.charCount(cp);
+        }
+        return pos;
+    }
+
+    /**
+     * Encodes a range of the text at the buffer position, moving it past the written bytes. Heap buffers are written
+     * through their backing array.
+     * @param text text
+     * @param from index of the first char of the range
+     * @param to index right after the last char of the range
+     * @param dst destination buffer
+     * @param length encoded length of the range, as encodedLength(text, from, to) tells
+     * @throws BufferOverflowException if the buffer has no room for the encoded range
+     */
+    public static void encode(CharSequence text, int from, int to, ByteBuffer dst, int length) {
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            final int pos = dst.arrayOffset() + dst.position();
+            dst.position(encode(text, from, to, dst.array(), pos) - dst.arrayOffset());
+            return;
+        }
+        for (int i = from; i < to; ) {
+            final int cp = Character.codePointAt(text, i);
+            if (cp < 0x80) {
+                dst.put((byte) cp);
+            } else if (cp < 0x800) {
+                dst.put((byte) (0xC0 | (cp >>> 6)));
+                dst.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (cp < 0x10000) {
+                dst.put((byte) (0xE0 | (cp >>> 12)));
+                dst.put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                dst.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                dst.put((byte) (0xF0 | (cp >>> 18)));
+                dst.put((byte) (0x80 | ((cp >>> 12) & 0x3F)));
+                dst.put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                dst.put((byte) (0x80 | (cp & 0x3F)));
+            }
+            i += Character.charCount(cp);
+        }
+    }
+
+    /**
+     * Compares a text against its encoded counterpart.
+     * @param text text
+     * @param src array holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @return negative, zero or positive when the text sorts before, equal or after the encoded value
+     */
+    public static int compare(CharSequence text, byte[] src, int off, int len) {
+        final int end = off + len;
+        int i = 0;
+        final int textLen = text.length();
+        while (i < textLen && off < end) {
+            final int cp = Character.codePointAt(text, i);
+            final int b0 = src[off] & 0xFF;
+            final int other;
+            if (b0 < 0x80) {
+                other = b0;
+                off += 1;
+            } else if (b0 < 0xE0) {
+                other = ((b0 & 0x1F) << 6) | (src[off + 1] & 0x3F);
+                off += 2;
+            } else if (b0 < 0xF0) {
+                other = ((b0 & 0x0F) << 12) | ((src[off + 1] & 0x3F) << 6) | (src[off + 2] & 0x3F);
+                off += 3;
+            } else {
+                other = ((b0 & 0x07) << 18) | ((src[off + 1] & 0x3F) << 12) | ((src[off + 2] & 0x3F) << 6)
+                        | (src[off + 3] & 0x3F);
+                off += 4;
+            }
+
+            if (cp != other) {
+                return cp < other ? -1 : 1;
+            }
+            i += Character.charCount(cp);
+        }
+
+        if (i < textLen) {
+            return 1;
+        }
+        return off < end ? -1 : 0;
+    }
+
+    /**
+     * Compares a text against its encoded counterpart held by a buffer, reading it with absolute gets only so the
+     * buffer can be shared between threads.
+     * @param text text
+     * @param src buffer holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @return negative, zero or positive when the text sorts before, equal or after the encoded value
+     */
+    public static int compare(CharSequence text, ByteBuffer src, int off, int len) {
+        final int end = off + len;
+        int i = 0;
+        final int textLen = text.length();
+        while (i < textLen && off < end) {
+            final int cp = Character.codePointAt(text, i);
+            final int b0 = src.get(off) & 0xFF;
+            final int other;
+            if (b0 < 0x80) {
+                other = b0;
+                off += 1;
+            } else if (b0 < 0xE0) {
+                other = ((b0 & 0x1F) << 6) | (src.get(off + 1) & 0x3F);
+                off += 2;
+            } else if (b0 < 0xF0) {
+                other = ((b0 & 0x0F) << 12) | ((src.get(off + 1) & 0x3F) << 6) | (src.get(off + 2) & 0x3F);
+                off += 3;
+            } else {
+                other = ((b0 & 0x07) << 18) | ((src.get(off + 1) & 0x3F) << 12) | ((src.get(off + 2) & 0x3F) << 6)
+                        | (src.get(off + 3) & 0x3F);
+                off += 4;
+            }
+
+            if (cp != other) {
+                return cp < other ? -1 : 1;
+            }
+            i += Character.charCount(cp);
+        }
+
+        if (i < textLen) {
+            return 1;
+        }
+        return off < end ? -1 : 0;
+    }
+
+    /**
+     * @param src array holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @param prefix a text
+     * @return true if the encoded value starts with the text
+     */
+    public static boolean startsWith(byte[] src, int off, int len, CharSequence prefix) {
+        // UTF-8 is prefix free, equal leading bytes mean equal leading characters
+        final int prefixLength = encodedLength(prefix);
+        return len >= prefixLength && compare(prefix, src, off, prefixLength) == 0;
+    }
+
+    /**
+     * Buffer counterpart of startsWith(byte[], int, int, CharSequence), with absolute gets only.
+     * @param src buffer holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @param prefix a text
+     * @return true if the encoded value starts with the text
+     */
+    public static boolean startsWith(ByteBuffer src, int off, int len, CharSequence prefix) {
+        final int prefixLength = encodedLength(prefix);
+        return len >= prefixLength && compare(prefix, src, off, prefixLength) == 0;
+    }
+
+    /**
+     * Compares two texts by code point, consistently with the encoded form ordering.
+     * @param a a text
+     * @param b another text
+     * @return negative, zero or positive when a sorts before, equal or after b
+     */
+    public static int compare(CharSequence a, CharSequence b) {
+        final int aLen = a.length();
+        final int bLen = b.length();
+        final int len = Math.min(aLen, bLen);
+        // equal chars up to the first difference mean equal code points, only the differing ones need decoding
+        // (surrogates sort below some BMP chars as chars but above all of them as code points)
+        for (int i = 0; i < len; i++) {
+            final char cA = a.charAt(i);
+            final char cB = b.charAt(i);
+            if (cA != cB) {
+                if (!Character.isSurrogate(cA) && !Character.isSurrogate(cB)) {
+                    return cA < cB ? -1 : 1;
+                }
+                return Character.codePointAt(a, i) < Character.codePointAt(b, i) ? -1 : 1;
+            }
+        }
+        return Integer.compare(aLen, bLen);
+    }
+
+    /**
+     * Decodes an encoded value.
+     * @param src array holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @return decoded String
+     */
+    public static String decode(byte[] src, int off, int len) {
+        final int end = off + len;
+        int ascii = off;
+        while (ascii < end && src[ascii] >= 0) {
+            ascii++;
+        }
+        if (ascii == end) {
+            // one byte per char, the String is built straight out of the bytes
+            return new String(src, off, len, StandardCharsets.ISO_8859_1);
+        }
+
+        return decode(src, off, len, new StringBuilder(len)).toString();
+    }
+
+    /**
+     * Decodes an encoded value, appending it to a builder.
+     * @param src array holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @param sb builder to append to
+     * @return the builder
+     */
+    public static StringBuilder decode(byte[] src, int off, int len, StringBuilder sb) {
+        final int end = off + len;
+        while (off < end) {
+            final int b0 = src[off] & 0xFF;
+            if (b0 < 0x80) {
+                sb.append((char) b0);
+                off += 1;
+            } else if (b0 < 0xE0) {
+                sb.append((char) (((b0 & 0x1F) << 6) | (src[off + 1] & 0x3F)));
+                off += 2;
+            } else if (b0 < 0xF0) {
+                sb.append((char) (((b0 & 0x0F) << 12) | ((src[off + 1] & 0x3F) << 6) | (src[off + 2] & 0x3F)));
+                off += 3;
+            } else {
+                sb.appendCodePoint(((b0 & 0x07) << 18) | ((src[off + 1] & 0x3F) << 12)
+                        | ((src[off + 2] & 0x3F) << 6) | (src[off + 3] & 0x3F));
+                off += 4;
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Decodes an encoded value held by a buffer, with absolute gets only. Heap buffers are read through their backing
+     * array.
+     * @param src buffer holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @return decoded String
+     */
+    public static String decode(ByteBuffer src, int off, int len) {
+        if (src.hasArray()) {
+            return decode(src.array(), src.arrayOffset() + off, len);
+        }
+        return decode(copy(src, off, len), 0, len);
+    }
+
+    /**
+     * Decodes an encoded value held by a buffer, appending it to a builder, with absolute gets only.
+     * @param src buffer holding the encoded value
+     * @param off offset of the encoded value
+     * @param len length of the encoded value
+     * @param sb builder to append to
+     * @return the builder
+     */
+    public static StringBuilder decode(ByteBuffer src, int off, int len, StringBuilder sb) {
+        if (src.hasArray()) {
+            return decode(src.array(), src.arrayOffset() + off, len, sb);
+        }
+        return decode(copy(src, off, len), 0, len, sb);
+    }
+
+    private static byte[] copy(ByteBuffer src, int off, int len) {
+        final byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = src.get(off + i);
+        }
+        return bytes;
+    }
+
+    private static int encodedLength(int cp) {
+        if (cp < 0x80) {
+            return 1;
+        }
+        if (cp < 0x800) {
+            return 2;
+        }
+        return cp < 0x10000 ? 3 : 4;
+    }
+}
@@ -0,0 +1,80 @@
+package data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unsigned LEB128 style variable length ints, 7 bits per byte with the high bit flagging that more bytes follow.
+ * Used for the length prefixes of encoded usernames, and for the counts and lengths of the Result wire format.
+ * @author victor.
+ */
+final class Varint {
+    private Varint() {
+    }
+
+    static int size(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    static int write(int value, byte[] dst, int pos) {
+        while ((value & ~0x7F) != 0) {
+            dst[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Writes the value at the buffer position, moving it past the written bytes.
+     */
+    static void write(int value, ByteBuffer dst) {
+        while ((value & ~0x7F) != 0) {
+            dst.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dst.put((byte) value);
+    }
+
+    static int read(byte[] src, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = src[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    static int read(ByteBuffer src, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = src.get(pos++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Reads a value at the buffer position, moving it past the read bytes.
+     */
+    static int read(ByteBuffer src) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = src.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,328 @@
+package data;
+
+import metrics.ICounter;
+import metrics.IMetricsRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * User source accepting registrations while it is being looked up, kept in a directory as an immutable mapped index
+ * (see MappedUserProvider) plus an append only log of the usernames registered since the index was written.
+ * Registered usernames go to the log and to an in-memory delta. Once the delta grows past the compaction threshold a
+ * background thread writes a new index merging both and swaps it in, and the log is started over.
+ * Lookups read a single volatile snapshot of (index, delta being merged, delta) and never lock, not even during a
+ * compaction. Registrations are serialized by a writer lock.
+ * @author victor.
+ */
+public class WritableUserProvider implements IWritableUserProvider, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(WritableUserProvider.class.getName());
+
+    static final String INDEX_FILE = "users.idx";
+    static final String LOG_FILE = "users.log";
+    // log of the delta being merged, a leftover one means the last compaction did not finish
+    static final String COMPACTING_LOG_FILE = "users.log.compacting";
+
+    private final Path indexFile;
+    private final Path logFile;
+    private final Path compactingLogFile;
+    private final int compactionThreshold;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "user-store-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<IRegistrationListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ICounter compactionFailures = IMetricsRegistry.NOOP.counter("userStore.compaction.failures");
+
+    // guarded by writeLock
+    private FileChannel log;
+    private volatile State state;
+
+    /**
+     * Opens the store kept in the directory, creating it when there is none.
+     * @param dir directory holding the store files
+     * @param initialUsernames usernames the store starts with when it is created, ignored otherwise
+     * @param compactionThreshold number of registrations after which they are merged into a new index
+     * @throws IOException if the store cannot be read or created
+     */
+    public WritableUserProvider(Path dir, Collection<String> initialUsernames, int compactionThreshold)
+            throws IOException {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("Compaction threshold must be at least 1");
+        }
+        this.indexFile = dir.resolve(INDEX_FILE);
+        this.logFile = dir.resolve(LOG_FILE);
+        this.compactingLogFile = dir.resolve(COMPACTING_LOG_FILE);
+        this.compactionThreshold = compactionThreshold;
+
+        Files.createDirectories(dir);
+        if (!Files.exists(indexFile)) {
+            writeIndex(initialUsernames != null ? initialUsernames : Collections.emptyList());
+        }
+
+        final Set<String> delta = ConcurrentHashMap.newKeySet();
+        delta.addAll(readLog(logFile));
+        this.state = new State(new MappedUserProvider(indexFile), readLog(compactingLogFile), delta);
+        this.log = openLog();
+    }
+
+    /**
+     * Gets a Optional object wrapping the actual User which matches the identifier
+     * @param username username
+     * @return Optional instance wrapping User object when found, otherwise empty.
+     */
+    @Override
+    public Optional<User> get(final String username) {
+        return exists(username) ? Optional.of(new User(username)) : Optional.empty();
+    }
+
+    @Override
+    public boolean exists(final CharSequence username) {
+        return state.exists(username);
+    }
+
+    /**
+     * Registers a username, appending it to the log before it becomes visible to lookups.
+     * @param username username, it cannot hold line breaks
+     * @return true if registered, false if it was already taken
+     */
+    @Override
+    public boolean register(final String username) {
+        if (username == null || username.isEmpty()) {
+            throw new IllegalArgumentException("username must not be empty");
+        }
+        if (username.indexOf('\n') >= 0 || username.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("username must not contain line breaks");
+        }
+
+        final int pending;
+        writeLock.lock();
+        try {
+            final State current = state;
+            if (current.exists(username)) {
+                return false;
+            }
+            append(username);
+            current.delta.add(username);
+            pending = current.delta.size();
+        } finally {
+            writeLock.unlock();
+        }
+
+        listeners.forEach(listener -> listener.onRegistered(username));
+        if (pending >= compactionThreshold && compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                compactionScheduled.set(false);
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    // left for the next compaction to retry, registrations are safe in the logs meanwhile
+                    compactionFailures.increment();
+                    LOGGER.log(Level.WARNING, "Background compaction of " + indexFile + " failed", e);
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public void addRegistrationListener(final IRegistrationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Merges the usernames registered so far into a new index, lookups and registrations go on meanwhile.
+     * The background compactions call it already, there is no need to call it other than to force a compaction.
+     * @throws IOException if the new index cannot be written, the merge is then retried by the next compaction
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            // freeze the delta, unless a failed compaction left one behind
+            writeLock.lock();
+            try {
+                final State current = state;
+                if (current.frozen.isEmpty()) {
+                    if (current.delta.isEmpty()) {
+                        return;
+                    }
+                    log.close();
+                    try {
+                        Files.move(logFile, compactingLogFile, StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        log = openLog();
+                    }
+                    state = new State(current.base, new HashSet<>(current.delta), ConcurrentHashMap.newKeySet());
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            final State frozen = state;
+            final List<String> usernames = new ArrayList<>(frozen.frozen);
+            frozen.base.forEach(usernames::add);
+            writeIndex(usernames);
+            final MappedUserProvider base = new MappedUserProvider(indexFile);
+
+            writeLock.lock();
+            try {
+                state = new State(base, Collections.emptySet(), state.delta);
+                Files.delete(compactingLogFile);
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Binds the failed background compactions counter to the registry, it is discarded until one is set.
+     * @param metricsRegistry metrics registry
+     */
+    public void setMetricsRegistry(IMetricsRegistry metricsRegistry) {
+        if (metricsRegistry == null) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        compactionFailures = metricsRegistry.counter("userStore.compaction.failures");
+    }
+
+    /**
+     * @return number of registrations not merged into the index yet
+     */
+    public int pendingRegistrations() {
+        final State current = state;
+        return current.frozen.size() + current.delta.size();
+    }
+
+    /**
+     * Stops the background compactions and closes the log, registrations are not accepted afterwards.
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLock.lock();
+        try {
+            log.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeIndex(final Collection<String> usernames) throws IOException {
+        // written aside and moved over, so the live index file is always a complete one
+        final Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        UserIndexWriter.write(usernames, tmp);
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void append(final String username) {
+        final ByteBuffer line = ByteBuffer.wrap((username + '\n').getBytes(StandardCharsets.UTF_8));
+        try {
+            while (line.hasRemaining()) {
+                log.write(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to " + logFile, e);
+        }
+    }
+
+    /**
+     * Reads the usernames in a log, dropping a torn last line (an append cut short by a crash) from the file itself so
+     * that further appends start on a line of their own.
+     * @param file log file
+     * @return logged usernames
+     * @throws IOException if the log cannot be read
+     */
+    private static Set<String> readLog(final Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Collections.emptySet();
+        }
+
+        // logs never get much bigger than the compaction threshold
+        final byte[] bytes = Files.readAllBytes(file);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+
+        final Set<String> usernames = new HashSet<>();
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                usernames.add(line);
+            }
+        }
+        return usernames;
+    }
+
+    /**
+     * Immutable snapshot of the store parts, only the delta keeps taking registrations.
+     */
+    private static final class State {
+        private final MappedUserProvider base;
+        // registrations being merged into the next base
+        private final Set<String> frozen;
+        private final Set<String> delta;
+
+        private State(MappedUserProvider base, Set<String> frozen, Set<String> delta) {
+            this.base = base;
+            this.frozen = frozen;
+            this.delta = delta;
+        }
+
+        private boolean exists(final CharSequence username) {
+            if (!delta.isEmpty() || !frozen.isEmpty()) {
+                final String key = username.toString();
+                if (delta.contains(key) || frozen.contains(key)) {
+                    return true;
+                }
+            }
+            return base.exists(username);
+        }
+    }
+}
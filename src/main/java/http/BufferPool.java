@@ -0,0 +1,67 @@
+package http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of same sized direct buffers, so that reading requests and encoding responses allocate nothing once warm.
+ * Buffers released past the pool capacity are left to the garbage collector.
+ * @author victor.
+ */
+public final class BufferPool {
+    private final int bufferSize;
+    private final int capacity;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    /**
+     * @param bufferSize size of every buffer
+     * @param capacity max number of idle buffers kept
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        if (bufferSize < 256) {
+            throw new IllegalArgumentException("Buffer size must be at least 256 bytes");
+        }
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return a cleared buffer
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back, it must not be used afterwards.
+     * @param buffer buffer taken from this pool
+     */
+    public void release(ByteBuffer buffer) {
+        if (pooled.incrementAndGet() <= capacity) {
+            free.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return number of buffers allocated so far, it stops growing once the pool is warm
+     */
+    public int getAllocated() {
+        return allocated.get();
+    }
+}
@@ -0,0 +1,18 @@
+package http;
+
+/**
+ * Request the server cannot serve, answered with the given status.
+ * @author victor.
+ */
+final class HttpException extends Exception {
+    private final HttpStatus status;
+
+    HttpException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    HttpStatus getStatus() {
+        return status;
+    }
+}
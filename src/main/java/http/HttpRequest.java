@@ -0,0 +1,167 @@
+package http;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP/1.x request, parsed out of a connection read buffer. Bodies are sized by Content-Length, chunked requests are
+ * not supported.
+ * @author victor.
+ */
+final class HttpRequest {
+    private final String method;
+    private final String path;
+    private final String query;
+    private final byte[] body;
+    private final boolean keepAlive;
+    private final boolean http10;
+
+    private HttpRequest(String method, String path, String query, byte[] body, boolean keepAlive, boolean http10) {
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.body = body;
+        this.keepAlive = keepAlive;
+        this.http10 = http10;
+    }
+
+    /**
+     * Parses the request at the buffer position, moving the position past it when complete.
+     * @param in buffer in read mode
+     * @return the request, null when it has not been fully received yet
+     * @throws HttpException if the request is malformed or cannot fit in the buffer
+     */
+    static HttpRequest parse(final ByteBuffer in) throws HttpException {
+        final int start = in.position();
+        final int headEnd = indexOfHeadEnd(in, start, in.limit());
+        if (headEnd < 0) {
+            if (in.limit() - start >= in.capacity()) {
+                throw new HttpException(HttpStatus.HEADERS_TOO_LARGE, "Request head too large");
+            }
+            return null;
+        }
+
+        final String[] lines = ascii(in, start, headEnd).split("\r\n");
+        final String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            throw new HttpException(HttpStatus.BAD_REQUEST, "Malformed request line");
+        }
+
+        final boolean http10 = "HTTP/1.0".equals(requestLine[2]);
+        boolean keepAlive = !http10;
+        int contentLength = 0;
+        for (int i = 1; i < lines.length; i++) {
+            final int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new HttpException(HttpStatus.BAD_REQUEST, "Malformed header");
+            }
+            final String name = lines[i].substring(0, colon).trim();
+            final String value = lines[i].substring(colon + 1).trim();
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                try {
+                    contentLength = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new HttpException(HttpStatus.BAD_REQUEST, "Malformed Content-Length");
+                }
+                if (contentLength < 0) {
+                    throw new HttpException(HttpStatus.BAD_REQUEST, "Malformed Content-Length");
+                }
+            } else if ("Connection".equalsIgnoreCase(name)) {
+                if ("close".equalsIgnoreCase(value)) {
+                    keepAlive = false;
+                } else if ("keep-alive".equalsIgnoreCase(value)) {
+                    keepAlive = true;
+                }
+            } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+                throw new HttpException(HttpStatus.BAD_REQUEST, "Transfer-Encoding is not supported");
+            }
+        }
+
+        final int bodyStart = headEnd + 4;
+        if (bodyStart - start + (long) contentLength > in.capacity()) {
+            throw new HttpException(HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large");
+        }
+        if (bodyStart + contentLength > in.limit()) {
+            return null;
+        }
+
+        final byte[] body = new byte[contentLength];
+        in.position(bodyStart);
+        in.get(body);
+
+        final String target = requestLine[1];
+        final int question = target.indexOf('?');
+        return new HttpRequest(
+                requestLine[0],
+                question < 0 ? target : target.substring(0, question),
+                question < 0 ? null : target.substring(question + 1),
+                body,
+                keepAlive,
+                http10);
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @param name query parameter name
+     * @return the decoded value of the first parameter with that name, null if there is none
+     * @throws HttpException if the value is not properly encoded
+     */
+    String getParameter(final String name) throws HttpException {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            final int equals = parameter.indexOf('=');
+            final String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (key.equals(name)) {
+                try {
+                    return equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+                } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+                    throw new HttpException(HttpStatus.BAD_REQUEST, "Malformed query parameter " + name);
+                }
+            }
+        }
+        return null;
+    }
+
+    String getBody() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @return true for an HTTP/1.0 request, whose connection is only kept alive when both sides say so
+     */
+    boolean isHttp10() {
+        return http10;
+    }
+
+    private static int indexOfHeadEnd(final ByteBuffer in, final int from, final int to) {
+        for (int i = from; i + 3 < to; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String ascii(final ByteBuffer in, final int from, final int to) {
+        final char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            chars[i - from] = (char) (in.get(i) & 0xFF);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,41 @@
+package http;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Response statuses the server answers with, each holding its encoded response head up to the Content-Length value.
+ * @author victor.
+ */
+enum HttpStatus {
+    OK(200, "OK"),
+    BAD_REQUEST(400, "Bad Request"),
+    NOT_FOUND(404, "Not Found"),
+    METHOD_NOT_ALLOWED(405, "Method Not Allowed"),
+    PAYLOAD_TOO_LARGE(413, "Payload Too Large"),
+    HEADERS_TOO_LARGE(431, "Request Header Fields Too Large"),
+    INTERNAL_SERVER_ERROR(500, "Internal Server Error");
+
+    private final int code;
+    private final String reason;
+    private final byte[] head;
+
+    HttpStatus(int code, String reason) {
+        this.code = code;
+        this.reason = reason;
+        this.head = ("HTTP/1.1 " + code + " " + reason
+                + "\r\nContent-Type: application/json; charset=utf-8\r\nContent-Length: ")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    String getReason() {
+        return reason;
+    }
+
+    byte[] getHead() {
+        return head;
+    }
+}
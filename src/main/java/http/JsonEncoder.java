@@ -0,0 +1,54 @@
+package http;
+
+import data.Result;
+
+import java.util.List;
+
+/**
+ * Encodes check results as JSON straight into a response buffer, named after the Result properties:
+ * {"success":false,"outcome":"TAKEN","messg":"...","suggestedUsernames":["..."]}
+ * @author victor.
+ */
+final class JsonEncoder {
+    private JsonEncoder() {
+    }
+
+    static void encode(final Result result, final ResponseBuffer out) {
+        out.putAscii(result.isSuccess() ? "{\"success\":true" : "{\"success\":false");
+        if (result.getOutcome() != null) {
+            out.putAscii(",\"outcome\":\"");
+            out.putAscii(result.getOutcome().name());
+            out.put((byte) '"');
+        }
+        if (result.getMessg() != null) {
+            out.putAscii(",\"messg\":");
+            out.putJsonString(result.getMessg());
+        }
+        out.putAscii(",\"suggestedUsernames\":[");
+        final List<String> suggestions = result.getSuggestedUsernames();
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (i > 0) {
+                out.put((byte) ',');
+            }
+            out.putJsonString(suggestions.get(i));
+        }
+        out.putAscii("]}");
+    }
+
+    static void encode(final List<Result> results, final ResponseBuffer out) {
+        out.put((byte) '[');
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) {
+                out.put((byte) ',');
+            }
+            encode(results.get(i), out);
+        }
+        out.put((byte) ']');
+    }
+
+    static void encodeError(final String message, final ResponseBuffer out) {
+        out.putAscii("{\"error\":");
+        out.putJsonString(message);
+        out.put((byte) '}');
+    }
+}
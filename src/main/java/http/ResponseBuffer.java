@@ -0,0 +1,130 @@
+package http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Response being encoded straight into pooled buffers, chained as the body grows.
+ * Room is left in front of the body for the response head, written once the body length is known, so that neither
+ * the body nor the head is ever copied.
+ * @author victor.
+ */
+final class ResponseBuffer {
+    // enough for the longest status head, the Content-Length value and a "Connection: keep-alive" header
+    static final int HEAD_ROOM = 160;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] CONNECTION_CLOSE = "Connection: close\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION_KEEP_ALIVE =
+            "Connection: keep-alive\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final BufferPool pool;
+    private final List<ByteBuffer> buffers = new ArrayList<>(2);
+    private ByteBuffer current;
+    private long length;
+
+    ResponseBuffer(BufferPool pool) {
+        this.pool = pool;
+        this.current = pool.acquire();
+        current.position(HEAD_ROOM);
+        buffers.add(current);
+    }
+
+    void put(final byte b) {
+        if (!current.hasRemaining()) {
+            current = pool.acquire();
+            buffers.add(current);
+        }
+        current.put(b);
+        length++;
+    }
+
+    /**
+     * @param ascii text known to hold ASCII chars only, JSON punctuation and keys for instance
+     */
+    void putAscii(final String ascii) {
+        for (int i = 0, len = ascii.length(); i < len; i++) {
+            put((byte) ascii.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the text as a quoted, escaped and UTF-8 encoded JSON string.
+     * @param text text
+     */
+    void putJsonString(final CharSequence text) {
+        put((byte) '"');
+        for (int i = 0, len = text.length(); i < len; ) {
+            final int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+            if (cp == '"' || cp == '\\') {
+                put((byte) '\\');
+                put((byte) cp);
+            } else if (cp < 0x20) {
+                putAscii("\\u00");
+                put(HEX[cp >>> 4]);
+                put(HEX[cp & 0xF]);
+            } else if (cp < 0x80) {
+                put((byte) cp);
+            } else if (cp < 0x800) {
+                put((byte) (0xC0 | (cp >>> 6)));
+                put((byte) (0x80 | (cp & 0x3F)));
+            } else if (cp < 0x10000) {
+                put((byte) (0xE0 | (cp >>> 12)));
+                put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                put((byte) (0xF0 | (cp >>> 18)));
+                put((byte) (0x80 | ((cp >>> 12) & 0x3F)));
+                put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                put((byte) (0x80 | (cp & 0x3F)));
+            }
+        }
+        put((byte) '"');
+    }
+
+    /**
+     * Writes the response head in front of the body and hands the buffers over, flipped and ready to be written.
+     * @param status response status
+     * @param keepAlive false to tell the client the connection is closed after this response
+     * @param http10 true when answering an HTTP/1.0 request, whose client only keeps the connection alive when told
+     * @param out where the buffers go, in order
+     */
+    void finish(final HttpStatus status, final boolean keepAlive, final boolean http10,
+                final Collection<ByteBuffer> out) {
+        final String contentLength = Long.toString(length);
+        final byte[] head = status.getHead();
+        final byte[] connection = !keepAlive ? CONNECTION_CLOSE : http10 ? CONNECTION_KEEP_ALIVE : null;
+        final int headLength = head.length + contentLength.length() + CRLF.length
+                + (connection != null ? connection.length : 0) + CRLF.length;
+
+        final ByteBuffer first = buffers.get(0);
+        int pos = HEAD_ROOM - headLength;
+        pos = putAt(first, pos, head);
+        for (int i = 0; i < contentLength.length(); i++) {
+            first.put(pos++, (byte) contentLength.charAt(i));
+        }
+        pos = putAt(first, pos, CRLF);
+        if (connection != null) {
+            pos = putAt(first, pos, connection);
+        }
+        putAt(first, pos, CRLF);
+
+        for (ByteBuffer buffer : buffers) {
+            buffer.flip();
+        }
+        first.position(HEAD_ROOM - headLength);
+        out.addAll(buffers);
+        buffers.clear();
+    }
+
+    private static int putAt(final ByteBuffer buffer, int pos, final byte[] bytes) {
+        for (byte b : bytes) {
+            buffer.put(pos++, b);
+        }
+        return pos;
+    }
+}
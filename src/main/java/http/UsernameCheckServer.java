@@ -0,0 +1,514 @@
+package http;
+
+import data.Result;
+import metrics.ICounter;
+import metrics.IMetricsRegistry;
+import service.IUserService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non blocking HTTP/1.1 front end of the user service, a single selector thread serving every connection.
+ * <ul>
+ *     <li>GET /check?username=... checks a username and answers its Result as JSON.</li>
+ *     <li>POST /check with one username per line in the body checks them as a batch and answers a JSON array of
+ *     Results, in the same order.</li>
+ * </ul>
+ * Connections are kept alive and requests may be pipelined, responses going back in request order as their checks
+ * complete. Checks run on the given executor, single ones going through the non blocking checkUsernameAsync(), so
+ * that the selector thread only parses requests and encodes and writes responses. Requests are read into and
+ * responses encoded into pooled buffers, so a warm server only allocates the parsed request and the Result itself.
+ * A connection failing to be served is closed on its own, the others go on. Failing to accept connections (out of
+ * file descriptors for instance) pauses accepting for a moment, pending connections wait in the backlog meanwhile.
+ * @author victor.
+ */
+public class UsernameCheckServer implements Closeable {
+    // requests in flight per connection, reading from it is paused past that until responses are written
+    private static final int MAX_PIPELINED = 64;
+    private static final String CHECK_PATH = "/check";
+    private static final long ACCEPT_PAUSE_MILLIS = 100;
+    // failed checks are logged, clients only get told that much
+    private static final String INTERNAL_ERROR = "Internal error";
+    private static final Logger LOGGER = Logger.getLogger(UsernameCheckServer.class.getName());
+
+    private final IUserService userService;
+    private final Executor checkExecutor;
+    private final BufferPool pool;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final SelectionKey acceptKey;
+    private final Thread selectorThread;
+    // connections having responses completed off the selector thread
+    private final ConcurrentLinkedQueue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private final List<Connection> connections = new ArrayList<>();
+    private volatile boolean running = true;
+    // nanoTime accepting was paused at after a failure, only meaningful while acceptPaused
+    private long acceptPausedAt;
+    private boolean acceptPaused;
+    private volatile ICounter acceptFailures;
+    private volatile ICounter connectionFailures;
+    private volatile ICounter checkFailures;
+
+    /**
+     * Binds the server, it serves nothing until started.
+     * @param userService user service
+     * @param address address to listen on, port 0 picks a free one
+     * @param checkExecutor executor checks run on
+     * @param pool buffers requests are read into and responses encoded into, its buffer size bounds the request size
+     * @throws IOException if the address cannot be bound
+     */
+    public UsernameCheckServer(IUserService userService, InetSocketAddress address, Executor checkExecutor,
+                               BufferPool pool) throws IOException {
+        if (userService == null) {
+            throw new IllegalArgumentException("User service cannot be null");
+        }
+        if (checkExecutor == null || pool == null) {
+            throw new IllegalArgumentException("Check executor and buffer pool cannot be null");
+        }
+        this.userService = userService;
+        this.checkExecutor = checkExecutor;
+        this.pool = pool;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        this.acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.selectorThread = new Thread(this::run, "http-selector");
+        setMetricsRegistry(IMetricsRegistry.NOOP);
+    }
+
+    public void start() {
+        selectorThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Binds the failure counters to the registry, metrics are discarded until one is set.
+     * @param metricsRegistry metrics registry
+     */
+    public void setMetricsRegistry(IMetricsRegistry metricsRegistry) {
+        if (metricsRegistry == null) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        acceptFailures = metricsRegistry.counter("http.accept.failures");
+        connectionFailures = metricsRegistry.counter("http.connection.failures");
+        checkFailures = metricsRegistry.counter("http.check.failures");
+    }
+
+    /**
+     * Stops serving, open connections are dropped.
+     * @throws IOException if the listening socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            if (selectorThread.isAlive()) {
+                selectorThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                try {
+                    selector.select(acceptPaused ? ACCEPT_PAUSE_MILLIS : 0);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Selector failed", e);
+                }
+                if (acceptPaused
+                        && System.nanoTime() - acceptPausedAt >= TimeUnit.MILLISECONDS.toNanos(ACCEPT_PAUSE_MILLIS)) {
+                    acceptPaused = false;
+                    acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                }
+
+                Connection connection;
+                while ((connection = completed.poll()) != null) {
+                    connection.scheduled.set(false);
+                    try {
+                        connection.flush();
+                    } catch (RuntimeException e) {
+                        failed(connection, e);
+                    }
+                }
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (RuntimeException e) {
+                        failed(connection, e);
+                    }
+                }
+            }
+        } finally {
+            new ArrayList<>(connections).forEach(Connection::close);
+        }
+    }
+
+    private void accept() {
+        while (true) {
+            final SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                // out of file descriptors most likely, retrying right away would only spin on the same failure
+                acceptFailures.increment();
+                LOGGER.log(Level.WARNING, "Cannot accept connections, pausing for " + ACCEPT_PAUSE_MILLIS + "ms", e);
+                acceptPaused = true;
+                acceptPausedAt = System.nanoTime();
+                acceptKey.interestOps(0);
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                final Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connections.add(connection);
+            } catch (IOException e) {
+                acceptFailures.increment();
+                LOGGER.log(Level.FINE, "Cannot set the accepted connection up", e);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // dropped anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops a connection its serving failed for, a bug rather than a client or network failure, which are answered
+     * or closed on the spot.
+     */
+    private void failed(final Connection connection, final RuntimeException e) {
+        connectionFailures.increment();
+        LOGGER.log(Level.SEVERE, "Dropping a connection serving failed for", e);
+        connection.close();
+    }
+
+    private void checkFailed(final Exchange exchange, final Throwable failure) {
+        checkFailures.increment();
+        LOGGER.log(Level.WARNING, "Check failed, answering an internal error", failure);
+        exchange.complete(HttpStatus.INTERNAL_SERVER_ERROR, INTERNAL_ERROR);
+    }
+
+    private void schedule(final Connection connection) {
+        // completed on the selector thread, the connection flushes right after dispatching anyway
+        if (Thread.currentThread() != selectorThread && connection.scheduled.compareAndSet(false, true)) {
+            completed.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * A request and, once its check completes, what to answer.
+     */
+    private static final class Exchange {
+        private final boolean keepAlive;
+        private final boolean http10;
+        private HttpStatus status;
+        // Result, List of Results or error message
+        private Object body;
+        private volatile boolean done;
+
+        private Exchange(boolean keepAlive, boolean http10) {
+            this.keepAlive = keepAlive;
+            this.http10 = http10;
+        }
+
+        private void complete(final HttpStatus status, final Object body) {
+            this.status = status;
+            this.body = body;
+            this.done = true;
+        }
+    }
+
+    /**
+     * Connection state, only ever touched by the selector thread but for the scheduled flag.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final ArrayDeque<Exchange> exchanges = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private final ByteBuffer[] writing = new ByteBuffer[16];
+        private SelectionKey key;
+        // write mode, null while nothing is buffered
+        private ByteBuffer in;
+        // no more requests are taken, the connection closes once the responses are written
+        private boolean closing;
+        // the client is done sending, the connection closes once the requests it sent are answered
+        private boolean eof;
+        private boolean closed;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read() {
+            if (in == null) {
+                in = pool.acquire();
+            }
+            try {
+                if (closing && exchanges.isEmpty() && out.isEmpty()) {
+                    // discarded, the responses have all been sent
+                    in.clear();
+                }
+                if (channel.read(in) < 0) {
+                    eof = true;
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            flush();
+        }
+
+        /**
+         * Takes the buffered requests, encodes the responses completed so far in request order and writes them.
+         */
+        private void flush() {
+            if (closed) {
+                return;
+            }
+
+            while (parse() | encode()) {
+                // a full pipeline may have room again for buffered requests
+            }
+            if (in != null && in.position() == 0) {
+                pool.release(in);
+                in = null;
+            }
+            if (!write()) {
+                return;
+            }
+
+            if (eof && exchanges.isEmpty() && out.isEmpty()) {
+                close();
+                return;
+            }
+            if (closing && exchanges.isEmpty() && out.isEmpty()) {
+                // closing right away would reset the connection over unread requests, and the client could lose the
+                // last responses with it: the client is told with a FIN and is read from until it closes its side
+                try {
+                    channel.shutdownOutput();
+                } catch (IOException e) {
+                    close();
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            int interest = 0;
+            if (!closing && !eof && exchanges.size() < MAX_PIPELINED) {
+                interest |= SelectionKey.OP_READ;
+            }
+            if (!out.isEmpty()) {
+                interest |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(interest);
+        }
+
+        private boolean parse() {
+            if (in == null || in.position() == 0 || closing) {
+                return false;
+            }
+
+            boolean parsed = false;
+            in.flip();
+            try {
+                HttpRequest request;
+                while (!closing && exchanges.size() < MAX_PIPELINED && (request = HttpRequest.parse(in)) != null) {
+                    dispatch(request);
+                    parsed = true;
+                }
+            } catch (HttpException e) {
+                final Exchange exchange = new Exchange(false, false);
+                exchange.complete(e.getStatus(), e.getMessage());
+                exchanges.add(exchange);
+                closing = true;
+                parsed = true;
+                in.position(in.limit());
+            }
+            in.compact();
+            return parsed;
+        }
+
+        private void dispatch(final HttpRequest request) {
+            final Exchange exchange = new Exchange(request.isKeepAlive(), request.isHttp10());
+            exchanges.add(exchange);
+            if (!request.isKeepAlive()) {
+                closing = true;
+            }
+
+            final CompletableFuture<?> check;
+            try {
+                check = check(request);
+            } catch (HttpException e) {
+                exchange.complete(e.getStatus(), e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                checkFailed(exchange, e);
+                return;
+            }
+            check.whenComplete((body, failure) -> {
+                if (failure != null) {
+                    checkFailed(exchange, failure);
+                } else {
+                    exchange.complete(HttpStatus.OK, body);
+                }
+                schedule(this);
+            });
+        }
+
+        private CompletableFuture<?> check(final HttpRequest request) throws HttpException {
+            if (!CHECK_PATH.equals(request.getPath())) {
+                throw new HttpException(HttpStatus.NOT_FOUND, "No such resource " + request.getPath());
+            }
+
+            if ("GET".equals(request.getMethod())) {
+                final String username = request.getParameter("username");
+                if (username == null) {
+                    throw new HttpException(HttpStatus.BAD_REQUEST, "Missing username parameter");
+                }
+                // started off the selector thread, validation and in-process lookups run before the first wait
+                return CompletableFuture.supplyAsync(() -> userService.checkUsernameAsync(username), checkExecutor)
+                        .thenCompose(Function.identity());
+            }
+
+            if ("POST".equals(request.getMethod())) {
+                final List<String> usernames = new ArrayList<>();
+                for (String line : request.getBody().split("\n")) {
+                    final String username = line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+                    if (!username.isEmpty()) {
+                        usernames.add(username);
+                    }
+                }
+                return CompletableFuture.supplyAsync(() -> userService.checkUsernames(usernames), checkExecutor);
+            }
+
+            throw new HttpException(HttpStatus.METHOD_NOT_ALLOWED, request.getMethod() + " is not allowed");
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean encode() {
+            boolean encoded = false;
+            while (!exchanges.isEmpty() && exchanges.peek().done) {
+                final Exchange exchange = exchanges.poll();
+                final ResponseBuffer response = new ResponseBuffer(pool);
+                if (exchange.status != HttpStatus.OK) {
+                    JsonEncoder.encodeError((String) exchange.body, response);
+                } else if (exchange.body instanceof Result) {
+                    JsonEncoder.encode((Result) exchange.body, response);
+                } else {
+                    JsonEncoder.encode((List<Result>) exchange.body, response);
+                }
+                response.finish(exchange.status, exchange.keepAlive, exchange.http10, out);
+                encoded = true;
+            }
+            return encoded;
+        }
+
+        /**
+         * @return false if the connection got closed
+         */
+        private boolean write() {
+            try {
+                while (!out.isEmpty()) {
+                    int count = 0;
+                    for (ByteBuffer buffer : out) {
+                        writing[count++] = buffer;
+                        if (count == writing.length) {
+                            break;
+                        }
+                    }
+                    channel.write(writing, 0, count);
+                    final boolean drained = !writing[count - 1].hasRemaining();
+                    Arrays.fill(writing, 0, count, null);
+                    while (!out.isEmpty() && !out.peek().hasRemaining()) {
+                        pool.release(out.poll());
+                    }
+                    if (!drained) {
+                        // the socket buffer is full, the rest goes once it is writable again
+                        break;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                close();
+                return false;
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections.remove(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // dropped anyway
+            }
+            if (in != null) {
+                pool.release(in);
+                in = null;
+            }
+            out.forEach(pool::release);
+            out.clear();
+            exchanges.clear();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package metrics;
+
+/**
+ * Monotonic event counter.
+ * @author victor.
+ */
+public interface ICounter {
+    void add(long delta);
+
+    default void increment() {
+        add(1);
+    }
+
+    long getCount();
+}
@@ -0,0 +1,26 @@
+package metrics;
+
+/**
+ * Hands out named counters and timers.
+ * Callers are expected to look their instruments up once and keep them, the hot path only records values and never
+ * formats anything.
+ * @author victor.
+ */
+public interface IMetricsRegistry {
+    /**
+     * Registry discarding everything, for when nobody is interested in the metrics.
+     */
+    IMetricsRegistry NOOP = new NoopMetricsRegistry();
+
+    /**
+     * @param name metric name
+     * @return the counter registered under the name, created on first use
+     */
+    ICounter counter(String name);
+
+    /**
+     * @param name metric name
+     * @return the timer registered under the name, created on first use
+     */
+    ITimer timer(String name);
+}
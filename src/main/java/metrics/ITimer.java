@@ -0,0 +1,19 @@
+package metrics;
+
+/**
+ * Records how long something took.
+ * Durations are only added up, so recording stays cheap; averages are worked out when reporting.
+ * @author victor.
+ */
+public interface ITimer {
+    /**
+     * @param nanos elapsed time, as the difference of two System.nanoTime() readings
+     */
+    void record(long nanos);
+
+    long getCount();
+
+    long getTotalNanos();
+
+    long getMaxNanos();
+}
@@ -0,0 +1,92 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory registry backed by striped adders, so threads recording at the same time do not contend.
+ * Nothing is formatted until report() is called.
+ * @author victor.
+ */
+public class MetricsRegistry implements IMetricsRegistry {
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public ICounter counter(final String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    @Override
+    public ITimer timer(final String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /**
+     * Formats the current value of every metric, one per line and sorted by name.
+     * @return metrics report
+     */
+    public String report() {
+        final Map<String, String> lines = new ConcurrentSkipListMap<>();
+        counters.forEach((name, counter) -> lines.put(name, String.format("%s count=%d", name, counter.getCount())));
+        timers.forEach((name, timer) -> {
+            final long count = timer.getCount();
+            lines.put(name, String.format("%s count=%d mean=%.1fus max=%.1fus", name, count,
+                    count == 0 ? 0.0 : micros(timer.getTotalNanos()) / count, micros(timer.getMaxNanos())));
+        });
+
+        final StringBuilder sb = new StringBuilder();
+        lines.values().forEach(line -> sb.append(line).append(System.lineSeparator()));
+        return sb.toString();
+    }
+
+    private static double micros(long nanos) {
+        return (double) nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    private static final class Counter implements ICounter {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void add(long delta) {
+            count.add(delta);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    private static final class Timer implements ITimer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        @Override
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package metrics;
+
+/**
+ * Registry whose instruments ignore every recorded value.
+ * @author victor.
+ */
+final class NoopMetricsRegistry implements IMetricsRegistry {
+    private static final ICounter COUNTER = new ICounter() {
+        @Override
+        public void add(long delta) {
+        }
+
+        @Override
+        public long getCount() {
+            return 0;
+        }
+    };
+
+    private static final ITimer TIMER = new ITimer() {
+        @Override
+        public void record(long nanos) {
+        }
+
+        @Override
+        public long getCount() {
+            return 0;
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return 0;
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return 0;
+        }
+    };
+
+    @Override
+    public ICounter counter(String name) {
+        return COUNTER;
+    }
+
+    @Override
+    public ITimer timer(String name) {
+        return TIMER;
+    }
+}
@@ -1,32 +1,44 @@
 package service;
 
-import java.util.Random;
-
 /**
  * Base class with utility code for extending decorators.
  * @author victor.
  */
 public abstract class BaseTextDecorator implements TextDecorator {
-    protected static final Random RANDOM = new Random();
-
     private TextDecorator wrapped;
+    private final IRandomSource random;
 
     public BaseTextDecorator(TextDecorator wrapped) {
+        this(wrapped, IRandomSource.threadLocal());
+    }
+
+    public BaseTextDecorator(TextDecorator wrapped, IRandomSource random) {
         if (wrapped == null) {
             throw new IllegalArgumentException("Wrapped decorator cannot be null");
         }
+        if (random == null) {
+            throw new IllegalArgumentException("Random source cannot be null");
+        }
         this.wrapped = wrapped;
+        this.random = random;
     }
 
     public TextDecorator getWrapped() {
         return wrapped;
     }
 
+    /**
+     * @return random source the decorations are drawn from
+     */
+    protected final IRandomSource random() {
+        return random;
+    }
+
     /**
      * Tells the current decorator if any decoration should be executed
      * @return true if it is, false if not
      */
     protected final boolean allowDecoration() {
-        return RANDOM.nextBoolean();
+        return random.nextBoolean();
     }
 }
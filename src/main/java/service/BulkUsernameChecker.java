@@ -0,0 +1,433 @@
+package service;
+
+import data.IUserProvider;
+import data.IUsernameReservations;
+import data.Outcome;
+import validation.IUserValidator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks whole username files, one username per line or CSV files holding them in the first column, writing a
+ * "username,OUTCOME" line per checked username. Blank lines are skipped, and so is the header line of CSV files
+ * having one when told, suggestions are not generated.
+ * The file goes through a pipeline of stages, each on a thread of its own, handing over chunks of usernames:
+ * reading and decoding, then validation and restriction, then availability, then writing. A fixed set of chunks goes
+ * round the pipeline, so a slow stage holds the ones before it back and memory use does not depend on the file size.
+ * Usernames stay in the chunk char arrays and are looked up through reusable views, Strings are only built when a
+ * lookup needs one.
+ * A file is checked on the validator and User source in place when its check starts, reloads meanwhile apply to the
+ * next file.
+ * @author victor.
+ */
+public class BulkUsernameChecker {
+    private static final int CHUNK_CHARS = 1 << 18;
+    private static final int CHUNK_USERNAMES = 1 << 15;
+    // one per stage plus slack, so that stages rarely wait on each other for an empty chunk
+    private static final int CHUNKS = 6;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final byte[][] OUTCOME_SUFFIXES = new byte[OUTCOMES.length][];
+
+    static {
+        for (Outcome outcome : OUTCOMES) {
+            OUTCOME_SUFFIXES[outcome.ordinal()] = ("," + outcome.name() + "\n").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final IUserValidator userValidator;
+    private final IUserProvider userProvider;
+    // usernames reserved by ongoing signups are reported as taken
+    private final IUsernameReservations reservations;
+
+    /**
+     * @param userValidator user validator
+     * @param userProvider User source
+     * @param reservations reservations the usernames are checked against, null if there are none
+     */
+    public BulkUsernameChecker(IUserValidator userValidator, IUserProvider userProvider,
+                               IUsernameReservations reservations) {
+        if (userValidator == null || userProvider == null) {
+            throw new IllegalArgumentException("User validator and user provider cannot be null");
+        }
+        this.userValidator = userValidator;
+        this.userProvider = userProvider;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Checks every username in the input file.
+     * @param input UTF-8 file, one username per line or CSV with the username in the first column
+     * @param output file the results are written to, replaced if it exists
+     * @return number of usernames checked by outcome
+     * @throws IOException if a file cannot be read or written, or a line is too long to be a username
+     */
+    public Summary check(final Path input, final Path output) throws IOException {
+        return check(input, output, false);
+    }
+
+    /**
+     * Checks every username in the input file.
+     * @param input UTF-8 file, one username per line or CSV with the username in the first column
+     * @param output file the results are written to, replaced if it exists
+     * @param header true if the first line is a CSV header, it is then neither checked nor written
+     * @return number of usernames checked by outcome
+     * @throws IOException if a file cannot be read or written, or a line is too long to be a username
+     */
+    public Summary check(final Path input, final Path output, final boolean header) throws IOException {
+        final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNKS);
+        for (int i = 0; i < CHUNKS; i++) {
+            free.add(new Chunk());
+        }
+        final BlockingQueue<Chunk> toScreen = new ArrayBlockingQueue<>(CHUNKS);
+        final BlockingQueue<Chunk> toLookUp = new ArrayBlockingQueue<>(CHUNKS);
+        final BlockingQueue<Chunk> toWrite = new ArrayBlockingQueue<>(CHUNKS);
+        final Summary summary = new Summary();
+        final CheckSnapshot snapshot = CheckSnapshot.of(userValidator, userProvider);
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            final Pipeline pipeline = new Pipeline();
+            pipeline.stage("bulk-screen", () -> {
+                final CharSlice username = new CharSlice();
+                boolean last;
+                do {
+                    final Chunk chunk = toScreen.take();
+                    screen(chunk, username, snapshot.getUserValidator());
+                    // read before handing the chunk over, once written it may come back round holding the input end
+                    last = chunk.last;
+                    toLookUp.put(chunk);
+                } while (!last);
+            });
+            pipeline.stage("bulk-lookup", () -> {
+                final CharSlice username = new CharSlice();
+                boolean last;
+                do {
+                    final Chunk chunk = toLookUp.take();
+                    lookUp(chunk, username, snapshot.getUserProvider());
+                    last = chunk.last;
+                    toWrite.put(chunk);
+                } while (!last);
+            });
+            pipeline.stage("bulk-writer", () -> {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+                boolean last;
+                do {
+                    final Chunk chunk = toWrite.take();
+                    write(chunk, buffer, out, summary);
+                    last = chunk.last;
+                    free.put(chunk);
+                } while (!last);
+                buffer.flip();
+                drain(buffer, out);
+            });
+
+            try {
+                read(in, header, free, toScreen);
+            } catch (IOException | RuntimeException e) {
+                pipeline.fail(e);
+            } catch (InterruptedException e) {
+                // a stage failed, see below
+            }
+            pipeline.join();
+        }
+        return summary;
+    }
+
+    /**
+     * Decodes the input into chunks of usernames.
+     */
+    private static void read(final FileChannel in, final boolean header, final BlockingQueue<Chunk> free,
+                             final BlockingQueue<Chunk> next) throws IOException, InterruptedException {
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        // partial line at the end of a chunk, it starts the next one
+        final char[] carry = new char[CHUNK_CHARS];
+        int carried = 0;
+        boolean skipLine = header;
+        boolean inputDone = false;
+        boolean flushed = false;
+        boolean last;
+        do {
+            final Chunk chunk = free.take();
+            chunk.count = 0;
+            System.arraycopy(carry, 0, chunk.chars, 0, carried);
+            final CharBuffer chars = CharBuffer.wrap(chunk.chars);
+            chars.position(carried);
+
+            // the input may be all decoded while the lines left over still fill chunks
+            boolean finished = flushed;
+            while (!finished && chars.hasRemaining()) {
+                if (!inputDone && bytes.hasRemaining() && in.read(bytes) < 0) {
+                    inputDone = true;
+                }
+                bytes.flip();
+                final boolean overflow = decoder.decode(bytes, chars, inputDone).isOverflow();
+                bytes.compact();
+                if (overflow) {
+                    break;
+                }
+                if (inputDone && bytes.position() == 0) {
+                    decoder.flush(chars);
+                    flushed = true;
+                    finished = true;
+                }
+            }
+
+            final int end = chars.position();
+            int lineStart = 0;
+            for (int i = 0; i < end && chunk.count < CHUNK_USERNAMES; i++) {
+                if (chunk.chars[i] == '\n') {
+                    if (skipLine) {
+                        skipLine = false;
+                    } else {
+                        chunk.addLine(lineStart, i);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart == 0 && end == CHUNK_CHARS) {
+                throw new IOException("Line longer than " + CHUNK_CHARS + " chars, not a username file?");
+            }
+
+            carried = end - lineStart;
+            if (finished && chunk.count < CHUNK_USERNAMES) {
+                // last line without a line break, the header itself for a file holding nothing else
+                if (!skipLine) {
+                    chunk.addLine(lineStart, end);
+                }
+                carried = 0;
+            }
+            System.arraycopy(chunk.chars, lineStart, carry, 0, carried);
+            last = finished && carried == 0;
+            chunk.last = last;
+            next.put(chunk);
+        } while (!last);
+    }
+
+    /**
+     * Validation and restriction, local to the process.
+     */
+    private static void screen(final Chunk chunk, final CharSlice username, final IUserValidator userValidator) {
+        for (int i = 0; i < chunk.count; i++) {
+            username.set(chunk.chars, chunk.starts[i], chunk.ends[i]);
+            final Outcome outcome;
+            if (!userValidator.isValid(username)) {
+                outcome = Outcome.INVALID;
+            } else if (userValidator.isRestricted(username)) {
+                outcome = Outcome.RESTRICTED;
+            } else {
+                outcome = Outcome.AVAILABLE;
+            }
+            chunk.outcomes[i] = (byte) outcome.ordinal();
+        }
+    }
+
+    /**
+     * Availability, taken usernames are reported as such even when restricted, as UserService does.
+     */
+    private void lookUp(final Chunk chunk, final CharSlice username, final IUserProvider userProvider) {
+        for (int i = 0; i < chunk.count; i++) {
+            if (chunk.outcomes[i] == Outcome.INVALID.ordinal()) {
+                continue;
+            }
+            username.set(chunk.chars, chunk.starts[i], chunk.ends[i]);
+            if (userProvider.exists(username) || reservations != null && reservations.isReserved(username)) {
+                chunk.outcomes[i] = (byte) Outcome.TAKEN.ordinal();
+            }
+        }
+    }
+
+    private static void write(final Chunk chunk, final ByteBuffer buffer, final FileChannel out, final Summary summary)
+            throws IOException {
+        for (int i = 0; i < chunk.count; i++) {
+            final int start = chunk.starts[i];
+            final int end = chunk.ends[i];
+            final byte[] suffix = OUTCOME_SUFFIXES[chunk.outcomes[i]];
+            if (buffer.remaining() < 3 * (end - start) + suffix.length) {
+                buffer.flip();
+                drain(buffer, out);
+                buffer.clear();
+            }
+
+            for (int c = start; c < end; c++) {
+                final char ch = chunk.chars[c];
+                if (ch < 0x80) {
+                    buffer.put((byte) ch);
+                } else if (ch < 0x800) {
+                    buffer.put((byte) (0xC0 | (ch >>> 6)));
+                    buffer.put((byte) (0x80 | (ch & 0x3F)));
+                } else if (Character.isHighSurrogate(ch) && c + 1 < end
+                        && Character.isLowSurrogate(chunk.chars[c + 1])) {
+                    final int cp = Character.toCodePoint(ch, chunk.chars[++c]);
+                    buffer.put((byte) (0xF0 | (cp >>> 18)));
+                    buffer.put((byte) (0x80 | ((cp >>> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (cp & 0x3F)));
+                } else {
+                    buffer.put((byte) (0xE0 | (ch >>> 12)));
+                    buffer.put((byte) (0x80 | ((ch >>> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (ch & 0x3F)));
+                }
+            }
+            buffer.put(suffix);
+            summary.counts[chunk.outcomes[i]]++;
+        }
+    }
+
+    private static void drain(final ByteBuffer buffer, final FileChannel out) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Usernames of a stretch of the input, and their outcomes as they go through the stages.
+     */
+    private static final class Chunk {
+        private final char[] chars = new char[CHUNK_CHARS];
+        private final int[] starts = new int[CHUNK_USERNAMES];
+        private final int[] ends = new int[CHUNK_USERNAMES];
+        private final byte[] outcomes = new byte[CHUNK_USERNAMES];
+        private int count;
+        private boolean last;
+
+        /**
+         * Takes the username out of a line: the first CSV column, trimmed and unquoted. Blank ones are skipped.
+         */
+        private void addLine(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (chars[i] == ',') {
+                    end = i;
+                    break;
+                }
+            }
+            while (start < end && Character.isWhitespace(chars[start])) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(chars[end - 1])) {
+                end--;
+            }
+            if (end - start >= 2 && chars[start] == '"' && chars[end - 1] == '"') {
+                start++;
+                end--;
+            }
+            if (start < end) {
+                starts[count] = start;
+                ends[count] = end;
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Stage threads, the first failure stops them all.
+     */
+    private static final class Pipeline {
+        private final List<Thread> stages = new ArrayList<>();
+        private final Thread reader = Thread.currentThread();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private void stage(final String name, final Stage stage) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    stage.run();
+                } catch (InterruptedException e) {
+                    // stopped because another stage failed
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            }, name);
+            thread.setDaemon(true);
+            stages.add(thread);
+            thread.start();
+        }
+
+        private void fail(final Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                stages.forEach(Thread::interrupt);
+                reader.interrupt();
+            }
+        }
+
+        private void join() throws IOException {
+            boolean interrupted = false;
+            for (Thread stage : stages) {
+                while (true) {
+                    try {
+                        stage.join();
+                        break;
+                    } catch (InterruptedException e) {
+                        // the interrupt meant for the reader may land here
+                        interrupted = true;
+                    }
+                }
+            }
+            final Throwable e = failure.get();
+            if (e == null) {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            // the reader interrupt is not meant to outlive the check
+            Thread.interrupted();
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new IllegalStateException("Bulk check failed", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Number of usernames checked by outcome.
+     */
+    public static final class Summary {
+        private final long[] counts = new long[OUTCOMES.length];
+
+        public long getCount(Outcome outcome) {
+            return counts[outcome.ordinal()];
+        }
+
+        public long getTotal() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Summary{total=").append(getTotal());
+            for (Outcome outcome : OUTCOMES) {
+                sb.append(", ").append(outcome.name().toLowerCase()).append('=').append(counts[outcome.ordinal()]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+}
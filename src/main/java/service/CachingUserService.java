@@ -0,0 +1,327 @@
+package service;
+
+import data.IRegistrationListener;
+import data.IReservationListener;
+import data.IUsernameReservations;
+import data.Outcome;
+import data.Result;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User service decorator caching check results, so repeated checks of popular usernames never reach the User source.
+ * Entries are bounded in number (oldest evicted first) and expire after a time to live. Once a username is registered
+ * its own entry and every entry suggesting it are dropped, and all of them are once the data is reloaded.
+ * Usernames taken only for being reserved are not cached, their reservation may expire any time.
+ * @author victor.
+ */
+public class CachingUserService implements IUserService, IRegistrationListener, IReservationListener {
+    private final IUserService delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    // suggested username -> usernames whose cached Result lists it
+    private final Map<String, Set<String>> suggestedBy = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    // also counts entries already gone from the cache, so the queue cannot grow unbounded with them
+    private final AtomicInteger queued = new AtomicInteger();
+    // bumped on every registration, reservation change and data reload, results computed across one are not cached as
+    // they might be stale already
+    private final AtomicLong registrations = new AtomicLong();
+    private volatile IUsernameReservations reservations;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param delegate wrapped user service
+     * @param maxSize max number of cached results
+     * @param ttl how long results are cached
+     * @param ttlUnit time unit of ttl
+     */
+    public CachingUserService(IUserService delegate, int maxSize, long ttl, TimeUnit ttlUnit) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Wrapped user service cannot be null");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache max size must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlUnit.toNanos(ttl);
+    }
+
+    @Override
+    public Result checkUsername(final String wantedUsername) {
+        final String username = wantedUsername.trim();
+        final Result cached = lookup(username);
+        if (cached != null) {
+            return copy(cached);
+        }
+
+        final long version = registrations.get();
+        final Result result = delegate.checkUsername(username);
+        store(username, result, version);
+        return copy(result);
+    }
+
+    /**
+     * Serves the cached usernames and checks the rest with a single batch on the wrapped service.
+     * @param usernames provided usernames
+     * @return one Result per provided username, in the same order
+     */
+    @Override
+    public List<Result> checkUsernames(final Collection<String> usernames) {
+        final Map<String, Result> results = new LinkedHashMap<>();
+        final List<String> missing = new ArrayList<>();
+        for (String wantedUsername : usernames) {
+            final String username = wantedUsername.trim();
+            if (!results.containsKey(username)) {
+                final Result cached = lookup(username);
+                results.put(username, cached);
+                if (cached == null) {
+                    missing.add(username);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            final long version = registrations.get();
+            final List<Result> checked = delegate.checkUsernames(missing);
+            for (int i = 0; i < missing.size(); i++) {
+                results.put(missing.get(i), checked.get(i));
+                store(missing.get(i), checked.get(i), version);
+            }
+        }
+
+        final List<Result> ordered = new ArrayList<>(usernames.size());
+        for (String wantedUsername : usernames) {
+            ordered.add(copy(results.get(wantedUsername.trim())));
+        }
+        return ordered;
+    }
+
+    @Override
+    public CompletableFuture<Result> checkUsernameAsync(final String wantedUsername) {
+        final String username = wantedUsername.trim();
+        final Result cached = lookup(username);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(copy(cached));
+        }
+
+        final long version = registrations.get();
+        return delegate.checkUsernameAsync(username).thenApply(result -> {
+            store(username, result, version);
+            return copy(result);
+        });
+    }
+
+    /**
+     * Drops the cached Result of the registered username and every cached Result suggesting it.
+     * @param username registered username
+     */
+    @Override
+    public void onRegistered(final String username) {
+        registrations.incrementAndGet();
+        invalidate(username);
+        final Set<String> affected = suggestedBy.remove(username);
+        if (affected != null) {
+            affected.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * Drops the cached Result of the reserved username and every cached Result suggesting it, as for a registration.
+     * @param username reserved username
+     */
+    @Override
+    public void onReserved(final String username) {
+        onRegistered(username);
+    }
+
+    /**
+     * Drops the cached Result of the username given back, in case it got cached as taken meanwhile.
+     * @param username username no longer reserved
+     */
+    @Override
+    public void onReleased(final String username) {
+        registrations.incrementAndGet();
+        invalidate(username);
+    }
+
+    /**
+     * Keeps the cache in line with the reservations: reserving or giving a username back drops its entries, and
+     * usernames reported as taken while reserved are not cached.
+     * @param reservations reservations the wrapped service checks against
+     */
+    public void setReservations(IUsernameReservations reservations) {
+        if (reservations == null) {
+            throw new IllegalArgumentException("Reservations cannot be null");
+        }
+        this.reservations = reservations;
+        reservations.addReservationListener(this);
+    }
+
+    /**
+     * Drops every cached Result, for when the data they were worked out of has been replaced (see DataReloader).
+     */
+    public void invalidateAll() {
+        registrations.incrementAndGet();
+        for (Entry entry : cache.values()) {
+            if (remove(entry)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of results dropped for being too old or to make room
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of results dropped because of a registration or a reload
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private Result lookup(final String username) {
+        final Entry entry = cache.get(username);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (entry.expiresAt - System.nanoTime() < 0) {
+            if (remove(entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.result;
+    }
+
+    private void store(final String username, final Result result, final long version) {
+        if (registrations.get() != version || isReservedOnly(username, result)) {
+            return;
+        }
+
+        final Entry entry = new Entry(username, result, System.nanoTime() + ttlNanos);
+        final Entry previous = cache.put(username, entry);
+        if (previous != null) {
+            unindex(previous);
+        }
+        for (String suggestion : result.getSuggestedUsernames()) {
+            suggestedBy.compute(suggestion, (s, usernames) -> {
+                final Set<String> updated = usernames != null ? usernames : ConcurrentHashMap.newKeySet();
+                updated.add(username);
+                return updated;
+            });
+        }
+        insertionOrder.add(entry);
+        queued.incrementAndGet();
+
+        // a registration may have slipped in meanwhile and missed this entry
+        if (registrations.get() != version) {
+            remove(entry);
+            return;
+        }
+
+        Entry oldest;
+        while ((cache.size() > maxSize || queued.get() > 2 * maxSize) && (oldest = insertionOrder.poll()) != null) {
+            queued.decrementAndGet();
+            if (remove(oldest)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * @return true if the username may be reported as taken only because it is reserved, the reservation expiring
+     * unnoticed
+     */
+    private boolean isReservedOnly(final String username, final Result result) {
+        final IUsernameReservations current = reservations;
+        return current != null && result.getOutcome() == Outcome.TAKEN && current.isReserved(username);
+    }
+
+    private void invalidate(final String username) {
+        final Entry entry = cache.get(username);
+        if (entry != null && remove(entry)) {
+            invalidations.increment();
+        }
+    }
+
+    private boolean remove(final Entry entry) {
+        if (!cache.remove(entry.username, entry)) {
+            return false;
+        }
+        unindex(entry);
+        return true;
+    }
+
+    private void unindex(final Entry entry) {
+        for (String suggestion : entry.result.getSuggestedUsernames()) {
+            suggestedBy.computeIfPresent(suggestion, (s, usernames) -> {
+                usernames.remove(entry.username);
+                return usernames.isEmpty() ? null : usernames;
+            });
+        }
+    }
+
+    private static Result copy(final Result result) {
+        final Result copy = new Result(
+                result.isSuccess(),
+                Collections.unmodifiableList(result.getSuggestedUsernames()),
+                result.getMessg());
+        copy.setUsername(result.getUsername());
+        copy.setOutcome(result.getOutcome());
+        return copy;
+    }
+
+    private static final class Entry {
+        private final String username;
+        private final Result result;
+        private final long expiresAt;
+
+        private Entry(String username, Result result, long expiresAt) {
+            this.username = username;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Reusable, growable char buffer holding a username candidate while it is being decorated.
+ * Decorators edit it in place, and it can be checked (restriction, duplicates) as a CharSequence, so a String is only
+ * built for the candidates that survive those checks.
+ * @author victor.
+ */
+public final class CandidateBuffer implements CharSequence {
+    private static final int MAX_INT_DIGITS = 11;
+
+    private char[] chars;
+    private int length;
+
+    public CandidateBuffer(int capacity) {
+        this.chars = new char[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Replaces the content of the buffer.
+     * @param text new content
+     * @return this buffer
+     */
+    public CandidateBuffer reset(CharSequence text) {
+        length = 0;
+        ensureCapacity(text.length());
+        for (int i = 0, len = text.length(); i < len; i++) {
+            chars[i] = text.charAt(i);
+        }
+        length = text.length();
+        return this;
+    }
+
+    public CandidateBuffer append(char c) {
+        ensureCapacity(length + 1);
+        chars[length++] = c;
+        return this;
+    }
+
+    /**
+     * Appends the decimal representation of the value, as String.valueOf(int) would write it.
+     * @param value value
+     * @return this buffer
+     */
+    public CandidateBuffer append(int value) {
+        ensureCapacity(length + MAX_INT_DIGITS);
+        if (value == Integer.MIN_VALUE) {
+            for (char c : String.valueOf(value).toCharArray()) {
+                chars[length++] = c;
+            }
+            return this;
+        }
+        if (value < 0) {
+            chars[length++] = '-';
+            value = -value;
+        }
+
+        final int start = length;
+        do {
+            chars[length++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // digits were written least significant first
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            final char c = chars[i];
+            chars[i] = chars[j];
+            chars[j] = c;
+        }
+        return this;
+    }
+
+    /**
+     * Appends a copy of a range of the buffer itself with its first character in upper case.
+     * @param start range start (inclusive)
+     * @param end range end (exclusive)
+     * @return this buffer
+     */
+    public CandidateBuffer appendCapitalized(int start, int end) {
+        checkRange(start, end);
+        if (start == end) {
+            return this;
+        }
+        ensureCapacity(length + end - start);
+        chars[length++] = Character.toUpperCase(chars[start]);
+        System.arraycopy(chars, start + 1, chars, length, end - start - 1);
+        length += end - start - 1;
+        return this;
+    }
+
+    /**
+     * Inserts a character, shifting the following ones.
+     * @param index position to insert at
+     * @param c character
+     * @return this buffer
+     */
+    public CandidateBuffer insert(int index, char c) {
+        checkRange(index, length);
+        ensureCapacity(length + 1);
+        System.arraycopy(chars, index, chars, index + 1, length - index);
+        chars[index] = c;
+        length++;
+        return this;
+    }
+
+    /**
+     * @param text a text
+     * @return true if the buffer holds the same characters as the text
+     */
+    public boolean contentEquals(CharSequence text) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        checkRange(start, end);
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * Materializes the candidate.
+     * @return String holding the current content
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package service;
+
+/**
+ * Minimal open addressing set of Strings that can be probed with any CharSequence, so a candidate still sitting in a
+ * CandidateBuffer can be found a duplicate without turning it into a String first.
+ * Not thread safe, meant to live within a single suggestions generation.
+ * @author victor.
+ */
+final class CandidateSet {
+    private String[] table = new String[32];
+    private int size;
+
+    /**
+     * @param text text
+     * @return true if a String with the same characters was added
+     */
+    boolean contains(CharSequence text) {
+        final int mask = table.length - 1;
+        for (int slot = hash(text) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            if (table[slot].contentEquals(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param value value
+     * @return true if the value was not there yet
+     */
+    boolean add(String value) {
+        if (contains(value)) {
+            return false;
+        }
+        // load factor kept under 1/2
+        if ((size + 1) * 2 > table.length) {
+            resize();
+        }
+        insert(table, value);
+        size++;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        final String[] resized = new String[table.length * 2];
+        for (String value : table) {
+            if (value != null) {
+                insert(resized, value);
+            }
+        }
+        table = resized;
+    }
+
+    private static void insert(String[] table, String value) {
+        final int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+    }
+
+    private static int hash(CharSequence text) {
+        // same as String.hashCode() (cached by Strings), spread so that linear probing gets well mixed low bits
+        int h = 0;
+        if (text instanceof String) {
+            h = text.hashCode();
+        } else {
+            for (int i = 0, len = text.length(); i < len; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,42 @@
+package service;
+
+/**
+ * Reusable view over a range of a char array, lets a slice be handed to CharSequence based lookups without copying
+ * it into a String.
+ * @author victor.
+ */
+final class CharSlice implements CharSequence {
+    private char[] chars;
+    private int start;
+    private int length;
+
+    CharSlice set(final char[] chars, final int start, final int end) {
+        this.chars = chars;
+        this.start = start;
+        this.length = end - start;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return chars[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(final int from, final int to) {
+        return toString().substring(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, start, length);
+    }
+}
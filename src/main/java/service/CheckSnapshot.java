@@ -0,0 +1,40 @@
+package service;
+
+import data.IUserProvider;
+import validation.IUserValidator;
+
+/**
+ * Validator and User source a check runs on from start to end, suggestions included. They are pinned to what they are
+ * when the snapshot is taken (see IUserValidator.snapshot() and IUserProvider.snapshot()), so a check never mixes the
+ * restricted words of before a reload with the usernames of after it (or the other way round).
+ * @author victor.
+ */
+public final class CheckSnapshot {
+    private final IUserValidator userValidator;
+    private final IUserProvider userProvider;
+
+    private CheckSnapshot(IUserValidator userValidator, IUserProvider userProvider) {
+        this.userValidator = userValidator;
+        this.userProvider = userProvider;
+    }
+
+    /**
+     * @param userValidator user validator, reloadable or not
+     * @param userProvider User source, reloadable or not
+     * @return snapshot of what the validator and the User source are now
+     */
+    public static CheckSnapshot of(final IUserValidator userValidator, final IUserProvider userProvider) {
+        if (userValidator == null || userProvider == null) {
+            throw new IllegalArgumentException("User validator and user provider cannot be null");
+        }
+        return new CheckSnapshot(userValidator.snapshot(), userProvider.snapshot());
+    }
+
+    public IUserValidator getUserValidator() {
+        return userValidator;
+    }
+
+    public IUserProvider getUserProvider() {
+        return userProvider;
+    }
+}
@@ -0,0 +1,228 @@
+package service;
+
+import metrics.ICounter;
+import metrics.IMetricsRegistry;
+import metrics.ITimer;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches data files (restricted words, existent users...) and hands their entries over to be reloaded whenever they
+ * change, so they are picked up without a restart. Reloads run one at a time on a background thread: the replacement
+ * data is built there while checks keep running on the current one, then swapped in (see ReloadableUserValidator and
+ * ReloadableUserProvider).
+ * A reload failing (unreadable file, bad data) leaves the current data in place, the next change retries it.
+ * @author victor.
+ */
+public class DataReloader implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(DataReloader.class.getName());
+    // how long the writes to a file are let settle before reloading it, editors and copies write in several steps
+    private static final long SETTLE_MILLIS = 100;
+
+    // watched file (absolute) -> reload
+    private final Map<Path, Consumer<List<String>>> reloads = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirs = new HashSet<>();
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    private WatchService watchService;
+    private boolean closed;
+
+    private ITimer reloadTimer;
+    private ICounter versionCounter;
+    private ICounter failureCounter;
+
+    public DataReloader() {
+        setMetricsRegistry(IMetricsRegistry.NOOP);
+    }
+
+    /**
+     * Reads the entries of a data file: one or more per line, comma separated. Blank entries are skipped.
+     * @param file data file
+     * @return entries in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> readEntries(final Path file) throws IOException {
+        final List<String> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.indexOf(',') < 0) {
+                // one per line, as big files are
+                final String trimmed = line.trim();
+                if (!trimmed.isEmpty()) {
+                    entries.add(trimmed);
+                }
+                continue;
+            }
+            for (String entry : line.split(",")) {
+                final String trimmed = entry.trim();
+                if (!trimmed.isEmpty()) {
+                    entries.add(trimmed);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Starts watching a data file, the watching thread is started along with the first one.
+     * @param file data file
+     * @param reload builds the replacement data out of the file entries and swaps it in
+     * @throws IOException if the file directory cannot be watched
+     */
+    public synchronized void watch(final Path file, final Consumer<List<String>> reload) throws IOException {
+        if (reload == null) {
+            throw new IllegalArgumentException("Reload cannot be null");
+        }
+        if (closed) {
+            throw new IllegalStateException("Data reloader is closed");
+        }
+        final Path watched = file.toAbsolutePath().normalize();
+        if (watched.getParent() == null) {
+            throw new IllegalArgumentException("Cannot watch " + file);
+        }
+
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            final Thread watcher = new Thread(this::watchFiles, "data-reloader");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        // files replaced by a rename (as editors save them) show up as created
+        if (watchedDirs.add(watched.getParent())) {
+            watched.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        reloads.put(watched, reload);
+    }
+
+    /**
+     * Reloads a watched data file right away, on the calling thread.
+     * @param file data file
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void reload(final Path file) throws IOException {
+        final Consumer<List<String>> reload = reloads.get(file.toAbsolutePath().normalize());
+        if (reload == null) {
+            throw new IllegalArgumentException(file + " is not watched");
+        }
+
+        final long start = System.nanoTime();
+        try {
+            reload.accept(readEntries(file));
+        } catch (IOException | RuntimeException e) {
+            failureCounter.increment();
+            throw e;
+        }
+        reloadTimer.record(System.nanoTime() - start);
+        version.incrementAndGet();
+        versionCounter.increment();
+        reloadListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * @param listener run after every reload, once the replacement data is in place
+     */
+    public void addReloadListener(final Runnable listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Reload listener cannot be null");
+        }
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * @return number of reloads done, 0 while the data loaded at startup is in place
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Stops watching, the data in place stays as it is.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Binds the reload instruments to the registry, metrics are discarded until one is set.
+     * @param metricsRegistry metrics registry
+     */
+    @Autowired(required = false)
+    public void setMetricsRegistry(IMetricsRegistry metricsRegistry) {
+        if (metricsRegistry == null) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        reloadTimer = metricsRegistry.timer("reload.duration");
+        versionCounter = metricsRegistry.counter("reload.version");
+        failureCounter = metricsRegistry.counter("reload.failures");
+    }
+
+    private void watchFiles() {
+        try {
+            while (true) {
+                final Set<Path> changed = new LinkedHashSet<>();
+                collect(watchService.take(), changed);
+                // the events raised meanwhile are about the same writes
+                WatchKey key;
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                for (Path file : changed) {
+                    try {
+                        reload(file);
+                    } catch (IOException | RuntimeException e) {
+                        // counted, the current data stays until the file changes again
+                        LOGGER.log(Level.WARNING, "Reload of " + file + " failed, keeping the current data", e);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collect(final WatchKey key, final Set<Path> changed) {
+        final Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, every file of the directory may have changed
+                reloads.keySet().stream().filter(file -> dir.equals(file.getParent())).forEach(changed::add);
+            } else {
+                final Path file = dir.resolve((Path) event.context());
+                if (reloads.containsKey(file)) {
+                    changed.add(file);
+                }
+            }
+        }
+        key.reset();
+    }
+}
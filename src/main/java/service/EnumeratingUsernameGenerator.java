@@ -0,0 +1,220 @@
+package service;
+
+import data.IAsyncUserProvider;
+import data.IUserProvider;
+import data.IUsernameReservations;
+import metrics.IMetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import validation.IUserValidator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * Generates username suggestions strings walking the candidate space in a fixed, ranked order (see
+ * UsernameCandidates) instead of decorating at random.
+ * It stops as soon as it has enough suggestions, and both the candidates it examines and the store round trips it
+ * makes are bounded, so the work per request is predictable and the same input always gets the same suggestions
+ * (as long as the store does not change).
+ * @author victor.
+ */
+public class EnumeratingUsernameGenerator implements IUsernameGenerator {
+    private static final int USERNAME_LIST_MAX_SIZE = 14;
+    private static final int GENERATE_MAX_LOOKUPS = 4;
+    private static final int GENERATE_MAX_CANDIDATES = 256;
+
+    @Autowired private IUserValidator userValidator;
+    @Autowired private IUserProvider userProvider;
+    // usernames reserved by ongoing signups are not suggested
+    @Autowired(required = false) private IUsernameReservations reservations;
+    private FanOutLookup fanOutLookup;
+    private boolean prefixQueries = true;
+    private SuggestionMetrics metrics = new SuggestionMetrics(IMetricsRegistry.NOOP);
+
+    /**
+     * Generate a list of suggested username strings based on the initial, best ranked first.
+     * Restricted candidates are skipped before looking them up, and each batch of candidates is looked up at once. When
+     * the User source has a prefix index, a single prefix query answers for the candidates extending the initial
+     * username: the taken ones never make it to a batch, and only the others are looked up.
+     * @param initial initial username
+     * @return a list of strings representing the suggested username lists
+     */
+    @Override
+    public List<String> generateSuggestions(String initial) {
+        return generateSuggestions(initial, CheckSnapshot.of(userValidator, userProvider));
+    }
+
+    @Override
+    public List<String> generateSuggestions(String initial, CheckSnapshot snapshot) {
+        final IUserProvider userProvider = snapshot.getUserProvider();
+        final Attempt attempt = new Attempt(initial, snapshot.getUserValidator(),
+                prefixLookup(userProvider).map(lookup -> lookup.load(initial)).orElse(null));
+        List<String> candidates;
+        while (!(candidates = attempt.nextCandidates()).isEmpty()) {
+            attempt.accept(candidates, findTaken(userProvider, attempt.matches, candidates));
+        }
+        return attempt.suggestions();
+    }
+
+    /**
+     * Non blocking counterpart of generateSuggestions().
+     * @param initial initial username
+     * @return future completed with a list of strings representing the suggested username lists
+     */
+    @Override
+    public CompletableFuture<List<String>> generateSuggestionsAsync(String initial) {
+        return generateSuggestionsAsync(initial, CheckSnapshot.of(userValidator, userProvider));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> generateSuggestionsAsync(String initial, CheckSnapshot snapshot) {
+        final IAsyncUserProvider asyncUserProvider = IAsyncUserProvider.of(snapshot.getUserProvider());
+        return prefixLookup(snapshot.getUserProvider())
+                .map(lookup -> lookup.loadAsync(initial))
+                .orElseGet(() -> CompletableFuture.completedFuture(null))
+                .thenCompose(matches -> generateAsync(asyncUserProvider,
+                        new Attempt(initial, snapshot.getUserValidator(), matches)))
+                .thenApply(Attempt::suggestions);
+    }
+
+    private CompletableFuture<Attempt> generateAsync(final IAsyncUserProvider asyncUserProvider,
+                                                     final Attempt attempt) {
+        final List<String> candidates = attempt.nextCandidates();
+        if (candidates.isEmpty()) {
+            return CompletableFuture.completedFuture(attempt);
+        }
+
+        final CompletableFuture<Set<String>> taken = attempt.matches != null
+                ? attempt.matches.findTakenAsync(candidates, asyncUserProvider::findTakenAsync)
+                : asyncUserProvider.findTakenAsync(candidates);
+        return taken.thenCompose(found -> {
+            attempt.accept(candidates, found);
+            return generateAsync(asyncUserProvider, attempt);
+        });
+    }
+
+    /**
+     * Fans the candidate lookups of every batch out on the executor, at most maxConcurrentLookups at a time, so that
+     * a User source blocking on I/O pays the round trips side by side. Lookups run on the calling thread until one is
+     * set. Meant for virtual threads, see Executors.newVirtualThreadPerTaskExecutor().
+     * @param executor executor lookups run on
+     * @param maxConcurrentLookups max lookups in flight per generation
+     * @param maxLookupThreads max threads looking up at a time across every generation, past that generations look
+     * their candidates up on their own thread
+     */
+    public void setLookupExecutor(Executor executor, int maxConcurrentLookups, int maxLookupThreads) {
+        this.fanOutLookup = new FanOutLookup(executor, maxConcurrentLookups, maxLookupThreads);
+    }
+
+    /**
+     * Answers for the candidates extending the initial username with a single prefix query per generation whenever
+     * the User source has a prefix index (see IUserProvider.prefixIndex()), instead of looking them up batch after
+     * batch. On by default.
+     * @param prefixQueries false to look all the candidates up
+     */
+    public void setPrefixQueries(boolean prefixQueries) {
+        this.prefixQueries = prefixQueries;
+    }
+
+    /**
+     * @return lookup over the prefix index of the User source as it is now, empty if it has none
+     */
+    private Optional<PrefixLookup> prefixLookup(final IUserProvider userProvider) {
+        return prefixQueries ? userProvider.prefixIndex().map(PrefixLookup::new) : Optional.empty();
+    }
+
+    private Set<String> findTaken(final IUserProvider userProvider, final PrefixLookup.Matches matches,
+                                  final Collection<String> candidates) {
+        return matches != null
+                ? matches.findTaken(candidates, outOfPrefix -> findTaken(userProvider, outOfPrefix))
+                : findTaken(userProvider, candidates);
+    }
+
+    private Set<String> findTaken(final IUserProvider userProvider, final Collection<String> candidates) {
+        return fanOutLookup != null
+                ? fanOutLookup.findTaken(userProvider, candidates)
+                : userProvider.findTaken(candidates);
+    }
+
+    /**
+     * Binds the generation counters to the registry, metrics are discarded until one is set.
+     * @param metricsRegistry metrics registry
+     */
+    @Autowired(required = false)
+    public void setMetricsRegistry(IMetricsRegistry metricsRegistry) {
+        if (metricsRegistry == null) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        this.metrics = new SuggestionMetrics(metricsRegistry);
+    }
+
+    /**
+     * State of a single suggestions generation.
+     */
+    private final class Attempt {
+        private final Iterator<String> candidates;
+        // resumes from the initial username, only the edited parts of a candidate are scanned
+        private final Predicate<CharSequence> restricted;
+        // usernames held under the initial one, null without a prefix index
+        private final PrefixLookup.Matches matches;
+        private final List<String> suggestions = new ArrayList<>(USERNAME_LIST_MAX_SIZE);
+        private int examined;
+        private int failed;
+        private int lookups;
+
+        private Attempt(final String initial, final IUserValidator userValidator, final PrefixLookup.Matches matches) {
+            this.candidates = new UsernameCandidates(initial);
+            this.restricted = userValidator.restrictionCheck(initial);
+            this.matches = matches;
+        }
+
+        /**
+         * Takes as many non restricted candidates as suggestions are missing.
+         * @return batch of candidates to look up, empty when the attempt is over
+         */
+        private List<String> nextCandidates() {
+            final List<String> batch = new ArrayList<>();
+            if (lookups >= GENERATE_MAX_LOOKUPS) {
+                return batch;
+            }
+
+            final int needed = USERNAME_LIST_MAX_SIZE - suggestions.size();
+            while (batch.size() < needed && examined < GENERATE_MAX_CANDIDATES && candidates.hasNext()) {
+                final String candidate = candidates.next();
+                examined++;
+                if (restricted.test(candidate) || matches != null && matches.isTaken(candidate)) {
+                    failed++;
+                } else if (reservations == null || !reservations.isReserved(candidate)) {
+                    batch.add(candidate);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                lookups++;
+            }
+            return batch;
+        }
+
+        private void accept(final List<String> batch, final Set<String> taken) {
+            for (String candidate : batch) {
+                if (taken.contains(candidate)) {
+                    failed++;
+                } else {
+                    suggestions.add(candidate);
+                }
+            }
+        }
+
+        private List<String> suggestions() {
+            metrics.record(examined, failed);
+            return suggestions;
+        }
+    }
+}
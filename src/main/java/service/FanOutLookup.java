@@ -0,0 +1,90 @@
+package service;
+
+import data.IUserProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Looks a batch of usernames up as smaller batches running side by side, at most maxConcurrency of them at a time, the
+ * calling thread taking one of them. Meant for virtual threads over a User source blocking on I/O, whose batch lookup
+ * would otherwise pay its round trips one after the other.
+ * The threads started are bounded across every lookup as well, by maxThreads: past that the calling thread looks the
+ * smaller batches up itself, one after the other, rather than waiting for a thread.
+ * @author victor.
+ */
+final class FanOutLookup {
+    private final Executor executor;
+    private final int maxConcurrency;
+    // threads that may still be started, shared by every lookup
+    private final Semaphore threads;
+
+    FanOutLookup(Executor executor, int maxConcurrency, int maxThreads) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Lookup executor cannot be null");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrent lookups must be at least 1");
+        }
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("Max lookup threads must be at least 1");
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.threads = new Semaphore(maxThreads);
+    }
+
+    /**
+     * @param userProvider User source
+     * @param usernames usernames
+     * @return the usernames a user exists for
+     */
+    Set<String> findTaken(final IUserProvider userProvider, final Collection<String> usernames) {
+        final int parts = Math.min(maxConcurrency, usernames.size());
+        if (parts <= 1) {
+            return userProvider.findTaken(usernames);
+        }
+
+        final List<String> all = new ArrayList<>(usernames);
+        final List<CompletableFuture<Set<String>>> lookups = new ArrayList<>(parts - 1);
+        int inline = 1;
+        for (int part = parts - 1; part >= inline; part--) {
+            if (!threads.tryAcquire()) {
+                // the parts left go on the calling thread
+                inline = part + 1;
+                break;
+            }
+            final List<String> batch = all.subList(part * all.size() / parts, (part + 1) * all.size() / parts);
+            try {
+                lookups.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return userProvider.findTaken(batch);
+                    } finally {
+                        threads.release();
+                    }
+                }, executor));
+            } catch (RuntimeException e) {
+                threads.release();
+                throw e;
+            }
+        }
+
+        final Set<String> taken = new HashSet<>(userProvider.findTaken(all.subList(0, inline * all.size() / parts)));
+        try {
+            lookups.forEach(lookup -> taken.addAll(lookup.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return taken;
+    }
+}
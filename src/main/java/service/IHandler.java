@@ -1,8 +1,21 @@
 package service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author victor.
  */
 public interface IHandler<E, R> {
     void handle(E handled, R result);
+
+    /**
+     * Non blocking counterpart of handle(), handlers waiting on I/O should override it.
+     * @param handled handled object
+     * @param result result being built
+     * @return future completed once this handler (and the ones it passed the object on to) are done
+     */
+    default CompletableFuture<Void> handleAsync(E handled, R result) {
+        handle(handled, result);
+        return CompletableFuture.completedFuture(null);
+    }
 }
@@ -0,0 +1,35 @@
+package service;
+
+/**
+ * Source of the random numbers driving the username decorations.
+ * Implementations are safe to share between threads, without having them compete for a single seed.
+ * @author victor.
+ */
+public interface IRandomSource {
+    /**
+     * @param bound upper bound (exclusive), must be positive
+     * @return uniformly distributed value between 0 (inclusive) and bound (exclusive)
+     */
+    int nextInt(int bound);
+
+    boolean nextBoolean();
+
+    /**
+     * Source backed by ThreadLocalRandom, every thread draws from its own generator.
+     * @return thread local random source
+     */
+    static IRandomSource threadLocal() {
+        return ThreadLocalRandomSource.INSTANCE;
+    }
+
+    /**
+     * Reproducible source, every thread gets its own generator split off a seeded root one. A single thread always
+     * draws the same sequence for the same seed, and so do several threads as long as they first use the source in the
+     * same order.
+     * @param seed seed
+     * @return seeded random source
+     */
+    static IRandomSource seeded(long seed) {
+        return new SeededRandomSource(seed);
+    }
+}
@@ -2,9 +2,27 @@ package service;
 
 import data.Result;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author victor.
  */
 public interface IUserService {
     Result checkUsername(String username);
+
+    /**
+     * Checks a batch of usernames.
+     * @param usernames provided usernames
+     * @return one Result per provided username, in the same order
+     */
+    List<Result> checkUsernames(Collection<String> usernames);
+
+    /**
+     * Non blocking counterpart of checkUsername().
+     * @param username provided username
+     * @return future completed with the Result
+     */
+    CompletableFuture<Result> checkUsernameAsync(String username);
 }
@@ -1,10 +1,30 @@
 package service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author victor.
  */
 public interface IUsernameGenerator {
     List<String> generateSuggestions(String initial);
+
+    /**
+     * Generates the suggestions against the snapshot rather than the generator's own validator and User source, so
+     * that they agree with the rest of the check they are made for.
+     * @param initial initial username
+     * @param snapshot validator and User source of the check
+     * @return a list of strings representing the suggested username lists
+     */
+    List<String> generateSuggestions(String initial, CheckSnapshot snapshot);
+
+    CompletableFuture<List<String>> generateSuggestionsAsync(String initial);
+
+    /**
+     * Non blocking counterpart of generateSuggestions(initial, snapshot).
+     * @param initial initial username
+     * @param snapshot validator and User source of the check
+     * @return future completed with a list of strings representing the suggested username lists
+     */
+    CompletableFuture<List<String>> generateSuggestionsAsync(String initial, CheckSnapshot snapshot);
 }
@@ -0,0 +1,145 @@
+package service;
+
+import data.IPrefixIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Tells the suggestion candidates extending the initial username taken or free out of a single prefix query: the
+ * usernames held under the initial one are listed once per generation, instead of looking every batch of candidates
+ * up. Only the candidates not extending it (a '_' inserted inside the name) still need a lookup, and so do all of
+ * them when the initial username is too common to list what is under it. Pays off for the ranked enumeration, whose
+ * first candidates all extend the initial username; the random decorations insert a '_' in most of them.
+ * @author victor.
+ */
+final class PrefixLookup {
+    // past this many usernames under the prefix, looking the candidates up is cheaper than listing them
+    private static final int MAX_PREFIX_MATCHES = 1024;
+
+    private final IPrefixIndex prefixIndex;
+
+    PrefixLookup(IPrefixIndex prefixIndex) {
+        if (prefixIndex == null) {
+            throw new IllegalArgumentException("Prefix index cannot be null");
+        }
+        this.prefixIndex = prefixIndex;
+    }
+
+    /**
+     * Lists the usernames held under the initial one.
+     * @param initial initial username
+     * @return usernames under the initial one
+     */
+    Matches load(final String initial) {
+        final String prefix = prefixIndex.indexedForm(initial);
+        return matches(prefix, prefixIndex.findWithPrefix(prefix, MAX_PREFIX_MATCHES + 1));
+    }
+
+    /**
+     * Non blocking counterpart of load().
+     * @param initial initial username
+     * @return future completed with the usernames under the initial one
+     */
+    CompletableFuture<Matches> loadAsync(final String initial) {
+        final String prefix = prefixIndex.indexedForm(initial);
+        return prefixIndex.findWithPrefixAsync(prefix, MAX_PREFIX_MATCHES + 1).thenApply(held -> matches(prefix, held));
+    }
+
+    private Matches matches(final String prefix, final List<String> held) {
+        return new Matches(prefix, held.size() > MAX_PREFIX_MATCHES ? null : new HashSet<>(held));
+    }
+
+    /**
+     * Usernames held under a prefix, in indexed form.
+     */
+    final class Matches {
+        private final String prefix;
+        // null when there were too many to list
+        private final Set<String> held;
+
+        private Matches(String prefix, Set<String> held) {
+            this.prefix = prefix;
+            this.held = held;
+        }
+
+        /**
+         * @param candidate candidate
+         * @return true if the candidate extends the prefix and is held
+         */
+        boolean isTaken(final String candidate) {
+            if (held == null) {
+                return false;
+            }
+            final String indexed = prefixIndex.indexedForm(candidate);
+            return indexed.startsWith(prefix) && held.contains(indexed);
+        }
+
+        /**
+         * @param candidates candidates
+         * @param lookUp looks up the candidates out of the prefix
+         * @return the taken candidates
+         */
+        Set<String> findTaken(final Collection<String> candidates,
+                              final Function<Collection<String>, Set<String>> lookUp) {
+            if (held == null) {
+                return lookUp.apply(candidates);
+            }
+
+            final Set<String> taken = new HashSet<>();
+            final List<String> outOfPrefix = split(candidates, taken);
+            if (!outOfPrefix.isEmpty()) {
+                taken.addAll(lookUp.apply(outOfPrefix));
+            }
+            return taken;
+        }
+
+        /**
+         * Non blocking counterpart of findTaken().
+         * @param candidates candidates
+         * @param lookUp looks up the candidates out of the prefix
+         * @return future completed with the taken candidates
+         */
+        CompletableFuture<Set<String>> findTakenAsync(
+                final Collection<String> candidates,
+                final Function<Collection<String>, CompletableFuture<Set<String>>> lookUp) {
+            if (held == null) {
+                return lookUp.apply(candidates);
+            }
+
+            final Set<String> taken = new HashSet<>();
+            final List<String> outOfPrefix = split(candidates, taken);
+            if (outOfPrefix.isEmpty()) {
+                return CompletableFuture.completedFuture(taken);
+            }
+            return lookUp.apply(outOfPrefix).thenApply(found -> {
+                taken.addAll(found);
+                return taken;
+            });
+        }
+
+        /**
+         * Tells the candidates under the prefix apart.
+         * @param candidates candidates
+         * @param taken gets the held candidates under the prefix
+         * @return the candidates out of the prefix
+         */
+        private List<String> split(final Collection<String> candidates, final Set<String> taken) {
+            final List<String> outOfPrefix = new ArrayList<>();
+            for (String candidate : candidates) {
+                final String indexed = prefixIndex.indexedForm(candidate);
+                if (!indexed.startsWith(prefix)) {
+                    outOfPrefix.add(candidate);
+                } else if (held.contains(indexed)) {
+                    taken.add(candidate);
+                }
+            }
+            return outOfPrefix;
+        }
+    }
+}
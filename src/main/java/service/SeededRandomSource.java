@@ -0,0 +1,32 @@
+package service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded random source handing a SplittableRandom split off a common root to each thread.
+ * Only splitting touches shared state, once per thread.
+ * @author victor.
+ */
+final class SeededRandomSource implements IRandomSource {
+    private final SplittableRandom root;
+    private final ThreadLocal<SplittableRandom> perThread;
+
+    SeededRandomSource(long seed) {
+        this.root = new SplittableRandom(seed);
+        this.perThread = ThreadLocal.withInitial(this::split);
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return perThread.get().nextInt(bound);
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return perThread.get().nextInt(2) == 0;
+    }
+
+    private synchronized SplittableRandom split() {
+        return root.split();
+    }
+}
@@ -0,0 +1,27 @@
+package service;
+
+import metrics.ICounter;
+import metrics.IMetricsRegistry;
+
+/**
+ * Counters shared by the username generators: generations run, candidates examined and failed candidates (restricted
+ * or already taken). Each generation records its totals once, when it is over.
+ * @author victor.
+ */
+final class SuggestionMetrics {
+    private final ICounter generations;
+    private final ICounter candidates;
+    private final ICounter failures;
+
+    SuggestionMetrics(IMetricsRegistry metricsRegistry) {
+        this.generations = metricsRegistry.counter("generator.generations");
+        this.candidates = metricsRegistry.counter("generator.candidates");
+        this.failures = metricsRegistry.counter("generator.failures");
+    }
+
+    void record(int examined, int failed) {
+        generations.increment();
+        candidates.add(examined);
+        failures.add(failed);
+    }
+}
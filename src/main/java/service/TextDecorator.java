@@ -5,4 +5,13 @@ package service;
  */
 public interface TextDecorator {
     String decorate(String initial);
+
+    /**
+     * Decorates the candidate in place. Decorators on the suggestions hot path override it to edit the buffer without
+     * building intermediate Strings, by default the String based decoration is applied.
+     * @param candidate buffer holding the text to decorate
+     */
+    default void decorate(CandidateBuffer candidate) {
+        candidate.reset(decorate(candidate.toString()));
+    }
 }
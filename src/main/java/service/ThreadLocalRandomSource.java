@@ -0,0 +1,24 @@
+package service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random source backed by ThreadLocalRandom.
+ * @author victor.
+ */
+final class ThreadLocalRandomSource implements IRandomSource {
+    static final IRandomSource INSTANCE = new ThreadLocalRandomSource();
+
+    private ThreadLocalRandomSource() {
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return ThreadLocalRandom.current().nextBoolean();
+    }
+}
@@ -1,12 +1,31 @@
 package service;
 
+import data.IAsyncUserProvider;
 import data.IUserProvider;
+import data.IUsernameReservations;
+import data.Outcome;
 import data.Result;
 import data.User;
+import metrics.ICounter;
+import metrics.IMetricsRegistry;
+import metrics.ITimer;
 import org.springframework.beans.factory.annotation.Autowired;
 import validation.IUserValidator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service class with main logic to check for username availability.
@@ -16,85 +35,417 @@ public class UserService implements IUserService {
     @Autowired private IUserValidator userValidator;
     @Autowired private IUserProvider userProvider;
     @Autowired private IUsernameGenerator usernameGenerator;
+    // usernames reserved by ongoing signups are reported as taken
+    @Autowired(required = false) private IUsernameReservations reservations;
+
+    private static final int BATCH_CHUNK_SIZE = 64;
+
+    // where batch checks are fanned out to, and how many threads (the calling one included) may work on a batch
+    private Executor batchExecutor = ForkJoinPool.commonPool();
+    private int batchParallelism = Runtime.getRuntime().availableProcessors();
+    // when set, every check runs the blocking chain on a thread of its own taken from it, checkPermits bounding the
+    // checks in flight across the service
+    private Executor checkExecutor;
+    private Semaphore checkPermits;
+
+    // per stage timers and checks by outcome, bound to the metrics registry once (see setMetricsRegistry())
+    private ITimer validationTimer;
+    private ITimer availabilityTimer;
+    private ITimer restrictionTimer;
+    private ITimer suggestionsTimer;
+    private final ICounter[] outcomeCounters = new ICounter[Outcome.values().length];
 
     // Usage of "Chain of Responsibility" pattern to define a set of checks that will lead to a result of authorizing
     // the provided username or take the respective actions.
     // This way the checking logic is encapsulated in each handler making it more maintainable and easy to change in
     // the future.
-    private final IHandler<String, Result> handlerChain =
+    private final IHandler<Check, Result> handlerChain =
             new UsernameAvailabilityHandler(
                 new UsernameRestrictionHandler(
                         new UsernameAllowedHandler()));
 
+    public UserService() {
+        setMetricsRegistry(IMetricsRegistry.NOOP);
+    }
+
     /**
      * Checks if the provided username is OK after applying the defined handlers.
+     * Every stage runs on the validator and User source in place when the check starts, see CheckSnapshot.
      * @param wantedUsername provided username
      * @return Result object with information about the actual check.
      */
     public Result checkUsername(final String wantedUsername) {
+        return checkUsername(wantedUsername, snapshot());
+    }
+
+    private Result checkUsername(final String wantedUsername, final CheckSnapshot snapshot) {
         final String username = wantedUsername.trim();
-        System.out.println(String.format("Checking '%s' as '%s'", wantedUsername, username));
+        final Result invalid = validate(username, snapshot.getUserValidator());
+        if (invalid != null) {
+            return counted(invalid);
+        }
+
+        final Result result = new Result(false, null, null);
+        result.setUsername(username);
+        handlerChain.handle(new Check(username, snapshot), result);
+
+        return counted(result);
+    }
+
+    /**
+     * Checks if the provided username is OK after applying the defined handlers, without blocking on the User source.
+     * @param wantedUsername provided username
+     * @return future completed with the Result object with information about the actual check.
+     */
+    @Override
+    public CompletableFuture<Result> checkUsernameAsync(final String wantedUsername) {
+        if (checkExecutor != null) {
+            // waits for a permit on its own thread, the caller is not blocked
+            return CompletableFuture.supplyAsync(() -> {
+                acquireCheckPermit();
+                try {
+                    return checkUsername(wantedUsername);
+                } finally {
+                    checkPermits.release();
+                }
+            }, checkExecutor);
+        }
+
+        final CheckSnapshot snapshot = snapshot();
+        final String username = wantedUsername.trim();
+        final Result invalid = validate(username, snapshot.getUserValidator());
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(counted(invalid));
+        }
+
+        final Result result = new Result(false, null, null);
+        result.setUsername(username);
+        return handlerChain.handleAsync(new Check(username, snapshot), result).thenApply(v -> counted(result));
+    }
+
+    /**
+     * Checks a batch of usernames in parallel, on the batch executor or a thread per username (see setCheckExecutor()).
+     * Repeated usernames (once trimmed) are only checked once, every repetition getting a copy of the Result. The whole
+     * batch is checked on the validator and User source in place when it starts.
+     * @param usernames provided usernames
+     * @return one Result per provided username, in the same order
+     */
+    @Override
+    public List<Result> checkUsernames(final Collection<String> usernames) {
+        final Map<String, Integer> slots = new HashMap<>();
+        final List<String> distinct = new ArrayList<>();
+        final int[] slotOf = new int[usernames.size()];
+        int i = 0;
+        for (String wantedUsername : usernames) {
+            slotOf[i++] = slots.computeIfAbsent(wantedUsername.trim(), username -> {
+                distinct.add(username);
+                return distinct.size() - 1;
+            });
+        }
 
+        final Result[] checked = new Result[distinct.size()];
+        final CheckSnapshot snapshot = snapshot();
+        if (checkExecutor != null) {
+            checkEach(distinct, snapshot, checked);
+        } else {
+            checkChunks(distinct, snapshot, checked);
+        }
+
+        final List<Result> results = new ArrayList<>(slotOf.length);
+        final boolean[] handedOut = new boolean[checked.length];
+        for (int slot : slotOf) {
+            // callers own the results they get, repetitions must not see one another's changes
+            results.add(handedOut[slot] ? new Result(checked[slot]) : checked[slot]);
+            handedOut[slot] = true;
+        }
+        return results;
+    }
+
+    /**
+     * Checks every username on a thread of its own from the check executor, starting a thread only once a check permit
+     * is free so that a big batch does not start them all at once.
+     */
+    private void checkEach(final List<String> usernames, final CheckSnapshot snapshot, final Result[] checked) {
+        final CompletableFuture<?>[] checks = new CompletableFuture<?>[checked.length];
+        for (int i = 0; i < checked.length; i++) {
+            final int slot = i;
+            acquireCheckPermit();
+            try {
+                checks[i] = CompletableFuture.runAsync(() -> {
+                    try {
+                        checked[slot] = checkUsername(usernames.get(slot), snapshot);
+                    } finally {
+                        checkPermits.release();
+                    }
+                }, checkExecutor);
+            } catch (RuntimeException e) {
+                checkPermits.release();
+                throw e;
+            }
+        }
+        try {
+            CompletableFuture.allOf(checks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks the usernames in chunks claimed by the calling thread and up to batchParallelism - 1 batch executor
+     * threads.
+     */
+    private void checkChunks(final List<String> distinct, final CheckSnapshot snapshot, final Result[] checked) {
+        // Chunks rather than a task per username, so the hand off cost does not outweigh the checks themselves.
+        // The calling thread claims chunks as well and only waits for chunks already claimed by helpers, helpers
+        // starting late just find nothing left to do.
+        final int chunkCount = (checked.length + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final CountDownLatch pendingChunks = new CountDownLatch(chunkCount);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final Runnable worker = () -> {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                try {
+                    for (int slot = chunk * BATCH_CHUNK_SIZE,
+                         to = Math.min(slot + BATCH_CHUNK_SIZE, checked.length); slot < to; slot++) {
+                        checked[slot] = checkUsername(distinct.get(slot), snapshot);
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    pendingChunks.countDown();
+                }
+            }
+        };
+
+        for (int helper = Math.min(batchParallelism, chunkCount) - 1; helper > 0; helper--) {
+            batchExecutor.execute(worker);
+        }
+        worker.run();
+        try {
+            pendingChunks.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the batch check", e);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void acquireCheckPermit() {
+        try {
+            checkPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to check", e);
+        }
+    }
+
+    private CheckSnapshot snapshot() {
+        return CheckSnapshot.of(userValidator, userProvider);
+    }
+
+    /**
+     * Validates the username basics.
+     * @param username trimmed username
+     * @param userValidator validator of the check
+     * @return the invalid Result when the username is not valid, otherwise null
+     */
+    private Result validate(final String username, final IUserValidator userValidator) {
+        final long start = System.nanoTime();
         try {
             userValidator.validateUsername(username);
+            return null;
         } catch (RuntimeException e) {
-            return new Result(false, null, e.getMessage());
+            final Result result = new Result(false, null, e.getMessage());
+            result.setUsername(username);
+            result.setOutcome(Outcome.INVALID);
+            return result;
+        } finally {
+            validationTimer.record(System.nanoTime() - start);
         }
+    }
 
-        final Result result = new Result(false, null, null);
-        handlerChain.handle(username, result);
-
+    private Result counted(final Result result) {
+        outcomeCounters[result.getOutcome().ordinal()].increment();
         return result;
     }
 
-    private final class UsernameAvailabilityHandler extends UsernameHandler<String, Result> {
-        public UsernameAvailabilityHandler(IHandler<String, Result> next) {
+    private List<String> suggestions(final Check check) {
+        final long start = System.nanoTime();
+        try {
+            return usernameGenerator.generateSuggestions(check.username, check.snapshot);
+        } finally {
+            suggestionsTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    private CompletableFuture<Void> suggestionsAsync(final Check check, final Result result) {
+        final long start = System.nanoTime();
+        return usernameGenerator.generateSuggestionsAsync(check.username, check.snapshot).thenAccept(suggestions -> {
+            suggestionsTimer.record(System.nanoTime() - start);
+            result.setSuggestedUsernames(suggestions);
+        });
+    }
+
+    public void setBatchExecutor(Executor batchExecutor, int batchParallelism) {
+        if (batchExecutor == null) {
+            throw new IllegalArgumentException("Batch executor cannot be null");
+        }
+        if (batchParallelism < 1) {
+            throw new IllegalArgumentException("Batch parallelism must be at least 1");
+        }
+        this.batchExecutor = batchExecutor;
+        this.batchParallelism = batchParallelism;
+    }
+
+    /**
+     * Switches to a thread per check: batch checks start a thread per distinct username and checkUsernameAsync() runs
+     * the blocking check on a thread instead of chaining asynchronous lookups. Meant for virtual threads (see
+     * Executors.newVirtualThreadPerTaskExecutor()), so that checks blocking on a remote User source cost a parked
+     * virtual thread rather than a platform one. At most maxConcurrentChecks checks run at a time across the service,
+     * batches wait for a permit before starting a thread and asynchronous checks wait for one on their own thread.
+     * @param checkExecutor executor starting a thread per task
+     * @param maxConcurrentChecks max checks in flight
+     */
+    public void setCheckExecutor(Executor checkExecutor, int maxConcurrentChecks) {
+        if (checkExecutor == null) {
+            throw new IllegalArgumentException("Check executor cannot be null");
+        }
+        if (maxConcurrentChecks < 1) {
+            throw new IllegalArgumentException("Max concurrent checks must be at least 1");
+        }
+        this.checkPermits = new Semaphore(maxConcurrentChecks);
+        this.checkExecutor = checkExecutor;
+    }
+
+    /**
+     * Binds the check instruments to the registry, metrics are discarded until one is set.
+     * @param metricsRegistry metrics registry
+     */
+    @Autowired(required = false)
+    public void setMetricsRegistry(IMetricsRegistry metricsRegistry) {
+        if (metricsRegistry == null) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        validationTimer = metricsRegistry.timer("check.validation");
+        availabilityTimer = metricsRegistry.timer("check.availability");
+        restrictionTimer = metricsRegistry.timer("check.restriction");
+        suggestionsTimer = metricsRegistry.timer("check.suggestions");
+        for (Outcome outcome : Outcome.values()) {
+            outcomeCounters[outcome.ordinal()] =
+                    metricsRegistry.counter("check.outcome." + outcome.name().toLowerCase());
+        }
+    }
+
+    /**
+     * Username going through the handlers, along with what it is checked on.
+     */
+    private static final class Check {
+        private final String username;
+        private final CheckSnapshot snapshot;
+
+        private Check(String username, CheckSnapshot snapshot) {
+            this.username = username;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private final class UsernameAvailabilityHandler extends UsernameHandler<Check, Result> {
+        public UsernameAvailabilityHandler(IHandler<Check, Result> next) {
             super(next);
         }
 
         @Override
-        public void handle(final String username, final Result result) {
-            Optional<User> userOpt = userProvider.get(username);
-            if (userOpt.isPresent()) {
-                result.setSuccess(false);
-                result.setMessg(
-                    String.format(
-                        "Provided username '%s' is already taken. Here is some suggestions.",
-                        username));
-                result.setSuggestedUsernames(usernameGenerator.generateSuggestions(username));
+        public void handle(final Check check, final Result result) {
+            final long start = System.nanoTime();
+            final Optional<User> userOpt = check.snapshot.getUserProvider().get(check.username);
+            availabilityTimer.record(System.nanoTime() - start);
+            if (userOpt.isPresent() || isReserved(check.username)) {
+                taken(check.username, result);
+                result.setSuggestedUsernames(suggestions(check));
                 return;
             }
 
-            handleNext(username, result);
+            handleNext(check, result);
+        }
+
+        @Override
+        public CompletableFuture<Void> handleAsync(final Check check, final Result result) {
+            final long start = System.nanoTime();
+            return IAsyncUserProvider.of(check.snapshot.getUserProvider()).getAsync(check.username)
+                    .thenCompose(userOpt -> {
+                        availabilityTimer.record(System.nanoTime() - start);
+                        if (userOpt.isPresent() || isReserved(check.username)) {
+                            taken(check.username, result);
+                            return suggestionsAsync(check, result);
+                        }
+
+                        return handleNextAsync(check, result);
+                    });
+        }
+
+        private boolean isReserved(final String username) {
+            return reservations != null && reservations.isReserved(username);
+        }
+
+        private void taken(final String username, final Result result) {
+            result.setSuccess(false);
+            result.setOutcome(Outcome.TAKEN);
+            result.setMessg(Outcome.TAKEN.message(username));
         }
     }
 
-    private final class UsernameRestrictionHandler extends UsernameHandler<String, Result> {
-        public UsernameRestrictionHandler(IHandler<String, Result> next) {
+    private final class UsernameRestrictionHandler extends UsernameHandler<Check, Result> {
+        public UsernameRestrictionHandler(IHandler<Check, Result> next) {
             super(next);
         }
 
         @Override
-        public void handle(final String username, final Result result) {
-            if (userValidator.isRestricted(username)) {
-                result.setSuccess(false);
-                result.setMessg(
-                    String.format(
-                        "Provided username '%s' contains a restricted word. Here is some suggestions.",
-                        username));
-                result.setSuggestedUsernames(usernameGenerator.generateSuggestions(username));
+        public void handle(final Check check, final Result result) {
+            if (isRestricted(check)) {
+                restricted(check.username, result);
+                result.setSuggestedUsernames(suggestions(check));
                 return;
             }
 
-            handleNext(username, result);
+            handleNext(check, result);
+        }
+
+        @Override
+        public CompletableFuture<Void> handleAsync(final Check check, final Result result) {
+            if (isRestricted(check)) {
+                restricted(check.username, result);
+                return suggestionsAsync(check, result);
+            }
+
+            return handleNextAsync(check, result);
+        }
+
+        private boolean isRestricted(final Check check) {
+            final long start = System.nanoTime();
+            final boolean restricted = check.snapshot.getUserValidator().isRestricted(check.username);
+            restrictionTimer.record(System.nanoTime() - start);
+            return restricted;
+        }
+
+        private void restricted(final String username, final Result result) {
+            result.setSuccess(false);
+            result.setOutcome(Outcome.RESTRICTED);
+            result.setMessg(Outcome.RESTRICTED.message(username));
         }
     }
 
-    private final class UsernameAllowedHandler implements IHandler<String, Result> {
+    private final class UsernameAllowedHandler implements IHandler<Check, Result> {
         @Override
-        public void handle(final String handled, final Result result) {
+        public void handle(final Check handled, final Result result) {
             result.setSuccess(true);
-            result.setMessg(String.format("Provided username '%s' is available", handled));
+            result.setOutcome(Outcome.AVAILABLE);
+            result.setMessg(Outcome.AVAILABLE.message(handled.username));
         }
     }
 }
@@ -0,0 +1,84 @@
+package service;
+
+import org.springframework.util.StringUtils;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Lazily enumerates the variants of a username the decorators could produce, cheapest edits first and never twice.
+ * Variants are grouped by shape: a number suffix (1 to 10, with and without a '_' separator), a '_' delimiter inside
+ * the name, the capitalized name repeated, and then their combinations.
+ * @author victor.
+ */
+final class UsernameCandidates implements Iterator<String> {
+    private static final int SUFFIX = 1;
+    private static final int DELIMITER = 2;
+    private static final int REPEAT = 4;
+    // ranked by number of edits, then by how natural the edit looks
+    private static final int[] SHAPES = {
+            SUFFIX, DELIMITER, REPEAT,
+            REPEAT | SUFFIX, SUFFIX | DELIMITER, REPEAT | DELIMITER,
+            REPEAT | SUFFIX | DELIMITER};
+    private static final int SUFFIX_RANGE = 10;
+    private static final char SEPARATOR = '_';
+
+    private final String initial;
+    private final String repeated;
+    private final Set<String> seen = new HashSet<>();
+    private int shape;
+    private int index;
+    private String next;
+
+    UsernameCandidates(String initial) {
+        this.initial = initial;
+        this.repeated = initial + StringUtils.capitalize(initial);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && shape < SHAPES.length) {
+            final int flags = SHAPES[shape];
+            final String name = (flags & REPEAT) != 0 ? repeated : initial;
+            final int suffixes = (flags & SUFFIX) != 0 ? SUFFIX_RANGE * 2 : 1;
+            // the delimiter only goes inside the name, a '_' before the suffix is already a suffix variant
+            final int delimiters = (flags & DELIMITER) != 0 ? name.length() - 1 : 1;
+            if (index >= suffixes * delimiters) {
+                shape++;
+                index = 0;
+                continue;
+            }
+
+            final StringBuilder sb = new StringBuilder(name.length() + 4).append(name);
+            if ((flags & DELIMITER) != 0) {
+                sb.insert(index % delimiters + 1, SEPARATOR);
+            }
+            if ((flags & SUFFIX) != 0) {
+                final int suffix = index / delimiters;
+                if (suffix % 2 == 1) {
+                    sb.append(SEPARATOR);
+                }
+                sb.append(suffix / 2 + 1);
+            }
+            index++;
+
+            final String candidate = sb.toString();
+            if (!candidate.equals(initial) && seen.add(candidate)) {
+                next = candidate;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String candidate = next;
+        next = null;
+        return candidate;
+    }
+}
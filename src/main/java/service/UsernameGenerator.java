@@ -1,11 +1,17 @@
 package service;
 
+import data.IAsyncUserProvider;
 import data.IUserProvider;
+import data.IUsernameReservations;
+import metrics.IMetricsRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 import validation.IUserValidator;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -16,52 +22,204 @@ import java.util.stream.IntStream;
 public class UsernameGenerator implements IUsernameGenerator {
     private static final int USERNAME_LIST_MAX_SIZE = 14;
     private static final int GENERATE_MAX_ATTEMPTS = 3;
+    // store round trips per generation, the second one tops up whatever the first one could not fill
+    private static final int GENERATE_MAX_LOOKUPS = 2;
+    private static final int CANDIDATE_TRIES_PER_SUGGESTION = 4;
     private static final TextDecorator NOOP = new NoopDecorator();
 
     @Autowired private IUserValidator userValidator;
     @Autowired private IUserProvider userProvider;
+    // usernames reserved by ongoing signups are not suggested
+    @Autowired(required = false) private IUsernameReservations reservations;
+    private FanOutLookup fanOutLookup;
+    private SuggestionMetrics metrics = new SuggestionMetrics(IMetricsRegistry.NOOP);
 
-    // Usage of a "Decorator" pattern here to modify the initial string makes the decorating logic to be encapsulated in
-    // decorator classes easy to maintain and change later or even adding more decorators (like the commented out
-    // VowelsDecorator).
-    private final TextDecorator usernameDecorator =
-            new DelimiterDecorator(
-                    new RandomNumberSuffixDecorator(
-                            new RepeatTextDecorator(NOOP)));
+    private TextDecorator usernameDecorator = createDecorator(IRandomSource.threadLocal());
 
     /**
      * Generate a list of suggested username strings based on the initial.
      * It will try to generate at most 14 suggestions unless it has a defined number of failed attempts.
-     * An attempt is considered failed when the decorated string is whether already defined, contains a restricted word
-     * or it has been generated already.
+     * An attempt is considered failed when the decorated string is whether already defined or contains a restricted
+     * word. Candidates are generated in batches, deduped locally and looked up with a single call per batch, topping
+     * up with a second batch when the first one fell short. Candidates are decorated in place in a reusable buffer, only
+     * the new, non restricted ones become Strings. The restriction check resumes from the initial username, so only
+     * the decorated parts are scanned.
      * @param initial initial username
      * @return a list of strings representing the suggested username lists
      */
     @Override
     public List<String> generateSuggestions(String initial) {
-        final Set<String> usernameSet = new HashSet<>();
-        int failAttempts = 0;
-
-        while(usernameSet.size() < USERNAME_LIST_MAX_SIZE && failAttempts < GENERATE_MAX_ATTEMPTS) {
-            String decorated = usernameDecorator.decorate(initial);
-            if (hasAttemptFailed(decorated)) {
-                failAttempts++;
-                System.out.println(String.format("Failed attempt #%d for %s", failAttempts, decorated));
+        return generateSuggestions(initial, CheckSnapshot.of(userValidator, userProvider));
+    }
+
+    @Override
+    public List<String> generateSuggestions(String initial, CheckSnapshot snapshot) {
+        final Attempt attempt = new Attempt(snapshot.getUserValidator().restrictionCheck(initial));
+        Set<String> candidates;
+        while (!(candidates = nextCandidates(initial, attempt)).isEmpty()) {
+            attempt.accept(candidates, findTaken(snapshot.getUserProvider(), candidates));
+        }
+
+        return suggestions(attempt);
+    }
+
+    /**
+     * Non blocking counterpart of generateSuggestions(), each batch of candidates is looked up on the asynchronous
+     * User source.
+     * @param initial initial username
+     * @return future completed with a list of strings representing the suggested username lists
+     */
+    @Override
+    public CompletableFuture<List<String>> generateSuggestionsAsync(String initial) {
+        return generateSuggestionsAsync(initial, CheckSnapshot.of(userValidator, userProvider));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> generateSuggestionsAsync(String initial, CheckSnapshot snapshot) {
+        final IAsyncUserProvider asyncUserProvider = IAsyncUserProvider.of(snapshot.getUserProvider());
+        return generateAsync(initial, asyncUserProvider,
+                new Attempt(snapshot.getUserValidator().restrictionCheck(initial)))
+                .thenApply(this::suggestions);
+    }
+
+    private CompletableFuture<Attempt> generateAsync(final String initial, final IAsyncUserProvider asyncUserProvider,
+                                                     final Attempt attempt) {
+        final Set<String> candidates = nextCandidates(initial, attempt);
+        if (candidates.isEmpty()) {
+            return CompletableFuture.completedFuture(attempt);
+        }
+
+        return asyncUserProvider.findTakenAsync(candidates).thenCompose(taken -> {
+            attempt.accept(candidates, taken);
+            return generateAsync(initial, asyncUserProvider, attempt);
+        });
+    }
+
+    /**
+     * Decorates the initial string until there are enough new, non restricted candidates to fill the suggestions list.
+     * @param initial initial username
+     * @param attempt current attempt
+     * @return batch of candidates to look up, empty when the attempt is over
+     */
+    private Set<String> nextCandidates(final String initial, final Attempt attempt) {
+        final Set<String> candidates = new LinkedHashSet<>();
+        if (attempt.isOver()) {
+            return candidates;
+        }
+
+        attempt.lookups++;
+        final CandidateBuffer buffer = attempt.buffer;
+        final int needed = USERNAME_LIST_MAX_SIZE - attempt.usernameSet.size();
+        for (int tries = needed * CANDIDATE_TRIES_PER_SUGGESTION;
+             tries > 0 && candidates.size() < needed && attempt.failAttempts < GENERATE_MAX_ATTEMPTS;
+             tries--) {
+            usernameDecorator.decorate(buffer.reset(initial));
+            if (buffer.contentEquals(initial) || attempt.seen.contains(buffer)) {
                 continue;
             }
 
-            if (decorated.equals(initial)) {
+            attempt.examined++;
+            if (attempt.restricted.test(buffer)) {
+                attempt.failAttempts++;
                 continue;
             }
 
-            usernameSet.add(decorated);
+            final String decorated = buffer.toString();
+            attempt.seen.add(decorated);
+            if (reservations == null || !reservations.isReserved(decorated)) {
+                candidates.add(decorated);
+            }
         }
+        return candidates;
+    }
+
+    // Usage of a "Decorator" pattern here to modify the initial string makes the decorating logic to be encapsulated in
+    // decorator classes easy to maintain and change later or even adding more decorators (like the commented out
+    // VowelsDecorator).
+    private static TextDecorator createDecorator(final IRandomSource random) {
+        return new DelimiterDecorator(
+                new RandomNumberSuffixDecorator(
+                        new RepeatTextDecorator(NOOP, random), random), random);
+    }
+
+    private List<String> suggestions(final Attempt attempt) {
+        metrics.record(attempt.examined, attempt.failAttempts);
+        return attempt.usernameSet.stream().sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Sets where the decorations are drawn from, a seeded source makes the suggestions reproducible.
+     * Decorations are drawn from ThreadLocalRandom until one is set.
+     * @param random random source
+     */
+    public void setRandomSource(IRandomSource random) {
+        this.usernameDecorator = createDecorator(random);
+    }
 
-        return usernameSet.stream().sorted().collect(Collectors.toList());
+    /**
+     * Fans the candidate lookups of every batch out on the executor, at most maxConcurrentLookups at a time, so that
+     * a User source blocking on I/O pays the round trips side by side. Lookups run on the calling thread until one is
+     * set. Meant for virtual threads, see Executors.newVirtualThreadPerTaskExecutor().
+     * @param executor executor lookups run on
+     * @param maxConcurrentLookups max lookups in flight per generation
+     * @param maxLookupThreads max threads looking up at a time across every generation, past that generations look
+     * their candidates up on their own thread
+     */
+    public void setLookupExecutor(Executor executor, int maxConcurrentLookups, int maxLookupThreads) {
+        this.fanOutLookup = new FanOutLookup(executor, maxConcurrentLookups, maxLookupThreads);
     }
 
-    private boolean hasAttemptFailed(final String decorated) {
-        return userProvider.get(decorated).isPresent() || userValidator.isRestricted(decorated);
+    private Set<String> findTaken(final IUserProvider userProvider, final Collection<String> candidates) {
+        return fanOutLookup != null
+                ? fanOutLookup.findTaken(userProvider, candidates)
+                : userProvider.findTaken(candidates);
+    }
+
+    /**
+     * Binds the generation counters to the registry, metrics are discarded until one is set.
+     * @param metricsRegistry metrics registry
+     */
+    @Autowired(required = false)
+    public void setMetricsRegistry(IMetricsRegistry metricsRegistry) {
+        if (metricsRegistry == null) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        this.metrics = new SuggestionMetrics(metricsRegistry);
+    }
+
+    /**
+     * State of a single suggestions generation.
+     */
+    private static final class Attempt {
+        // resumes from the initial username, only the decorated parts of a candidate are scanned
+        private final Predicate<CharSequence> restricted;
+        private final Set<String> usernameSet = new HashSet<>();
+        // every candidate looked up so far, whether it was accepted or found taken
+        private final CandidateSet seen = new CandidateSet();
+        private final CandidateBuffer buffer = new CandidateBuffer(64);
+        private int failAttempts;
+        private int lookups;
+        private int examined;
+
+        private Attempt(final Predicate<CharSequence> restricted) {
+            this.restricted = restricted;
+        }
+
+        private boolean isOver() {
+            return usernameSet.size() >= USERNAME_LIST_MAX_SIZE
+                    || failAttempts >= GENERATE_MAX_ATTEMPTS
+                    || lookups >= GENERATE_MAX_LOOKUPS;
+        }
+
+        private void accept(final Set<String> candidates, final Set<String> taken) {
+            for (String candidate : candidates) {
+                if (taken.contains(candidate)) {
+                    failAttempts++;
+                } else if (usernameSet.size() < USERNAME_LIST_MAX_SIZE) {
+                    usernameSet.add(candidate);
+                }
+            }
+        }
     }
 
     // Defined decorators which depending on the situation will modify the initial string not before calling the
@@ -71,6 +229,10 @@ public class UsernameGenerator implements IUsernameGenerator {
         public String decorate(final String initial) {
             return initial;
         }
+
+        @Override
+        public void decorate(final CandidateBuffer candidate) {
+        }
     }
 
     /**
@@ -79,8 +241,8 @@ public class UsernameGenerator implements IUsernameGenerator {
     protected static final class DelimiterDecorator extends BaseTextDecorator {
         private static final char DELIMITER = '_';
 
-        public DelimiterDecorator(TextDecorator wrapped) {
-            super(wrapped);
+        public DelimiterDecorator(TextDecorator wrapped, IRandomSource random) {
+            super(wrapped, random);
         }
 
         @Override
@@ -90,9 +252,19 @@ public class UsernameGenerator implements IUsernameGenerator {
                 return decorated;
             }
 
-            int pos = RANDOM.nextInt(decorated.length() - 1) + 1;
+            int pos = random().nextInt(decorated.length() - 1) + 1;
             return decorated.substring(0, pos) + DELIMITER + decorated.substring(pos);
         }
+
+        @Override
+        public void decorate(CandidateBuffer candidate) {
+            getWrapped().decorate(candidate);
+            if (!allowDecoration()) {
+                return;
+            }
+
+            candidate.insert(random().nextInt(candidate.length() - 1) + 1, DELIMITER);
+        }
     }
 
     /*
@@ -111,8 +283,8 @@ public class UsernameGenerator implements IUsernameGenerator {
             return map;
         }
 
-        public VowelsDecorator(TextDecorator wrapped) {
-            super(wrapped);
+        public VowelsDecorator(TextDecorator wrapped, IRandomSource random) {
+            super(wrapped, random);
         }
 
         @Override
@@ -124,7 +296,7 @@ public class UsernameGenerator implements IUsernameGenerator {
 
             for(String key : VOWELS_MAP.keySet()) {
                 String value = VOWELS_MAP.get(key);
-                boolean replaceAll = RANDOM.nextBoolean();
+                boolean replaceAll = random().nextBoolean();
                 decorated = replaceAll ? decorated.replaceAll(key, value) : decorated.replace(key, value);
             }
             return decorated;
@@ -137,8 +309,8 @@ public class UsernameGenerator implements IUsernameGenerator {
     protected static final class RandomNumberSuffixDecorator extends BaseTextDecorator {
         private static final int RANGE = 10;
 
-        public RandomNumberSuffixDecorator(TextDecorator wrapped) {
-            super(wrapped);
+        public RandomNumberSuffixDecorator(TextDecorator wrapped, IRandomSource random) {
+            super(wrapped, random);
         }
 
         @Override
@@ -148,10 +320,23 @@ public class UsernameGenerator implements IUsernameGenerator {
                 return decorated;
             }
 
-            boolean includeSeparator = RANDOM.nextBoolean();
-            decorated += (includeSeparator ? "_" : "") + (RANDOM.nextInt(RANGE) + 1);
+            boolean includeSeparator = random().nextBoolean();
+            decorated += (includeSeparator ? "_" : "") + (random().nextInt(RANGE) + 1);
             return decorated;
         }
+
+        @Override
+        public void decorate(CandidateBuffer candidate) {
+            getWrapped().decorate(candidate);
+            if (!allowDecoration()) {
+                return;
+            }
+
+            if (random().nextBoolean()) {
+                candidate.append('_');
+            }
+            candidate.append(random().nextInt(RANGE) + 1);
+        }
     }
 
     /**
@@ -160,8 +345,8 @@ public class UsernameGenerator implements IUsernameGenerator {
     protected static final class RepeatTextDecorator extends BaseTextDecorator {
         private static final int MAX_REPS = 2;
 
-        public RepeatTextDecorator(TextDecorator wrapped) {
-            super(wrapped);
+        public RepeatTextDecorator(TextDecorator wrapped, IRandomSource random) {
+            super(wrapped, random);
         }
 
         @Override
@@ -173,9 +358,22 @@ public class UsernameGenerator implements IUsernameGenerator {
 
             final String repeatStr = StringUtils.capitalize(decorated);
             final StringBuilder sb = new StringBuilder(decorated);
-            IntStream.range(1, RANDOM.nextInt(MAX_REPS) + 1).forEach(value -> sb.append(repeatStr));
+            IntStream.range(1, random().nextInt(MAX_REPS) + 1).forEach(value -> sb.append(repeatStr));
 
             return sb.toString();
         }
+
+        @Override
+        public void decorate(CandidateBuffer candidate) {
+            getWrapped().decorate(candidate);
+            if (!allowDecoration()) {
+                return;
+            }
+
+            final int length = candidate.length();
+            for (int reps = random().nextInt(MAX_REPS); reps > 0; reps--) {
+                candidate.appendCapitalized(0, length);
+            }
+        }
     }
 }
@@ -1,6 +1,7 @@
 package service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Base class with utility logic for extending handlers.
@@ -19,4 +20,8 @@ public abstract class UsernameHandler<E, R> implements IHandler<E, R> {
             handlerOpt.get().handle(handled, result);
         }
     }
+
+    protected CompletableFuture<Void> handleNextAsync(E handled, R result) {
+        return next != null ? next.handleAsync(handled, result) : CompletableFuture.completedFuture(null);
+    }
 }
@@ -1,29 +1,67 @@
 package spring;
 
+import data.BloomFilterUserProvider;
+import data.CanonicalUserProvider;
+import data.CompactUserProvider;
 import data.IUserProvider;
+import data.IUsernameReservations;
+import data.IWritableUserProvider;
+import data.LatencySimulatingUserProvider;
+import data.MappedUserProvider;
+import data.ReloadableUserProvider;
+import data.ShardedUserProvider;
 import data.User;
+import data.UsernameReservations;
+import data.WritableUserProvider;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.PropertySource;
 import data.UserProvider;
+import metrics.IMetricsRegistry;
+import metrics.MetricsRegistry;
+import service.BulkUsernameChecker;
+import service.CachingUserService;
+import service.DataReloader;
+import service.EnumeratingUsernameGenerator;
+import service.IRandomSource;
 import service.IUserService;
 import service.IUsernameGenerator;
 import service.UserService;
 import service.UsernameGenerator;
 import validation.IUserValidator;
+import validation.ReloadableUserValidator;
 import validation.UserValidator;
+import validation.UsernameCanonicalizer;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Spring configuration class.
+ * Bean methods get their collaborators as parameters rather than calling one another, so that the class needs no
+ * proxy and can be wired without annotation processing as well (see FastStart).
  * @author victor.
  */
-@Configuration
+@Configuration(proxyBeanMethods = false)
 @PropertySource(value = "classpath:app.properties", ignoreResourceNotFound = true)
-public class AppConfig {
+public class AppConfig implements DisposableBean {
     @Value("${usernameMinLength?:6}")
     private int usernameMinLength;
 
@@ -33,29 +71,293 @@ public class AppConfig {
     @Value("${restrictedWords}")
     private String restrictedWords;
 
+    // files taking over restrictedWords and existentUsers (entries comma separated or one per line), reloaded whenever
+    // they change without a restart (see DataReloader). existentUsersFile only goes with the "memory" and "compact"
+    // stores.
+    @Value("${restrictedWordsFile:}")
+    private String restrictedWordsFile;
+
+    @Value("${existentUsersFile:}")
+    private String existentUsersFile;
+
+    // "memory" and "compact" hold existentUsers on the heap, "mapped" maps the userIndexFile built by UserIndexWriter
+    // and "writable" keeps a store taking registrations at userStoreDir (created out of existentUsers)
+    @Value("${userStore:memory}")
+    private String userStore;
+
+    @Value("${userIndexFile:}")
+    private String userIndexFile;
+
+    @Value("${userStoreDir:}")
+    private String userStoreDir;
+
+    @Value("${userStoreCompactionThreshold:10000}")
+    private int userStoreCompactionThreshold;
+
+    // spreads existentUsers over this many shards with consistent hashing, 1 keeps a single User source
+    @Value("${userShards:1}")
+    private int userShards;
+
+    @Value("${userShardVirtualNodes:128}")
+    private int userShardVirtualNodes;
+
+    // simulates a remote User source (each shard being one), 0 disables it
+    @Value("${userProviderLatencyMicros:0}")
+    private long userProviderLatencyMicros;
+
+    // 0 disables the Bloom filter in front of the user lookups
+    @Value("${userFilterFalsePositiveRate:0}")
+    private double userFilterFalsePositiveRate;
+
+    @Value("${userFilterExpectedUsers:0}")
+    private long userFilterExpectedUsers;
+
+    // "random" decorates at random, "enumerative" walks the candidates in a fixed ranked order
+    @Value("${suggestionMode:random}")
+    private String suggestionMode;
+
+    // seeds the random decorations for reproducible suggestions, 0 leaves them unseeded
+    @Value("${suggestionSeed:0}")
+    private long suggestionSeed;
+
+    // 0 disables the check results cache
+    @Value("${resultCacheSize:0}")
+    private int resultCacheSize;
+
+    @Value("${resultCacheTtlSeconds:60}")
+    private long resultCacheTtlSeconds;
+
+    // looks usernames and restricted words up by canonical form (see UsernameCanonicalizer), so that every spelling of
+    // a taken username is taken too. The mapped and writable stores keep matching the usernames exactly as stored.
+    @Value("${canonicalUsernames:false}")
+    private boolean canonicalUsernames;
+
+    // 0 runs batch checks on the common ForkJoinPool, one thread per core
+    @Value("${batchParallelism:0}")
+    private int batchParallelism;
+
+    // "platform" runs batch checks in chunks on batchParallelism threads and single checks as chained asynchronous
+    // lookups, "virtual" runs every check on a virtual thread of its own, blocking lookups included
+    @Value("${executionMode:platform}")
+    private String executionMode;
+
+    // candidate lookups in flight per suggestions generation in virtual mode
+    @Value("${maxConcurrentLookups:8}")
+    private int maxConcurrentLookups;
+
+    // checks in flight across the service in virtual mode, and threads running candidate lookups across the
+    // suggestions generations
+    @Value("${maxConcurrentChecks:256}")
+    private int maxConcurrentChecks;
+
+    // built on demand, shut down along with the context (see destroy())
+    private ForkJoinPool batchPool;
+    private ExecutorService virtualThreads;
+
+    @Bean
+    public IMetricsRegistry metricsRegistry() {
+        return new MetricsRegistry();
+    }
+
+    @Bean
+    public DataReloader dataReloader() {
+        return new DataReloader();
+    }
+
+    @Bean
+    public IUserValidator userValidator(DataReloader dataReloader) throws IOException {
+        if (restrictedWordsFile.isEmpty()) {
+            return userValidator(Arrays.asList(restrictedWords.split(",")));
+        }
+
+        final Path file = Paths.get(restrictedWordsFile);
+        final ReloadableUserValidator userValidator =
+                new ReloadableUserValidator(userValidator(DataReloader.readEntries(file)));
+        dataReloader.watch(file, words -> userValidator.swap(userValidator(words)));
+        return userValidator;
+    }
+
+    private IUserValidator userValidator(final Collection<String> restrictedWords) {
+        return new UserValidator(usernameMinLength, new HashSet<>(restrictedWords), canonicalUsernames);
+    }
+
     @Bean
-    public IUserValidator userValidator() {
-        return new UserValidator(
-                usernameMinLength,
-                Arrays.stream(restrictedWords.split(",")).collect(Collectors.toSet()));
+    public IUserProvider userProvider(DataReloader dataReloader, IMetricsRegistry metricsRegistry)
+            throws IOException {
+        if (!existentUsersFile.isEmpty()) {
+            if (!"memory".equals(userStore) && !"compact".equals(userStore)) {
+                throw new IllegalArgumentException("existentUsersFile cannot be reloaded into the " + userStore
+                        + " user store");
+            }
+            final Path file = Paths.get(existentUsersFile);
+            final ReloadableUserProvider userProvider =
+                    new ReloadableUserProvider(heapUserProvider(DataReloader.readEntries(file)));
+            dataReloader.watch(file, usernames -> userProvider.swap(heapUserProvider(usernames)));
+            return userProvider;
+        }
+
+        if ("mapped".equals(userStore)) {
+            // the Bloom filter would have to go through the whole index at startup, it is left out
+            final IUserProvider userProvider = new MappedUserProvider(Paths.get(userIndexFile));
+            return userProviderLatencyMicros > 0
+                    ? new LatencySimulatingUserProvider(userProvider, userProviderLatencyMicros)
+                    : userProvider;
+        }
+
+        final Set<String> usernames = Arrays.stream(existentUsers.split(",")).collect(Collectors.toSet());
+        if ("writable".equals(userStore)) {
+            // registrations go to the store itself, it is neither filtered nor delayed
+            final WritableUserProvider userProvider =
+                    new WritableUserProvider(Paths.get(userStoreDir), usernames, userStoreCompactionThreshold);
+            userProvider.setMetricsRegistry(metricsRegistry);
+            return userProvider;
+        }
+        return heapUserProvider(usernames);
+    }
+
+    /**
+     * Builds the User source held on the heap ("memory" and "compact" stores) over the usernames, repeated ones
+     * included: the stores drop them on their own, no need for an extra copy of a big set.
+     */
+    private IUserProvider heapUserProvider(final Collection<String> usernames) {
+        // big username sets are a good part of the startup time, they are gone through on every core
+        final Collection<String> keys = canonicalUsernames
+                ? usernames.parallelStream().map(UsernameCanonicalizer::canonicalize).collect(Collectors.toSet())
+                : usernames;
+        IUserProvider userProvider;
+        if (userShards > 1) {
+            final List<String> shardIds = IntStream.range(0, userShards)
+                    .mapToObj(shard -> "shard-" + shard)
+                    .collect(Collectors.toList());
+            final Map<String, IUserProvider> shards = new LinkedHashMap<>();
+            ShardedUserProvider.partition(keys, shardIds, userShardVirtualNodes)
+                    .forEach((shardId, part) -> shards.put(shardId, remoteUserProvider(part)));
+            userProvider = new ShardedUserProvider(shards, userShardVirtualNodes, null);
+        } else {
+            userProvider = remoteUserProvider(keys);
+        }
+
+        if (userFilterFalsePositiveRate > 0) {
+            userProvider = new BloomFilterUserProvider(
+                    userProvider,
+                    keys,
+                    Math.max(userFilterExpectedUsers, keys.size()),
+                    userFilterFalsePositiveRate);
+        }
+
+        return canonicalUsernames
+                ? new CanonicalUserProvider(userProvider, UsernameCanonicalizer::canonicalize)
+                : userProvider;
+    }
+
+    /**
+     * Builds a heap User source over the usernames, behind the simulated latency when there is one.
+     */
+    private IUserProvider remoteUserProvider(final Collection<String> usernames) {
+        final IUserProvider userProvider = "compact".equals(userStore)
+                ? new CompactUserProvider(usernames)
+                : new UserProvider(
+                    usernames
+                        .parallelStream()
+                        .map(User::new)
+                        .collect(Collectors.toSet()));
+
+        return userProviderLatencyMicros > 0
+                ? new LatencySimulatingUserProvider(userProvider, userProviderLatencyMicros)
+                : userProvider;
     }
 
     @Bean
-    public IUserProvider userProvider() {
-        return new UserProvider(
-                Arrays
-                    .stream(existentUsers.split(","))
-                    .map(User::new)
-                    .collect(Collectors.toSet()));
+    public IUsernameReservations usernameReservations(IUserProvider userProvider) {
+        // keyed the way the User source matches usernames, the heap stores hold canonical forms when asked to
+        return canonicalUsernames && ("memory".equals(userStore) || "compact".equals(userStore))
+                ? new UsernameReservations(userProvider, UsernameCanonicalizer::canonicalize)
+                : new UsernameReservations(userProvider);
     }
 
     @Bean
-    public IUserService userService() {
-        return new UserService();
+    public UserService uncachedUserService() {
+        final UserService userService = new UserService();
+        if (isVirtual()) {
+            userService.setCheckExecutor(virtualThreads(), maxConcurrentChecks);
+        } else if (batchParallelism > 0) {
+            userService.setBatchExecutor(batchPool(), batchParallelism);
+        }
+        return userService;
+    }
+
+    @Bean
+    @Primary
+    public IUserService userService(IUserProvider userProvider, IUsernameReservations usernameReservations,
+                                    UserService uncachedUserService, DataReloader dataReloader) {
+        if (resultCacheSize <= 0) {
+            return uncachedUserService;
+        }
+
+        final CachingUserService userService =
+                new CachingUserService(uncachedUserService, resultCacheSize, resultCacheTtlSeconds, TimeUnit.SECONDS);
+        if (userProvider instanceof IWritableUserProvider) {
+            ((IWritableUserProvider) userProvider).addRegistrationListener(userService);
+        }
+        userService.setReservations(usernameReservations);
+        dataReloader.addReloadListener(userService::invalidateAll);
+        return userService;
+    }
+
+    @Bean
+    public BulkUsernameChecker bulkUsernameChecker(IUserValidator userValidator, IUserProvider userProvider,
+                                                   IUsernameReservations usernameReservations) {
+        return new BulkUsernameChecker(userValidator, userProvider, usernameReservations);
     }
 
     @Bean
     public IUsernameGenerator usernameGenerator() {
-        return new UsernameGenerator();
+        if ("enumerative".equals(suggestionMode)) {
+            final EnumeratingUsernameGenerator usernameGenerator = new EnumeratingUsernameGenerator();
+            if (isVirtual()) {
+                usernameGenerator.setLookupExecutor(virtualThreads(), maxConcurrentLookups, maxConcurrentChecks);
+            }
+            return usernameGenerator;
+        }
+
+        final UsernameGenerator usernameGenerator = new UsernameGenerator();
+        if (suggestionSeed != 0) {
+            usernameGenerator.setRandomSource(IRandomSource.seeded(suggestionSeed));
+        }
+        if (isVirtual()) {
+            usernameGenerator.setLookupExecutor(virtualThreads(), maxConcurrentLookups, maxConcurrentChecks);
+        }
+        return usernameGenerator;
+    }
+
+    private boolean isVirtual() {
+        return "virtual".equals(executionMode);
+    }
+
+    private synchronized ExecutorService virtualThreads() {
+        if (virtualThreads == null) {
+            virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return virtualThreads;
+    }
+
+    private synchronized ForkJoinPool batchPool() {
+        if (batchPool == null) {
+            batchPool = new ForkJoinPool(batchParallelism);
+        }
+        return batchPool;
+    }
+
+    /**
+     * Shuts the executors built for the beans down, checks already running are let finish.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (batchPool != null) {
+            batchPool.shutdown();
+        }
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        }
     }
 }
@@ -0,0 +1,127 @@
+package spring;
+
+import data.IUserProvider;
+import data.IUsernameReservations;
+import metrics.IMetricsRegistry;
+import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor;
+import org.springframework.beans.factory.config.BeanDefinitionCustomizer;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.ResourcePropertySource;
+import service.BulkUsernameChecker;
+import service.DataReloader;
+import service.IUserService;
+import service.IUsernameGenerator;
+import service.UserService;
+import validation.IUserValidator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Fast start alternative to an AnnotationConfigApplicationContext over AppConfig, for the command line and batch
+ * jobs whose wall time mostly goes to startup. The same beans are registered functionally: no configuration class
+ * parsing, no proxy, only the @Autowired and @Value injection points are processed. Every bean is lazy, so only what
+ * the job needs gets built, and the username set and the blocklist are built side by side on threads of their own as
+ * soon as the context is refreshed, the first check waiting for whichever is not ready yet.
+ * @author victor.
+ */
+public final class FastStart {
+    private static final BeanDefinitionCustomizer LAZY = bd -> bd.setLazyInit(true);
+
+    private static final Executor BUILDERS = task -> {
+        final Thread thread = new Thread(task, "fast-start");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private FastStart() {
+    }
+
+    /**
+     * @return refreshed context, holding the AppConfig beans under the same names
+     * @throws IOException if app.properties cannot be read
+     */
+    public static GenericApplicationContext context() throws IOException {
+        final GenericApplicationContext ctx = new GenericApplicationContext();
+        final ClassPathResource properties = new ClassPathResource("app.properties");
+        if (properties.exists()) {
+            ctx.getEnvironment().getPropertySources().addLast(new ResourcePropertySource(properties));
+        }
+
+        // @Value support, what AnnotationConfigUtils would have set up along with the configuration class parsing
+        ctx.getDefaultListableBeanFactory()
+                .setAutowireCandidateResolver(new ContextAnnotationAutowireCandidateResolver());
+        ctx.registerBean(AutowiredAnnotationBeanPostProcessor.class);
+
+        final Builds builds = new Builds();
+        ctx.registerBean(AppConfig.class);
+        ctx.registerBean("metricsRegistry", IMetricsRegistry.class,
+                () -> ctx.getBean(AppConfig.class).metricsRegistry(), LAZY);
+        ctx.registerBean("dataReloader", DataReloader.class,
+                () -> ctx.getBean(AppConfig.class).dataReloader(), LAZY);
+        ctx.registerBean("userValidator", IUserValidator.class, () -> join(builds.userValidator), LAZY);
+        ctx.registerBean("userProvider", IUserProvider.class, () -> join(builds.userProvider), LAZY);
+        ctx.registerBean("usernameReservations", IUsernameReservations.class,
+                () -> ctx.getBean(AppConfig.class).usernameReservations(ctx.getBean(IUserProvider.class)), LAZY);
+        ctx.registerBean("uncachedUserService", UserService.class,
+                () -> ctx.getBean(AppConfig.class).uncachedUserService(), LAZY);
+        ctx.registerBean("userService", IUserService.class,
+                () -> ctx.getBean(AppConfig.class).userService(ctx.getBean(IUserProvider.class),
+                        ctx.getBean(IUsernameReservations.class), ctx.getBean("uncachedUserService", UserService.class),
+                        ctx.getBean(DataReloader.class)),
+                bd -> {
+                    bd.setLazyInit(true);
+                    bd.setPrimary(true);
+                });
+        ctx.registerBean("bulkUsernameChecker", BulkUsernameChecker.class,
+                () -> ctx.getBean(AppConfig.class).bulkUsernameChecker(ctx.getBean(IUserValidator.class),
+                        ctx.getBean(IUserProvider.class), ctx.getBean(IUsernameReservations.class)), LAZY);
+        ctx.registerBean("usernameGenerator", IUsernameGenerator.class,
+                () -> ctx.getBean(AppConfig.class).usernameGenerator(), LAZY);
+        ctx.refresh();
+
+        // built out of the container, whose singleton creation is serialized
+        final AppConfig config = ctx.getBean(AppConfig.class);
+        final DataReloader dataReloader = ctx.getBean(DataReloader.class);
+        final IMetricsRegistry metricsRegistry = ctx.getBean(IMetricsRegistry.class);
+        builds.userValidator = CompletableFuture.supplyAsync(() -> {
+            try {
+                return config.userValidator(dataReloader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, BUILDERS);
+        builds.userProvider = CompletableFuture.supplyAsync(() -> {
+            try {
+                return config.userProvider(dataReloader, metricsRegistry);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, BUILDERS);
+        return ctx;
+    }
+
+    private static <T> T join(final CompletableFuture<T> build) {
+        try {
+            return build.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Structures being built in the background, set once the context is refreshed.
+     */
+    private static final class Builds {
+        private volatile CompletableFuture<IUserValidator> userValidator;
+        private volatile CompletableFuture<IUserProvider> userProvider;
+    }
+}
@@ -1,9 +1,46 @@
 package validation;
 
+import java.util.function.Predicate;
+
 /**
  * @author victor.
  */
 public interface IUserValidator {
     void validateUsername(String username);
-    boolean isRestricted(String username);
+
+    /**
+     * Allocation free counterpart of validateUsername(), for bulk checks.
+     * @param username provided username
+     * @return true if validateUsername() would let it through
+     */
+    default boolean isValid(CharSequence username) {
+        try {
+            validateUsername(username.toString());
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    boolean isRestricted(CharSequence username);
+
+    /**
+     * Restriction check for the variants of a base username, meant for the many suggestion candidates made out of it.
+     * Validators able to resume from the base should override it, to skip rescanning what a variant shares with it.
+     * @param base base username
+     * @return check telling if a variant of the base contains a restricted word, as isRestricted() does
+     */
+    default Predicate<CharSequence> restrictionCheck(CharSequence base) {
+        return this::isRestricted;
+    }
+
+    /**
+     * Validator checking as this one does now whatever is reloaded later, for checks spanning several calls (see
+     * service.CheckSnapshot). Reloadable validators return their current one, decorators wrap their wrapped
+     * validator's snapshot.
+     * @return this validator unless its rules can be replaced
+     */
+    default IUserValidator snapshot() {
+        return this;
+    }
 }
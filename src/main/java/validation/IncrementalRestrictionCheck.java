@@ -0,0 +1,82 @@
+package validation;
+
+import java.util.function.Predicate;
+
+/**
+ * Restriction check for the variants of a base username, the suggestion candidates, that keeps the automaton state
+ * reached at every position of the base. A candidate is only scanned from the longest prefix it shares with the base
+ * on: a number suffix or a repeat is scanned on its own, and a delimiter from where it is inserted. Scanning on from a
+ * saved state finds exactly what a full rescan would, words spanning the base and the added part included.
+ * @author victor.
+ */
+final class IncrementalRestrictionCheck implements Predicate<CharSequence> {
+    private final RestrictedWordMatcher matcher;
+    private final boolean canonical;
+    private final Predicate<CharSequence> fullCheck;
+    private final String base;
+    // state after each prefix of the base, states[i] once its first i chars are consumed
+    private final int[] states;
+    // length of the shortest prefix of the base holding a word, past the base length when it holds none
+    private final int matchedAt;
+
+    /**
+     * @param matcher matcher
+     * @param base base username
+     * @param canonical true if the matcher holds canonical forms
+     * @param fullCheck check for the texts that cannot be canonicalized char by char
+     */
+    IncrementalRestrictionCheck(RestrictedWordMatcher matcher, CharSequence base, boolean canonical,
+                                Predicate<CharSequence> fullCheck) {
+        this.matcher = matcher;
+        this.canonical = canonical;
+        this.fullCheck = fullCheck;
+        // a base that cannot be resumed from is left empty, candidates are then scanned whole
+        this.base = canonical && !UsernameCanonicalizer.isAscii(base) ? "" : base.toString();
+        this.states = new int[this.base.length() + 1];
+
+        int state = RestrictedWordMatcher.ROOT;
+        int matched = matcher.isMatch(state) ? 0 : Integer.MAX_VALUE;
+        for (int i = 0; i < this.base.length(); i++) {
+            state = matcher.next(state, map(this.base.charAt(i)));
+            states[i + 1] = state;
+            if (matched == Integer.MAX_VALUE && matcher.isMatch(state)) {
+                matched = i + 1;
+            }
+        }
+        this.matchedAt = matched;
+    }
+
+    /**
+     * @param candidate candidate
+     * @return true if the candidate contains a restricted word
+     */
+    @Override
+    public boolean test(final CharSequence candidate) {
+        if (canonical && !UsernameCanonicalizer.isAscii(candidate)) {
+            return fullCheck.test(candidate);
+        }
+
+        final int length = candidate.length();
+        final int limit = Math.min(length, base.length());
+        int common = 0;
+        while (common < limit && candidate.charAt(common) == base.charAt(common)) {
+            common++;
+        }
+        if (matchedAt <= common) {
+            return true;
+        }
+
+        int state = states[common];
+        for (int i = common; i < length; i++) {
+            state = matcher.next(state, map(candidate.charAt(i)));
+            if (matcher.isMatch(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private char map(final char c) {
+        return canonical ? UsernameCanonicalizer.canonicalize(c) : c;
+    }
+}
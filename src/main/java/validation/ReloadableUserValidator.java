@@ -0,0 +1,67 @@
+package validation;
+
+import java.util.function.Predicate;
+
+/**
+ * Validator whose rules (min length, restricted words) can be replaced while it serves checks. The replacement is
+ * built aside and swapped in at once, a check runs entirely on the validator current when it starts. So do the
+ * restriction checks handed out for suggestions, which stay on the words they were made for. Checks spanning several
+ * calls hold on to snapshot() instead.
+ * @author victor.
+ */
+public class ReloadableUserValidator implements IUserValidator {
+    private volatile IUserValidator current;
+
+    /**
+     * @param initial validator used until the first reload
+     */
+    public ReloadableUserValidator(IUserValidator initial) {
+        swap(initial);
+    }
+
+    /**
+     * Runs the checks starting from now on the given validator.
+     * @param userValidator replacement validator
+     * @return the replaced validator
+     */
+    public IUserValidator swap(final IUserValidator userValidator) {
+        if (userValidator == null) {
+            throw new IllegalArgumentException("User validator cannot be null");
+        }
+        final IUserValidator replaced = current;
+        current = userValidator;
+        return replaced;
+    }
+
+    public IUserValidator getCurrent() {
+        return current;
+    }
+
+    @Override
+    public void validateUsername(String username) {
+        current.validateUsername(username);
+    }
+
+    @Override
+    public boolean isValid(CharSequence username) {
+        return current.isValid(username);
+    }
+
+    @Override
+    public boolean isRestricted(CharSequence username) {
+        return current.isRestricted(username);
+    }
+
+    @Override
+    public Predicate<CharSequence> restrictionCheck(CharSequence base) {
+        return current.restrictionCheck(base);
+    }
+
+    /**
+     * @return the validator current now, it keeps its rules after a reload
+     */
+    @Override
+    public IUserValidator snapshot() {
+        return current.snapshot();
+    }
+}
@@ -0,0 +1,180 @@
+package validation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a set of restricted words.
+ * It is built once and then scans a text in a single pass without allocating, no matter how many words it holds.
+ * Transitions are kept in flat arrays (each state owns a sorted slice of edge chars and targets) to keep the memory
+ * footprint low for big blocklists.
+ * @author victor.
+ */
+public final class RestrictedWordMatcher {
+    /**
+     * State the automaton is in before consuming any character.
+     */
+    public static final int ROOT = 0;
+
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final boolean[] terminal;
+    // Dense transitions out of ROOT for ASCII, the automaton falls back to it on every mismatch.
+    private final int[] rootAscii = new int[128];
+
+    /**
+     * Builds the automaton.
+     * @param words restricted words, null entries are ignored. An empty word matches any text, the same way
+     *              String.contains("") would.
+     */
+    public RestrictedWordMatcher(Collection<String> words) {
+        // Plain trie first, a TreeMap per state keeps edges sorted for the flattening step.
+        final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        final List<Boolean> ends = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(false);
+
+        if (words != null) {
+            for (String word : words) {
+                if (word == null) {
+                    continue;
+                }
+
+                int state = ROOT;
+                for (int i = 0; i < word.length(); i++) {
+                    Integer next = trie.get(state).get(word.charAt(i));
+                    if (next == null) {
+                        next = trie.size();
+                        trie.add(new TreeMap<>());
+                        ends.add(false);
+                        trie.get(state).put(word.charAt(i), next);
+                    }
+                    state = next;
+                }
+                ends.set(state, true);
+            }
+        }
+
+        final int states = trie.size();
+        edgeStart = new int[states + 1];
+        edgeChars = new char[states - 1];
+        edgeTargets = new int[states - 1];
+        fail = new int[states];
+        terminal = new boolean[states];
+
+        int edge = 0;
+        for (int state = 0; state < states; state++) {
+            edgeStart[state] = edge;
+            terminal[state] = ends.get(state);
+            for (Map.Entry<Character, Integer> e : trie.get(state).entrySet()) {
+                edgeChars[edge] = e.getKey();
+                edgeTargets[edge] = e.getValue();
+                edge++;
+            }
+        }
+        edgeStart[states] = edge;
+        for (char c = 0; c < rootAscii.length; c++) {
+            rootAscii[c] = Math.max(edgeTarget(ROOT, c), ROOT);
+        }
+
+        // Breadth first so every failure target is resolved before its dependants.
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            queue.add(edgeTargets[e]);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                final int child = edgeTargets[e];
+                int f = fail[state];
+                int target = edgeTarget(f, edgeChars[e]);
+                while (target < 0 && f != ROOT) {
+                    f = fail[f];
+                    target = edgeTarget(f, edgeChars[e]);
+                }
+                fail[child] = target < 0 ? ROOT : target;
+                terminal[child] |= terminal[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Evaluates if the text contains any of the words.
+     * @param text text to scan
+     * @return true when at least one word is found, otherwise false.
+     */
+    public boolean matches(CharSequence text) {
+        if (terminal[ROOT]) {
+            return true;
+        }
+
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            state = next(state, text.charAt(i));
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the automaton one character forward.
+     * @param state current state, ROOT when starting
+     * @param c consumed character
+     * @return the resulting state
+     */
+    public int next(int state, char c) {
+        while (true) {
+            if (state == ROOT && c < rootAscii.length) {
+                return rootAscii[c];
+            }
+            final int target = edgeTarget(state, c);
+            if (target >= 0) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Tells if reaching the given state means a word has been found.
+     * @param state automaton state
+     * @return true if a word ends at this state
+     */
+    public boolean isMatch(int state) {
+        return terminal[state];
+    }
+
+    public int stateCount() {
+        return fail.length;
+    }
+
+    private int edgeTarget(int state, char c) {
+        final int from = edgeStart[state];
+        final int to = edgeStart[state + 1];
+        if (to - from <= 8) {
+            for (int e = from; e < to; e++) {
+                if (edgeChars[e] == c) {
+                    return edgeTargets[e];
+                }
+            }
+            return -1;
+        }
+
+        final int e = Arrays.binarySearch(edgeChars, from, to, c);
+        return e >= 0 ? edgeTargets[e] : -1;
+    }
+}
@@ -1,21 +1,40 @@
 package validation;
 
-import org.springframework.util.StringUtils;
-
 import java.util.Collections;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Contains user related validation logic.
  * @author victor.
  */
 public class UserValidator implements IUserValidator {
+    private static final String EMPTY = "username must not be empty";
+
     private final int usernameMinLength;
-    private final Set<String> restrictedWords;
+    private final String tooShort;
+    private final RestrictedWordMatcher restrictedWordMatcher;
+    private final boolean canonical;
 
     public UserValidator(int usernameMinLength, Set<String> restrictedWords) {
+        this(usernameMinLength, restrictedWords, false);
+    }
+
+    /**
+     * @param usernameMinLength username min length
+     * @param restrictedWords restricted words
+     * @param canonical true to match the words on canonical forms (see UsernameCanonicalizer), so "Cr4ck" is found
+     *                  as "crack" is
+     */
+    public UserValidator(int usernameMinLength, Set<String> restrictedWords, boolean canonical) {
+        final Set<String> words = restrictedWords != null ? restrictedWords : Collections.emptySet();
         this.usernameMinLength = usernameMinLength;
-        this.restrictedWords = restrictedWords != null ? restrictedWords : Collections.emptySet();
+        this.tooShort = String.format("username must be %s characters long", usernameMinLength);
+        this.canonical = canonical;
+        this.restrictedWordMatcher = new RestrictedWordMatcher(canonical
+                ? words.stream().map(UsernameCanonicalizer::canonicalize).collect(Collectors.toSet())
+                : words);
     }
 
     /**
@@ -23,22 +42,69 @@ public class UserValidator implements IUserValidator {
      * @param username provided username
      */
     public void validateUsername(String username) {
-        if (StringUtils.isEmpty(username)) {
-            throw new IllegalArgumentException("username must not be empty");
+        final String violation = violation(username);
+        if (violation != null) {
+            throw new IllegalArgumentException(violation);
         }
+    }
+
+    @Override
+    public boolean isValid(CharSequence username) {
+        return violation(username) == null;
+    }
 
+    /**
+     * The one set of rules behind validateUsername() and isValid().
+     * @param username provided username
+     * @return what is wrong with the username, null if it is valid
+     */
+    private String violation(final CharSequence username) {
+        if (username == null || username.length() == 0) {
+            return EMPTY;
+        }
         if (username.length() < usernameMinLength) {
-            throw new IllegalArgumentException(String.format("username must be %s characters long", usernameMinLength));
+            return tooShort;
         }
+        return null;
     }
 
     /**
      * Evaluates if username contains a restricted word.
+     * All the words are looked up at once in a single pass over the username, in every spelling at once when matching
+     * on canonical forms.
      * @param username provided username.
      * @return true is username contains any restricted words, otherwise false.
      */
     @Override
-    public boolean isRestricted(String username) {
-        return restrictedWords.stream().anyMatch(s -> username.contains(s));
+    public boolean isRestricted(CharSequence username) {
+        if (!canonical) {
+            return restrictedWordMatcher.matches(username);
+        }
+        if (!UsernameCanonicalizer.isAscii(username)) {
+            return restrictedWordMatcher.matches(UsernameCanonicalizer.canonicalize(username));
+        }
+
+        // canonicalized on the fly, without building the canonical String
+        if (restrictedWordMatcher.isMatch(RestrictedWordMatcher.ROOT)) {
+            return true;
+        }
+        int state = RestrictedWordMatcher.ROOT;
+        for (int i = 0, len = username.length(); i < len; i++) {
+            state = restrictedWordMatcher.next(state, UsernameCanonicalizer.canonicalize(username.charAt(i)));
+            if (restrictedWordMatcher.isMatch(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the matcher state along the base username, a variant is only scanned from where it departs from the base.
+     * @param base base username
+     * @return check telling if a variant of the base contains a restricted word
+     */
+    @Override
+    public Predicate<CharSequence> restrictionCheck(CharSequence base) {
+        return new IncrementalRestrictionCheck(restrictedWordMatcher, base, canonical, this::isRestricted);
     }
 }
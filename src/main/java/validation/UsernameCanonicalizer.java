@@ -0,0 +1,89 @@
+package validation;
+
+import java.text.Normalizer;
+
+/**
+ * Maps every spelling of a username to a single canonical form, so that variants like "FatMike", "fatmike" and
+ * "fatm1ke" are looked up as one: Unicode NFKC normalization (fullwidth and compatibility characters), case folding,
+ * then lookalike letters from other scripts and leet digits and symbols (the VowelsDecorator ones among them) mapped
+ * back to the latin letters they stand for.
+ * ASCII usernames, the vast majority, are folded one char at a time through a lookup table.
+ * @author victor.
+ */
+public final class UsernameCanonicalizer {
+    private static final char[] ASCII = new char[128];
+    // lookalikes whose NFKC form is still not latin, as pairs of (lookalike, latin letter)
+    private static final String CONFUSABLES =
+            // cyrillic
+            "\u0430a\u0435e\u043eo\u0440p\u0441c\u0443y\u0445x\u0456i\u0458j\u0455s\u04cfl"
+            // greek
+            + "\u03b1a\u03b5e\u03b9i\u03bak\u03bdv\u03bfo\u03c1p\u03c4t\u03c5u\u03c7x";
+
+    static {
+        for (char c = 0; c < ASCII.length; c++) {
+            ASCII[c] = Character.toLowerCase(c);
+        }
+        final String leet = "0o1i3e4a5s7t@a$s!i#u";
+        for (int i = 0; i < leet.length(); i += 2) {
+            ASCII[leet.charAt(i)] = leet.charAt(i + 1);
+        }
+    }
+
+    private UsernameCanonicalizer() {
+    }
+
+    /**
+     * @param username username, in any spelling
+     * @return canonical form of the username
+     */
+    public static String canonicalize(CharSequence username) {
+        if (isAscii(username)) {
+            final char[] chars = new char[username.length()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = ASCII[username.charAt(i)];
+            }
+            return new String(chars);
+        }
+
+        final String normalized = Normalizer.normalize(username, Normalizer.Form.NFKC);
+        final StringBuilder canonical = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); ) {
+            final int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            final int folded = Character.toLowerCase(Character.toUpperCase(codePoint));
+            if (folded < ASCII.length) {
+                canonical.append(ASCII[folded]);
+            } else {
+                final int confusable = folded <= Character.MAX_VALUE ? CONFUSABLES.indexOf(folded) : -1;
+                if (confusable >= 0 && confusable % 2 == 0) {
+                    canonical.append(CONFUSABLES.charAt(confusable + 1));
+                } else {
+                    canonical.appendCodePoint(folded);
+                }
+            }
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Canonical form of a single ASCII char, ASCII usernames can be canonicalized on the fly with it.
+     * @param c ASCII char
+     * @return canonical char
+     */
+    public static char canonicalize(char c) {
+        return ASCII[c];
+    }
+
+    /**
+     * @param text text
+     * @return true if every char of the text is ASCII, it can be canonicalized char by char then
+     */
+    public static boolean isAscii(CharSequence text) {
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (text.charAt(i) >= ASCII.length) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author victor.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class BloomFilterUserProviderTest {
+    @Mock private IUserProvider userProvider;
+    private BloomFilterUserProvider bloomFilterUserProvider;
+
+    @Before
+    public void setup() {
+        bloomFilterUserProvider =
+                new BloomFilterUserProvider(userProvider, Arrays.asList("fatmike", "elhefe"), 1000, 0.0001);
+    }
+
+    @Test
+    public void test_get() {
+        when(userProvider.get(anyString())).thenReturn(Optional.of(new User("fatmike")));
+        assertThat(bloomFilterUserProvider.get("fatmike").isPresent(), is(true));
+        assertThat(bloomFilterUserProvider.getFilterMisses(), is(1L));
+
+        // never registered so the wrapped source is not even asked
+        assertThat(bloomFilterUserProvider.get("myUsername").isPresent(), is(false));
+        verify(userProvider, never()).get("myUsername");
+        assertThat(bloomFilterUserProvider.getFilterHits(), is(1L));
+        assertThat(bloomFilterUserProvider.getFilterHitRate(), is(0.5));
+    }
+
+    @Test
+    public void test_add() {
+        assertThat(bloomFilterUserProvider.exists("myUsername"), is(false));
+        bloomFilterUserProvider.add("myUsername");
+        when(userProvider.exists("myUsername")).thenReturn(true);
+        assertThat(bloomFilterUserProvider.exists("myUsername"), is(true));
+        assertThat(bloomFilterUserProvider.getFalsePositives(), is(0L));
+    }
+
+    @Test
+    public void test_falsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("user" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            assertThat(filter.mightContain("user" + i), is(true));
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives < 200, is(true));
+    }
+
+    @Test
+    public void test_prefixIndex() {
+        // a filter cannot rule prefixes out, the wrapped source answers for them
+        final IPrefixIndex prefixIndex = new CompactUserProvider(Arrays.asList("fatmike", "elhefe"));
+        when(userProvider.prefixIndex()).thenReturn(Optional.of(prefixIndex));
+        assertThat(bloomFilterUserProvider.prefixIndex().get(), is(prefixIndex));
+    }
+}
@@ -0,0 +1,73 @@
+package data;
+
+import org.junit.Before;
+import org.junit.Test;
+import validation.UsernameCanonicalizer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+/**
+ * @author victor.
+ */
+public class CanonicalUserProviderTest {
+    private CanonicalUserProvider canonicalUserProvider;
+
+    @Before
+    public void setup() {
+        canonicalUserProvider = new CanonicalUserProvider(
+                new CompactUserProvider(Arrays.asList("fatmike", "elhefe")), UsernameCanonicalizer::canonicalize);
+    }
+
+    @Test
+    public void test_get() {
+        assertThat(canonicalUserProvider.exists("fatmike"), is(true));
+        assertThat(canonicalUserProvider.exists("FatMike"), is(true));
+        assertThat(canonicalUserProvider.exists("fatm1ke"), is(true));
+        assertThat(canonicalUserProvider.exists("fat_mike"), is(false));
+        assertThat(canonicalUserProvider.get("3LH3F3").get().getUsername(), is("elhefe"));
+        assertThat(canonicalUserProvider.getAsync("ElHefe").join().isPresent(), is(true));
+    }
+
+    @Test
+    public void test_findWithPrefix() {
+        final IPrefixIndex prefixIndex = canonicalUserProvider.prefixIndex().get();
+        assertThat(prefixIndex.findWithPrefix("FatM", 10), is(Arrays.asList("fatmike")));
+        assertThat(prefixIndex.findWithPrefixAsync("FatM", 10).join(), is(Arrays.asList("fatmike")));
+        assertThat(prefixIndex.countWithPrefix("3lh"), is(1));
+        assertThat(prefixIndex.indexedForm("FatM1ke"), is("fatmike"));
+    }
+
+    @Test
+    public void test_prefixIndex_unsupported() {
+        assertThat(new CanonicalUserProvider(new UserProvider(new HashSet<>()), UsernameCanonicalizer::canonicalize)
+                .prefixIndex().isPresent(), is(false));
+    }
+
+    @Test
+    public void test_snapshot() {
+        final ReloadableUserProvider reloadable =
+                new ReloadableUserProvider(new CompactUserProvider(Arrays.asList("fatmike")));
+        final IUserProvider userProvider = new CanonicalUserProvider(reloadable, UsernameCanonicalizer::canonicalize);
+        final IUserProvider snapshot = userProvider.snapshot();
+        reloadable.swap(new CompactUserProvider(Arrays.asList("elhefe")));
+
+        // the snapshot keeps answering out of the usernames in place when taken, through the decorator
+        assertThat(snapshot.exists("FatMike"), is(true));
+        assertThat(snapshot.exists("ElHefe"), is(false));
+        assertThat(userProvider.exists("ElHefe"), is(true));
+        assertThat(canonicalUserProvider.snapshot(), is(sameInstance(canonicalUserProvider)));
+    }
+
+    @Test
+    public void test_findTaken() {
+        assertThat(canonicalUserProvider.findTaken(Arrays.asList("FatMike", "fatm1ke", "myUsername", "elhefe")),
+                is(new HashSet<>(Arrays.asList("FatMike", "fatm1ke", "elhefe"))));
+        assertThat(canonicalUserProvider.findTakenAsync(Arrays.asList("fatmike", "smelly")).join(),
+                is(new HashSet<>(Arrays.asList("fatmike"))));
+    }
+}
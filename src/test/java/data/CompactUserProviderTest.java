@@ -0,0 +1,140 @@
+package data;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class CompactUserProviderTest {
+    @Test
+    public void test_exists() {
+        CompactUserProvider provider =
+                new CompactUserProvider(Arrays.asList("fatmike", "elhefe", "smelly", "melvin", "fatmike", null));
+        assertThat(provider.size(), is(4));
+        assertThat(provider.exists("fatmike"), is(true));
+        assertThat(provider.exists(new StringBuilder("melvin")), is(true));
+        assertThat(provider.exists("fatmik"), is(false));
+        assertThat(provider.exists("fatmike_"), is(false));
+        assertThat(provider.exists(""), is(false));
+        assertThat(provider.get("elhefe").isPresent(), is(true));
+        assertThat(provider.get("myUsername").isPresent(), is(false));
+    }
+
+    @Test
+    public void test_exists_nonAscii() {
+        // mixes 1 to 4 bytes long encodings, including surrogate pairs
+        List<String> usernames = Arrays.asList("jos\u00e9", "\u00fcber", "\u65e5\u672c", "emoji\ud83d\ude00", "\uffe0x");
+        CompactUserProvider provider = new CompactUserProvider(usernames);
+        usernames.forEach(s -> assertThat(s, provider.exists(s), is(true)));
+        assertThat(provider.exists("jose"), is(false));
+        assertThat(provider.exists("emoji\ud83d\ude01"), is(false));
+    }
+
+    @Test
+    public void test_findWithPrefix() {
+        CompactUserProvider provider = new CompactUserProvider(Arrays.asList(
+                "fatmike", "fatmike1", "fatmike_2", "fatmikeFatmike", "fatmik", "fatmikf", "elhefe", "fat\u00e9mike"));
+        assertThat(provider.findWithPrefix("fatmike", 10),
+                is(Arrays.asList("fatmike", "fatmike1", "fatmikeFatmike", "fatmike_2")));
+        assertThat(provider.findWithPrefix("fatmike", 2), is(Arrays.asList("fatmike", "fatmike1")));
+        assertThat(provider.countWithPrefix("fatmike"), is(4));
+        assertThat(provider.countWithPrefix("fat"), is(7));
+        assertThat(provider.findWithPrefix("fat\u00e9", 10), is(Arrays.asList("fat\u00e9mike")));
+        assertThat(provider.countWithPrefix(""), is(8));
+        assertThat(provider.countWithPrefix("zzz"), is(0));
+        assertThat(provider.findWithPrefix("fatmike_3", 10).isEmpty(), is(true));
+        assertThat(new CompactUserProvider(null).countWithPrefix("fat"), is(0));
+    }
+
+    @Test
+    public void test_findWithPrefix_sameAsScan() {
+        Random random = new Random(7);
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            usernames.add(randomText(random));
+        }
+        CompactUserProvider provider = new CompactUserProvider(usernames);
+        for (int i = 0; i < 200; i++) {
+            String prefix = randomText(random);
+            prefix = prefix.substring(0, Math.min(prefix.length(), 1 + random.nextInt(2)));
+            final String p = prefix;
+            List<String> expected = new ArrayList<>(new HashSet<>(usernames));
+            expected.removeIf(s -> !s.startsWith(p));
+            expected.sort(Utf8::compare);
+            assertThat(p, provider.findWithPrefix(p, Integer.MAX_VALUE), is(expected));
+            assertThat(p, provider.countWithPrefix(p), is(expected.size()));
+        }
+    }
+
+    @Test
+    public void test_exists_sameAsHashSet() {
+        Random random = new Random(42);
+        Set<String> usernames = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            usernames.add(randomText(random));
+        }
+        List<String> held = new ArrayList<>(usernames);
+        CompactUserProvider provider = new CompactUserProvider(held);
+
+        assertThat(provider.size(), is(usernames.size()));
+        for (int i = 0; i < 5000; i++) {
+            String text = randomText(random);
+            assertThat(text, provider.exists(text), is(usernames.contains(text)));
+        }
+        held.forEach(s -> assertThat(s, provider.exists(s), is(true)));
+    }
+
+    @Test
+    public void test_compare_sameAsEncoded() {
+        // surrogate pairs sort above "\uffe0" by code point but below it by char
+        final String[] chars = {"a", "b", "\u00e9", "\uffe0", "\ud83d\ude00", "\ud83d\ude01"};
+        Random random = new Random(2017);
+        for (int i = 0; i < 2000; i++) {
+            final String a = randomText(random, chars);
+            final String b = randomText(random, chars);
+            final byte[] encodedA = a.getBytes(StandardCharsets.UTF_8);
+            final byte[] encodedB = b.getBytes(StandardCharsets.UTF_8);
+            assertThat(a + " " + b, Integer.signum(Utf8.compare(a, b)),
+                    is(Integer.signum(Arrays.compareUnsigned(encodedA, encodedB))));
+        }
+    }
+
+    @Test
+    public void test_memoryFootprint() {
+        assertThat(new CompactUserProvider(null).bytesPerEntry(), is(0d));
+        CompactUserProvider provider = new CompactUserProvider(Arrays.asList("fatmike", "elhefe"));
+        // 8 bytes offset + 1 byte length + the encoded username each, plus fixed overhead
+        assertThat(provider.memoryFootprint() > 2 * 8 + 8 + 7, is(true));
+    }
+
+    private static String randomText(Random random, String[] chars) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, len = random.nextInt(4); i < len; i++) {
+            sb.append(chars[random.nextInt(chars.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, len = 1 + random.nextInt(4); i < len; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        // every now and then a non ASCII char
+        if (random.nextInt(10) == 0) {
+            sb.append('\u00e9');
+        }
+        return sb.toString();
+    }
+}
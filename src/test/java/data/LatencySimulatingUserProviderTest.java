@@ -0,0 +1,63 @@
+package data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class LatencySimulatingUserProviderTest {
+    private final IUserProvider userProvider = new UserProvider(Collections.singleton(new User("fatmike")));
+
+    @Test
+    public void test_getAsync_completedOnExecutor() {
+        final ExecutorService completions = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test"));
+        final AtomicReference<String> lookupThread = new AtomicReference<>();
+        final IUserProvider recordingUserProvider = new UserProvider(Collections.singleton(new User("fatmike"))) {
+            @Override
+            public Optional<User> get(String identifier) {
+                lookupThread.set(Thread.currentThread().getName());
+                return super.get(identifier);
+            }
+        };
+        try {
+            final LatencySimulatingUserProvider latencySimulatingUserProvider =
+                    new LatencySimulatingUserProvider(recordingUserProvider, 100, completions);
+            // looked up and completed on the executor, the continuations never queue on the shared timer thread
+            assertThat(latencySimulatingUserProvider.getAsync("fatmike").join().isPresent(), is(true));
+            assertThat(lookupThread.get(), is("test"));
+            assertThat(latencySimulatingUserProvider.findTakenAsync(Arrays.asList("fatmike", "myUsername")).join(),
+                    is(Collections.singleton("fatmike")));
+        } finally {
+            completions.shutdown();
+        }
+    }
+
+    @Test
+    public void test_prefixIndex() {
+        final IPrefixIndex prefixIndex = new LatencySimulatingUserProvider(
+                new CompactUserProvider(Arrays.asList("fatmike", "fatmike1", "elhefe")), 100).prefixIndex().get();
+        assertThat(prefixIndex.findWithPrefix("fatmike", 10), is(Arrays.asList("fatmike", "fatmike1")));
+        assertThat(prefixIndex.findWithPrefixAsync("fatmike", 1).join(), is(Arrays.asList("fatmike")));
+        assertThat(prefixIndex.countWithPrefix("el"), is(1));
+        assertThat(new LatencySimulatingUserProvider(userProvider, 100).prefixIndex().isPresent(), is(false));
+    }
+
+    @Test(expected = CompletionException.class)
+    public void test_getAsync_rejected() {
+        // failed rather than left pending forever
+        final ExecutorService completions = Executors.newSingleThreadExecutor();
+        completions.shutdown();
+        new LatencySimulatingUserProvider(userProvider, 100, completions).getAsync("fatmike").join();
+    }
+}
@@ -0,0 +1,102 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class MappedUserProviderTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_exists() throws IOException {
+        final Path indexFile = folder.newFile().toPath();
+        final long count = UserIndexWriter.write(
+                Arrays.asList("fatmike", "elhefe", "smelly", "melvin", "fatmike", null), indexFile);
+        MappedUserProvider provider = new MappedUserProvider(indexFile);
+        assertThat(count, is(4L));
+        assertThat(provider.size(), is(4L));
+        assertThat(provider.exists("fatmike"), is(true));
+        assertThat(provider.exists(new StringBuilder("melvin")), is(true));
+        assertThat(provider.exists("aaa"), is(false));
+        assertThat(provider.exists("fatmik"), is(false));
+        assertThat(provider.exists("fatmike_"), is(false));
+        assertThat(provider.exists("zzz"), is(false));
+        assertThat(provider.get("elhefe").isPresent(), is(true));
+        assertThat(provider.get("myUsername").isPresent(), is(false));
+    }
+
+    @Test
+    public void test_exists_segments() throws IOException {
+        // tiny blocks and segments, so that blocks get padded to the next segment all over the file
+        final Random random = new Random(2017);
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            usernames.add(Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + "\u00e9\u65e5");
+        }
+        final Path indexFile = folder.newFile().toPath();
+        UserIndexWriter.write(usernames, indexFile, 5, 8);
+        MappedUserProvider provider = new MappedUserProvider(indexFile);
+
+        usernames.forEach(s -> assertThat(s, provider.exists(s), is(true)));
+        usernames.forEach(s -> assertThat(s, provider.exists(s + "x"), is(false)));
+        final List<String> walked = new ArrayList<>();
+        provider.forEach(walked::add);
+        Collections.sort(usernames, Utf8::compare);
+        assertThat(walked, is(usernames));
+    }
+
+    @Test
+    public void test_findWithPrefix() throws IOException {
+        // tiny blocks, so that the usernames under a prefix spread over several of them
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            usernames.add("user" + i);
+            usernames.add("fatmike" + i);
+        }
+        usernames.add("fatmik");
+        final Path indexFile = folder.newFile().toPath();
+        UserIndexWriter.write(usernames, indexFile, 5, 8);
+        MappedUserProvider provider = new MappedUserProvider(indexFile);
+
+        assertThat(provider.countWithPrefix("fatmike"), is(100));
+        assertThat(provider.countWithPrefix("fatmike1"), is(11));
+        assertThat(provider.countWithPrefix("fatmik"), is(101));
+        assertThat(provider.countWithPrefix("user5"), is(11));
+        assertThat(provider.countWithPrefix("zzz"), is(0));
+        assertThat(provider.countWithPrefix("a"), is(0));
+        assertThat(provider.findWithPrefix("fatmike1", 3), is(Arrays.asList("fatmike1", "fatmike10", "fatmike11")));
+        assertThat(provider.findWithPrefix("user99", 10), is(Arrays.asList("user99")));
+    }
+
+    @Test
+    public void test_empty() throws IOException {
+        final Path indexFile = folder.newFile().toPath();
+        UserIndexWriter.write(Collections.emptyList(), indexFile);
+        MappedUserProvider provider = new MappedUserProvider(indexFile);
+        assertThat(provider.size(), is(0L));
+        assertThat(provider.exists("fatmike"), is(false));
+        assertThat(provider.countWithPrefix("fat"), is(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_notAnIndex() throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, new byte[UserIndexWriter.HEADER_SIZE]);
+        new MappedUserProvider(file);
+    }
+}
@@ -0,0 +1,147 @@
+package data;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * @author victor.
+ */
+public class ResultCodecTest {
+    private final ResultCodec codec = new ResultCodec(true);
+
+    @Test
+    public void test_roundTrip() {
+        Result taken = result("fatmike", Outcome.TAKEN, Outcome.TAKEN.message("fatmike"),
+                Arrays.asList("fatmike7", "fa_tmike", "fatmikeFatmike", "_fatmike"));
+        Result decoded = roundTrip(codec, taken);
+        assertThat(decoded.getUsername(), is("fatmike"));
+        assertThat(decoded.getOutcome(), is(Outcome.TAKEN));
+        assertThat(decoded.isSuccess(), is(false));
+        assertThat(decoded.getMessg(), is("Provided username 'fatmike' is already taken. Here is some suggestions."));
+        assertThat(decoded.getSuggestedUsernames(), is(taken.getSuggestedUsernames()));
+
+        // the message is rebuilt out of the outcome, only the username travels
+        // flags, username, count, then shared chars + length + rest per suggestion
+        assertThat(codec.encodedSize(taken), is(1 + 8 + 1 + (1 + 1 + 1) + (1 + 1 + 6) + (1 + 1 + 7) + (1 + 1 + 8)));
+    }
+
+    @Test
+    public void test_roundTrip_messages() {
+        Result available = result("myUsername", Outcome.AVAILABLE, Outcome.AVAILABLE.message("myUsername"),
+                Collections.emptyList());
+        available.setSuccess(true);
+        assertThat(roundTrip(codec, available).isSuccess(), is(true));
+        assertThat(roundTrip(codec, available).getMessg(), is(available.getMessg()));
+
+        Result invalid = result("short", Outcome.INVALID, "username must be 6 characters long", null);
+        assertThat(roundTrip(codec, invalid).getMessg(), is("username must be 6 characters long"));
+        Result custom = result("fatmike", Outcome.TAKEN, "Taken", null);
+        assertThat(roundTrip(codec, custom).getMessg(), is("Taken"));
+        // no message stays no message, the standard one is only rebuilt when it was left out
+        Result noMessage = result("fatmike", Outcome.TAKEN, null, null);
+        assertThat(roundTrip(codec, noMessage).getMessg(), nullValue());
+        assertThat(roundTrip(codec, noMessage).getOutcome(), is(Outcome.TAKEN));
+
+        Result empty = new Result(false, null, null);
+        Result decoded = roundTrip(codec, empty);
+        assertThat(decoded.getUsername(), nullValue());
+        assertThat(decoded.getOutcome(), nullValue());
+        assertThat(decoded.getMessg(), nullValue());
+        assertThat(decoded.getSuggestedUsernames().isEmpty(), is(true));
+    }
+
+    @Test
+    public void test_roundTrip_nonAscii() {
+        // shares half a surrogate pair with the username, which must not be split
+        String username = "jos\u00e9\ud83d\ude00";
+        Result result = result(username, Outcome.TAKEN, Outcome.TAKEN.message(username), Arrays.asList(
+                username + "1", "jos\u00e9\ud83d\ude01", "jo_s\u00e9\ud83d\ude00", "\u65e5\u672c"));
+        for (ResultCodec c : new ResultCodec[] {codec, new ResultCodec(false)}) {
+            Result decoded = roundTrip(c, result);
+            assertThat(decoded.getUsername(), is(result.getUsername()));
+            assertThat(decoded.getMessg(), is(result.getMessg()));
+            assertThat(decoded.getSuggestedUsernames(), is(result.getSuggestedUsernames()));
+        }
+    }
+
+    @Test
+    public void test_relativeSuggestions_smaller() {
+        Result result = result("fatmike", Outcome.TAKEN, null, Arrays.asList("fatmike7", "fatmike_2017"));
+        assertThat(codec.encodedSize(result) < new ResultCodec(false).encodedSize(result), is(true));
+    }
+
+    @Test
+    public void test_batch() {
+        List<Result> results = Arrays.asList(
+                result("fatmike", Outcome.TAKEN, Outcome.TAKEN.message("fatmike"), Arrays.asList("fatmike1")),
+                result("myUsername", Outcome.AVAILABLE, Outcome.AVAILABLE.message("myUsername"), null));
+        for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(256), ByteBuffer.allocateDirect(256)}) {
+            buffer.put((byte) 0x7F);
+            codec.encode(results, buffer);
+            assertThat(buffer.position(), is(1 + codec.encodedSize(results)));
+            buffer.flip().get();
+
+            List<Result> decoded = ResultCodec.decodeAll(buffer);
+            assertThat(buffer.hasRemaining(), is(false));
+            assertThat(decoded.size(), is(2));
+            assertThat(decoded.get(0).getSuggestedUsernames(), is(Arrays.asList("fatmike1")));
+            assertThat(decoded.get(1).getMessg(), is("Provided username 'myUsername' is available"));
+        }
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void test_encode_overflow() {
+        Result result = result("fatmike", Outcome.TAKEN, null, Arrays.asList("fatmike7", "fatmike_2017"));
+        codec.encode(result, ByteBuffer.allocate(codec.encodedSize(result) - 1));
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void test_decode_truncated() {
+        Result result = result("fatmike", Outcome.TAKEN, null, Arrays.asList("fatmike7", "fatmike_2017"));
+        ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(result));
+        codec.encode(result, buffer);
+        buffer.flip().limit(buffer.limit() - 2);
+        ResultCodec.decode(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_decode_notResult() {
+        ResultCodec.decode(ByteBuffer.wrap(new byte[] {(byte) 0x87, 0}));
+    }
+
+    @Test
+    public void test_isMessage() {
+        assertThat(Outcome.TAKEN.isMessage(Outcome.TAKEN.message("fatmike"), "fatmike"), is(true));
+        assertThat(Outcome.TAKEN.isMessage(Outcome.TAKEN.message("fatmike"), "fatmik"), is(false));
+        assertThat(Outcome.TAKEN.isMessage(Outcome.RESTRICTED.message("fatmike"), "fatmike"), is(false));
+        assertThat(Outcome.INVALID.isMessage("username must not be empty", "fatmike"), is(false));
+        assertThat(Outcome.INVALID.message("fatmike"), nullValue());
+    }
+
+    private static Result roundTrip(final ResultCodec codec, final Result result) {
+        final ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(result));
+        codec.encode(result, buffer);
+        assertThat(buffer.hasRemaining(), is(false));
+        buffer.flip();
+        final Result decoded = ResultCodec.decode(buffer);
+        assertThat(buffer.hasRemaining(), is(false));
+        return decoded;
+    }
+
+    private static Result result(String username, Outcome outcome, String messg, List<String> suggestions) {
+        final Result result = new Result(false, suggestions, messg);
+        result.setUsername(username);
+        result.setOutcome(outcome);
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+package data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class ShardedUserProviderTest {
+    private static final int VIRTUAL_NODES = 128;
+    private static final List<String> SHARD_IDS = Arrays.asList("shard-0", "shard-1", "shard-2");
+
+    private List<String> usernames;
+    private Map<String, List<String>> parts;
+    private ShardedUserProvider shardedUserProvider;
+
+    @Before
+    public void setup() {
+        usernames = IntStream.range(0, 3000).mapToObj(i -> "user" + i).collect(Collectors.toList());
+        parts = ShardedUserProvider.partition(usernames, SHARD_IDS, VIRTUAL_NODES);
+        final Map<String, IUserProvider> shards = new LinkedHashMap<>();
+        parts.forEach((shardId, part) -> shards.put(shardId, new CompactUserProvider(part)));
+        shardedUserProvider = new ShardedUserProvider(shards, VIRTUAL_NODES, Runnable::run);
+    }
+
+    @Test
+    public void test_partition() {
+        int total = 0;
+        for (List<String> part : parts.values()) {
+            // evenly spread give or take
+            assertThat(part.size() > 600 && part.size() < 1400, is(true));
+            total += part.size();
+        }
+        assertThat(total, is(usernames.size()));
+    }
+
+    @Test
+    public void test_get() {
+        for (String username : usernames) {
+            assertThat(shardedUserProvider.get(username).isPresent(), is(true));
+            assertThat(shardedUserProvider.exists(username), is(true));
+            assertThat(parts.get(shardedUserProvider.shardOf(username)).contains(username), is(true));
+        }
+        assertThat(shardedUserProvider.get("myUsername").isPresent(), is(false));
+        assertThat(shardedUserProvider.getAsync("user42").join().isPresent(), is(true));
+    }
+
+    @Test
+    public void test_findTaken() {
+        final List<String> batch = new ArrayList<>(usernames.subList(0, 50));
+        batch.add("myUsername");
+        batch.add("otherUsername");
+        final Set<String> expected = new HashSet<>(usernames.subList(0, 50));
+
+        assertThat(shardedUserProvider.findTaken(batch), is(expected));
+        assertThat(shardedUserProvider.findTakenAsync(batch).join(), is(expected));
+        assertThat(shardedUserProvider.findTaken(Collections.singletonList("user7")),
+                is(Collections.singleton("user7")));
+        assertThat(shardedUserProvider.findTaken(Collections.emptyList()).isEmpty(), is(true));
+    }
+
+    @Test
+    public void test_addShard() {
+        final Map<String, String> before = new LinkedHashMap<>();
+        usernames.forEach(username -> before.put(username, shardedUserProvider.shardOf(username)));
+
+        shardedUserProvider.addShard("shard-3", new CompactUserProvider(Collections.emptyList()));
+        assertThat(shardedUserProvider.getShardIds().size(), is(4));
+
+        int moved = 0;
+        for (String username : usernames) {
+            final String shardId = shardedUserProvider.shardOf(username);
+            if (!shardId.equals(before.get(username))) {
+                // usernames only ever move to the new shard
+                assertThat(shardId, is("shard-3"));
+                moved++;
+            }
+        }
+        // about a quarter of them
+        assertThat(moved > 450 && moved < 1050, is(true));
+    }
+
+    @Test
+    public void test_removeShard() {
+        final Map<String, String> before = new LinkedHashMap<>();
+        usernames.forEach(username -> before.put(username, shardedUserProvider.shardOf(username)));
+
+        shardedUserProvider.removeShard("shard-1");
+        for (String username : usernames) {
+            final String shardId = shardedUserProvider.shardOf(username);
+            if ("shard-1".equals(before.get(username))) {
+                assertThat("shard-1".equals(shardId), is(false));
+            } else {
+                // usernames of the remaining shards stay where they are
+                assertThat(shardId, is(before.get(username)));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_removeLastShard() {
+        final ShardedUserProvider single = new ShardedUserProvider(
+                Collections.singletonMap("shard-0", new CompactUserProvider(usernames)), VIRTUAL_NODES, null);
+        single.removeShard("shard-0");
+    }
+}
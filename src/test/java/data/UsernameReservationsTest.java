@@ -0,0 +1,109 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import validation.UsernameCanonicalizer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class UsernameReservationsTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_reserve() throws IOException {
+        try (WritableUserProvider provider =
+                     new WritableUserProvider(folder.newFolder().toPath(), Arrays.asList("fatmike"), 100)) {
+            final UsernameReservations reservations = new UsernameReservations(provider);
+            assertThat(reservations.reserve("fatmike", 1, TimeUnit.MINUTES).isPresent(), is(false));
+
+            final Reservation reservation = reservations.reserve("myUsername", 1, TimeUnit.MINUTES).get();
+            assertThat(reservations.isReserved("myUsername"), is(true));
+            assertThat(reservations.reserve("myUsername", 1, TimeUnit.MINUTES).isPresent(), is(false));
+            assertThat(reservations.commit(reservation), is(true));
+            assertThat(provider.exists("myUsername"), is(true));
+            assertThat(reservations.isReserved("myUsername"), is(false));
+            assertThat(reservations.commit(reservation), is(false));
+
+            final Reservation released = reservations.reserve("smelly", 1, TimeUnit.MINUTES).get();
+            assertThat(reservations.release(released), is(true));
+            assertThat(reservations.commit(released), is(false));
+            assertThat(reservations.reserve("smelly", 1, TimeUnit.MINUTES).isPresent(), is(true));
+        }
+    }
+
+    @Test
+    public void test_reserve_expired() throws IOException {
+        try (WritableUserProvider provider = new WritableUserProvider(folder.newFolder().toPath(), null, 100)) {
+            final UsernameReservations reservations = new UsernameReservations(provider);
+            final Reservation expired = reservations.reserve("myUsername", 0, TimeUnit.SECONDS).get();
+            assertThat(reservations.isReserved("myUsername"), is(false));
+
+            final Reservation reservation = reservations.reserve("myUsername", 1, TimeUnit.MINUTES).get();
+            assertThat(reservations.commit(expired), is(false));
+            assertThat(reservations.release(expired), is(false));
+            assertThat(reservations.commit(reservation), is(true));
+        }
+    }
+
+    @Test
+    public void test_reserve_concurrent() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (WritableUserProvider provider = new WritableUserProvider(folder.newFolder().toPath(), null, 100)) {
+            final UsernameReservations reservations = new UsernameReservations(provider);
+            final Callable<Boolean> signup = () -> {
+                final Optional<Reservation> reservation = reservations.reserve("myUsername", 1, TimeUnit.MINUTES);
+                return reservation.isPresent() && reservations.commit(reservation.get());
+            };
+            final List<Future<Boolean>> signups = executor.invokeAll(
+                    IntStream.range(0, 32).mapToObj(i -> signup).collect(Collectors.toList()));
+
+            int claimed = 0;
+            for (Future<Boolean> future : signups) {
+                claimed += future.get() ? 1 : 0;
+            }
+            assertThat(claimed, is(1));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_reserve_canonical() {
+        // over canonical forms, the spellings of a username share a single reservation
+        final UsernameReservations reservations = new UsernameReservations(
+                new CanonicalUserProvider(new UserProvider(null), UsernameCanonicalizer::canonicalize),
+                UsernameCanonicalizer::canonicalize);
+        final Reservation reservation = reservations.reserve("FatMike2", 1, TimeUnit.MINUTES).get();
+        assertThat(reservations.reserve("fatmike2", 1, TimeUnit.MINUTES).isPresent(), is(false));
+        assertThat(reservations.reserve("fatm1ke2", 1, TimeUnit.MINUTES).isPresent(), is(false));
+        assertThat(reservations.isReserved("FATM1KE2"), is(true));
+
+        assertThat(reservations.release(reservation), is(true));
+        assertThat(reservations.isReserved("fatmike2"), is(false));
+        assertThat(reservations.reserve("fatm1ke2", 1, TimeUnit.MINUTES).isPresent(), is(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_commit_readOnly() {
+        final UsernameReservations reservations =
+                new UsernameReservations(new UserProvider(null));
+        reservations.commit(reservations.reserve("myUsername", 1, TimeUnit.MINUTES).get());
+    }
+}
@@ -0,0 +1,130 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class WritableUserProviderTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_register() throws IOException {
+        final Path dir = folder.newFolder().toPath();
+        final List<String> registered = new ArrayList<>();
+        try (WritableUserProvider provider = new WritableUserProvider(dir, Arrays.asList("fatmike", "elhefe"), 100)) {
+            provider.addRegistrationListener(registered::add);
+            assertThat(provider.exists("fatmike"), is(true));
+            assertThat(provider.exists("myUsername"), is(false));
+            assertThat(provider.register("myUsername"), is(true));
+            assertThat(provider.register("fatmike"), is(false));
+            assertThat(provider.register("myUsername"), is(false));
+            assertThat(provider.exists("myUsername"), is(true));
+            assertThat(provider.get("myUsername").get().getUsername(), is("myUsername"));
+            assertThat(registered, is(Arrays.asList("myUsername")));
+        }
+
+        // registrations come back from the log, the initial usernames are only used to create the store
+        try (WritableUserProvider provider = new WritableUserProvider(dir, Arrays.asList("melvin"), 100)) {
+            assertThat(provider.exists("myUsername"), is(true));
+            assertThat(provider.exists("fatmike"), is(true));
+            assertThat(provider.exists("melvin"), is(false));
+            assertThat(provider.pendingRegistrations(), is(1));
+        }
+    }
+
+    @Test
+    public void test_compact() throws IOException {
+        final Path dir = folder.newFolder().toPath();
+        try (WritableUserProvider provider = new WritableUserProvider(dir, Arrays.asList("fatmike"), 100)) {
+            provider.register("myUsername");
+            provider.register("smelly");
+            provider.compact();
+            assertThat(provider.pendingRegistrations(), is(0));
+            assertThat(Files.size(dir.resolve(WritableUserProvider.LOG_FILE)), is(0L));
+            assertThat(Files.exists(dir.resolve(WritableUserProvider.COMPACTING_LOG_FILE)), is(false));
+            assertThat(provider.exists("myUsername"), is(true));
+            assertThat(provider.exists("smelly"), is(true));
+            assertThat(provider.exists("fatmike"), is(true));
+            assertThat(provider.register("melvin"), is(true));
+        }
+
+        try (WritableUserProvider provider = new WritableUserProvider(dir, null, 100)) {
+            assertThat(provider.pendingRegistrations(), is(1));
+            assertThat(provider.exists("smelly"), is(true));
+            assertThat(provider.exists("melvin"), is(true));
+        }
+    }
+
+    @Test
+    public void test_compact_background() throws Exception {
+        final Path dir = folder.newFolder().toPath();
+        final ExecutorService readers = Executors.newSingleThreadExecutor();
+        try (WritableUserProvider provider = new WritableUserProvider(dir, Arrays.asList("fatmike"), 10)) {
+            // lookups keep finding every username while compactions come and go
+            assertThat(provider.register("user0"), is(true));
+            final AtomicBoolean done = new AtomicBoolean();
+            final Future<Boolean> reader = readers.submit(() -> {
+                boolean found = true;
+                while (!done.get()) {
+                    found &= provider.exists("fatmike") && provider.exists("user0");
+                }
+                return found;
+            });
+            for (int i = 1; i < 1000; i++) {
+                assertThat(provider.register("user" + i), is(true));
+            }
+            done.set(true);
+            assertThat(reader.get(), is(true));
+            for (int i = 0; i < 1000; i++) {
+                assertThat(provider.exists("user" + i), is(true));
+            }
+        } finally {
+            readers.shutdown();
+        }
+
+        try (WritableUserProvider provider = new WritableUserProvider(dir, null, 10)) {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(provider.exists("user" + i), is(true));
+            }
+        }
+    }
+
+    @Test
+    public void test_tornLog() throws IOException {
+        final Path dir = folder.newFolder().toPath();
+        try (WritableUserProvider provider = new WritableUserProvider(dir, null, 100)) {
+            provider.register("myUsername");
+        }
+        Files.write(dir.resolve(WritableUserProvider.LOG_FILE), "smel".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (WritableUserProvider provider = new WritableUserProvider(dir, null, 100)) {
+            assertThat(provider.exists("smel"), is(false));
+            assertThat(provider.register("melvin"), is(true));
+        }
+        try (WritableUserProvider provider = new WritableUserProvider(dir, null, 100)) {
+            assertThat(provider.exists("myUsername"), is(true));
+            assertThat(provider.exists("melvin"), is(true));
+            assertThat(provider.exists("smelmelvin"), is(false));
+        }
+    }
+}
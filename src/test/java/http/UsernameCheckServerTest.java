@@ -0,0 +1,266 @@
+package http;
+
+import data.Outcome;
+import data.Result;
+import metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import service.IUserService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author victor.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class UsernameCheckServerTest {
+    @Mock private IUserService userService;
+    private ExecutorService checks;
+    private UsernameCheckServer server;
+    private Result taken;
+    private Result available;
+
+    @Before
+    public void setup() throws IOException {
+        checks = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "check"));
+        server = new UsernameCheckServer(
+                userService, new InetSocketAddress("localhost", 0), checks, new BufferPool(1024, 16));
+        server.start();
+        taken = new Result(false, Arrays.asList("fatmike1", "fat\"mike"), "Provided username 'fatmike' is taken");
+        taken.setOutcome(Outcome.TAKEN);
+        available = new Result(true, null, "Provided username 'myUsername' is available");
+        available.setOutcome(Outcome.AVAILABLE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        checks.shutdown();
+    }
+
+    @Test
+    public void test_check() throws IOException {
+        final AtomicReference<String> checkThread = new AtomicReference<>();
+        when(userService.checkUsernameAsync("fatmike")).thenAnswer(invocation -> {
+            checkThread.set(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture(taken);
+        });
+        try (Socket socket = connect()) {
+            send(socket, "GET /check?username=fatmike HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertThat(readResponse(socket.getInputStream()), is("HTTP/1.1 200 OK|{\"success\":false,\"outcome\":"
+                    + "\"TAKEN\",\"messg\":\"Provided username 'fatmike' is taken\",\"suggestedUsernames\":"
+                    + "[\"fatmike1\",\"fat\\\"mike\"]}"));
+        }
+        // checked off the selector thread
+        assertThat(checkThread.get(), is("check"));
+    }
+
+    @Test
+    public void test_check_batch() throws IOException {
+        when(userService.checkUsernames(Arrays.asList("fatmike", "myUsername")))
+                .thenReturn(Arrays.asList(taken, available));
+        try (Socket socket = connect()) {
+            send(socket, "POST /check HTTP/1.1\r\nContent-Length: 19\r\n\r\nfatmike\r\nmyUsername");
+            final String response = readResponse(socket.getInputStream());
+            assertThat(response.startsWith("HTTP/1.1 200 OK|[{\"success\":false"), is(true));
+            assertThat(response.endsWith("{\"success\":true,\"outcome\":\"AVAILABLE\",\"messg\":\"Provided username "
+                    + "'myUsername' is available\",\"suggestedUsernames\":[]}]"), is(true));
+        }
+    }
+
+    @Test
+    public void test_check_pipelined() throws IOException {
+        // the first check completes last, responses still go back in request order
+        final CompletableFuture<Result> slow = new CompletableFuture<>();
+        when(userService.checkUsernameAsync("fatmike")).thenReturn(slow);
+        when(userService.checkUsernameAsync("myUsername")).thenReturn(CompletableFuture.completedFuture(available));
+        try (Socket socket = connect()) {
+            send(socket, "GET /check?username=fatmike HTTP/1.1\r\n\r\n"
+                    + "GET /check?username=myUsername HTTP/1.1\r\n\r\n"
+                    + "GET /check?username=myUsername HTTP/1.1\r\nConnection: close\r\n\r\n");
+            slow.complete(taken);
+
+            final InputStream in = socket.getInputStream();
+            assertThat(readResponse(in).contains("\"TAKEN\""), is(true));
+            assertThat(readResponse(in).contains("\"AVAILABLE\""), is(true));
+            assertThat(readResponse(in).contains("\"AVAILABLE\""), is(true));
+            // closed as asked
+            assertThat(in.read(), is(-1));
+        }
+    }
+
+    @Test
+    public void test_check_keepAlive() throws IOException {
+        when(userService.checkUsernameAsync("myUsername")).thenReturn(CompletableFuture.completedFuture(available));
+        try (Socket socket = connect()) {
+            for (int i = 0; i < 3; i++) {
+                send(socket, "GET /check?username=myUsername HTTP/1.1\r\n\r\n");
+                assertThat(readResponse(socket.getInputStream()).contains("\"AVAILABLE\""), is(true));
+            }
+        }
+    }
+
+    @Test
+    public void test_check_keepAlive_http10() throws IOException {
+        when(userService.checkUsernameAsync("myUsername")).thenReturn(CompletableFuture.completedFuture(available));
+        try (Socket socket = connect()) {
+            // the client is told the connection stays open, as it asked
+            final InputStream in = socket.getInputStream();
+            send(socket, "GET /check?username=myUsername HTTP/1.0\r\nConnection: keep-alive\r\n\r\n");
+            final String head = readHead(in);
+            assertThat(head.contains("\r\nConnection: keep-alive\r\n"), is(true));
+            assertThat(readBody(in, head).contains("\"AVAILABLE\""), is(true));
+
+            send(socket, "GET /check?username=myUsername HTTP/1.0\r\n\r\n");
+            assertThat(readHead(in).contains("\r\nConnection: close\r\n"), is(true));
+        }
+    }
+
+    @Test
+    public void test_errors() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "GET /nope HTTP/1.1\r\n\r\nDELETE /check HTTP/1.1\r\n\r\nGET /check HTTP/1.1\r\n\r\n");
+            final InputStream in = socket.getInputStream();
+            assertThat(readResponse(in), is("HTTP/1.1 404 Not Found|{\"error\":\"No such resource /nope\"}"));
+            assertThat(readResponse(in), is("HTTP/1.1 405 Method Not Allowed|{\"error\":\"DELETE is not allowed\"}"));
+            assertThat(readResponse(in), is("HTTP/1.1 400 Bad Request|{\"error\":\"Missing username parameter\"}"));
+        }
+
+        try (Socket socket = connect()) {
+            final char[] tooLarge = new char[2048];
+            Arrays.fill(tooLarge, 'a');
+            send(socket, "GET /check?username=" + new String(tooLarge) + " HTTP/1.1\r\n\r\n");
+            final InputStream in = socket.getInputStream();
+            assertThat(readResponse(in).startsWith("HTTP/1.1 431"), is(true));
+            assertThat(in.read(), is(-1));
+        }
+    }
+
+    @Test
+    public void test_check_failure() throws IOException {
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        server.setMetricsRegistry(metricsRegistry);
+        final CompletableFuture<Result> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("User source unavailable"));
+        when(userService.checkUsernameAsync("fatmike")).thenReturn(failed);
+        when(userService.checkUsernames(Collections.singletonList("fatmike")))
+                .thenThrow(new IllegalStateException("User source unavailable"));
+        try (Socket socket = connect()) {
+            send(socket, "GET /check?username=fatmike HTTP/1.1\r\n\r\n"
+                    + "POST /check HTTP/1.0\r\nContent-Length: 7\r\n\r\nfatmike");
+            final InputStream in = socket.getInputStream();
+            for (int i = 0; i < 2; i++) {
+                final String response = readResponse(in);
+                assertThat(response.startsWith("HTTP/1.1 500"), is(true));
+                // logged on the server, clients do not get to see the internals
+                assertThat(response.contains("Internal error"), is(true));
+                assertThat(response.contains("IllegalStateException"), is(false));
+                assertThat(response.contains("User source unavailable"), is(false));
+            }
+            // HTTP/1.0 closes unless asked otherwise
+            assertThat(in.read(), is(-1));
+        }
+        assertThat(metricsRegistry.counter("http.check.failures").getCount(), is(2L));
+    }
+
+    @Test
+    public void test_check_failingConnection() throws IOException {
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        server.setMetricsRegistry(metricsRegistry);
+        // cannot be encoded, it blows up on the selector thread
+        final Result broken = new Result(true, null, null);
+        broken.setSuggestedUsernames(null);
+        when(userService.checkUsernameAsync("broken")).thenReturn(CompletableFuture.completedFuture(broken));
+        when(userService.checkUsernameAsync("myUsername")).thenReturn(CompletableFuture.completedFuture(available));
+        try (Socket socket = connect(); Socket other = connect()) {
+            send(socket, "GET /check?username=broken HTTP/1.1\r\n\r\n");
+            // only the failing connection is dropped
+            try {
+                assertThat(socket.getInputStream().read(), is(-1));
+            } catch (SocketException e) {
+                // reset rather than closed, dropped all the same
+            }
+            send(other, "GET /check?username=myUsername HTTP/1.1\r\n\r\n");
+            assertThat(readResponse(other.getInputStream()).contains("\"AVAILABLE\""), is(true));
+        }
+        try (Socket socket = connect()) {
+            send(socket, "GET /check?username=myUsername HTTP/1.1\r\n\r\n");
+            assertThat(readResponse(socket.getInputStream()).contains("\"AVAILABLE\""), is(true));
+        }
+        assertThat(metricsRegistry.counter("http.connection.failures").getCount(), is(1L));
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static void send(final Socket socket, final String request) throws IOException {
+        final OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * @return status line and body joined with a '|'
+     */
+    private static String readResponse(final InputStream in) throws IOException {
+        final String head = readHead(in);
+        return head.substring(0, head.indexOf("\r\n")) + "|" + readBody(in, head);
+    }
+
+    /**
+     * @return response head, the body left unread
+     */
+    private static String readHead(final InputStream in) throws IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString("US-ASCII").endsWith("\r\n\r\n")) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed before the response");
+            }
+            head.write(b);
+        }
+        return head.toString("US-ASCII");
+    }
+
+    private static String readBody(final InputStream in, final String head) throws IOException {
+        int contentLength = 0;
+        for (String line : head.split("\r\n")) {
+            if (line.startsWith("Content-Length: ")) {
+                contentLength = Integer.parseInt(line.substring("Content-Length: ".length()));
+            }
+        }
+        final byte[] body = new byte[contentLength];
+        for (int read = 0; read < contentLength; ) {
+            final int n = in.read(body, read, contentLength - read);
+            if (n < 0) {
+                throw new IOException("Connection closed before the response body");
+            }
+            read += n;
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,40 @@
+package metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class MetricsRegistryTest {
+    @Test
+    public void test_counter() {
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        metricsRegistry.counter("checks").increment();
+        metricsRegistry.counter("checks").add(2);
+        assertThat(metricsRegistry.counter("checks").getCount(), is(3L));
+        assertThat(metricsRegistry.counter("other").getCount(), is(0L));
+    }
+
+    @Test
+    public void test_timer() {
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        final ITimer timer = metricsRegistry.timer("check");
+        timer.record(1000);
+        timer.record(3000);
+        assertThat(timer.getCount(), is(2L));
+        assertThat(timer.getTotalNanos(), is(4000L));
+        assertThat(timer.getMaxNanos(), is(3000L));
+        assertThat(metricsRegistry.report().trim(), is("check count=2 mean=2.0us max=3.0us"));
+    }
+
+    @Test
+    public void test_noop() {
+        IMetricsRegistry.NOOP.counter("checks").increment();
+        IMetricsRegistry.NOOP.timer("check").record(1000);
+        assertThat(IMetricsRegistry.NOOP.counter("checks").getCount(), is(0L));
+        assertThat(IMetricsRegistry.NOOP.timer("check").getCount(), is(0L));
+    }
+}
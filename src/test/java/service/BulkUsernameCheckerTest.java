@@ -0,0 +1,131 @@
+package service;
+
+import data.CompactUserProvider;
+import data.IUserProvider;
+import data.IUsernameReservations;
+import data.Outcome;
+import data.UsernameReservations;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import validation.UserValidator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class BulkUsernameCheckerTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+    private IUsernameReservations reservations;
+    private BulkUsernameChecker bulkUsernameChecker;
+    private Path input;
+    private Path output;
+
+    @Before
+    public void setup() throws IOException {
+        final IUserProvider userProvider = new CompactUserProvider(Arrays.asList("fatmike", "elhefe"));
+        reservations = new UsernameReservations(userProvider);
+        bulkUsernameChecker = new BulkUsernameChecker(
+                new UserValidator(6, new HashSet<>(Arrays.asList("crack", "damn"))), userProvider, reservations);
+        input = folder.newFile("usernames.csv").toPath();
+        output = folder.newFile("results.csv").toPath();
+    }
+
+    @Test
+    public void test_check() throws IOException {
+        reservations.reserve("smelly", 1, TimeUnit.MINUTES);
+        write("fatmike\nmyUsername\nabc\ncrackhead\n\nsmelly\nelhefe");
+
+        final BulkUsernameChecker.Summary summary = bulkUsernameChecker.check(input, output);
+        assertThat(read(), is(Arrays.asList("fatmike,TAKEN", "myUsername,AVAILABLE", "abc,INVALID",
+                "crackhead,RESTRICTED", "smelly,TAKEN", "elhefe,TAKEN")));
+        assertThat(summary.getTotal(), is(6L));
+        assertThat(summary.getCount(Outcome.TAKEN), is(3L));
+        assertThat(summary.getCount(Outcome.RESTRICTED), is(1L));
+    }
+
+    @Test
+    public void test_check_csv() throws IOException {
+        write("\"fatmike\",mike@example.com\r\n  myUsername , x\r\n\"élève_étudiant\",y\r\n");
+
+        bulkUsernameChecker.check(input, output);
+        assertThat(read(), is(Arrays.asList(
+                "fatmike,TAKEN", "myUsername,AVAILABLE", "élève_étudiant,AVAILABLE")));
+    }
+
+    @Test
+    public void test_check_header() throws IOException {
+        write("username,email\nfatmike,mike@example.com\nmyUsername,x\n");
+
+        final BulkUsernameChecker.Summary summary = bulkUsernameChecker.check(input, output, true);
+        assertThat(read(), is(Arrays.asList("fatmike,TAKEN", "myUsername,AVAILABLE")));
+        assertThat(summary.getTotal(), is(2L));
+
+        // a header and nothing else
+        write("username");
+        assertThat(bulkUsernameChecker.check(input, output, true).getTotal(), is(0L));
+    }
+
+    @Test
+    public void test_check_manyChunks() throws IOException {
+        // several chunks worth of usernames and chars, lines get cut at chunk boundaries
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 150000; i++) {
+            usernames.add("username" + i);
+        }
+        usernames.set(99999, "fatmike");
+        write(String.join("\n", usernames) + "\n");
+
+        final BulkUsernameChecker.Summary summary = bulkUsernameChecker.check(input, output);
+        assertThat(summary.getTotal(), is(150000L));
+        assertThat(summary.getCount(Outcome.TAKEN), is(1L));
+        final List<String> results = read();
+        assertThat(results.size(), is(150000));
+        assertThat(results.get(0), is("username0,AVAILABLE"));
+        assertThat(results.get(99999), is("fatmike,TAKEN"));
+        assertThat(results.get(149999), is("username149999,AVAILABLE"));
+    }
+
+    @Test
+    public void test_check_shortLines() throws IOException {
+        // more usernames than a chunk holds are left once the whole input is decoded
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            content.append("ab\n");
+        }
+        write(content.toString());
+
+        final BulkUsernameChecker.Summary summary = bulkUsernameChecker.check(input, output);
+        assertThat(summary.getCount(Outcome.INVALID), is(100000L));
+        assertThat(read().size(), is(100000));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_check_lineTooLong() throws IOException {
+        final char[] line = new char[1 << 19];
+        Arrays.fill(line, 'a');
+        write(new String(line));
+        bulkUsernameChecker.check(input, output);
+    }
+
+    private void write(final String content) throws IOException {
+        Files.write(input, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> read() throws IOException {
+        return Files.readAllLines(output, StandardCharsets.UTF_8);
+    }
+}
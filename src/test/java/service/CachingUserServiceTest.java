@@ -0,0 +1,130 @@
+package service;
+
+import data.Outcome;
+import data.Reservation;
+import data.Result;
+import data.UserProvider;
+import data.UsernameReservations;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author victor.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CachingUserServiceTest {
+    @Mock private IUserService userService;
+    private CachingUserService cachingUserService;
+    private Result taken;
+    private Result available;
+
+    @Before
+    public void setup() {
+        cachingUserService = new CachingUserService(userService, 2, 1, TimeUnit.MINUTES);
+        taken = new Result(false, Arrays.asList("fatmike1", "fatmike_1"), "Provided username 'fatmike' is already taken.");
+        available = new Result(true, null, "Provided username 'myUsername' is available");
+        when(userService.checkUsername("fatmike")).thenReturn(taken);
+    }
+
+    @Test
+    public void test_checkUsername() {
+        assertThat(cachingUserService.checkUsername("fatmike").getSuggestedUsernames(), is(taken.getSuggestedUsernames()));
+        assertThat(cachingUserService.checkUsername(" fatmike").getMessg(), is(taken.getMessg()));
+        verify(userService, times(1)).checkUsername("fatmike");
+        assertThat(cachingUserService.getHits(), is(1L));
+        assertThat(cachingUserService.getMisses(), is(1L));
+    }
+
+    @Test
+    public void test_checkUsername_evictions() {
+        when(userService.checkUsername("myUsername")).thenReturn(available);
+        when(userService.checkUsername("elhefe_")).thenReturn(available);
+        cachingUserService.checkUsername("fatmike");
+        cachingUserService.checkUsername("myUsername");
+        cachingUserService.checkUsername("elhefe_");
+        assertThat(cachingUserService.size(), is(2));
+        assertThat(cachingUserService.getEvictions(), is(1L));
+
+        // the oldest one went away
+        cachingUserService.checkUsername("fatmike");
+        verify(userService, times(2)).checkUsername("fatmike");
+    }
+
+    @Test
+    public void test_onRegistered() {
+        when(userService.checkUsername("myUsername")).thenReturn(available);
+        cachingUserService.checkUsername("fatmike");
+        cachingUserService.checkUsername("myUsername");
+
+        // one of the suggestions for fatmike got registered
+        cachingUserService.onRegistered("fatmike_1");
+        assertThat(cachingUserService.getInvalidations(), is(1L));
+        cachingUserService.checkUsername("fatmike");
+        verify(userService, times(2)).checkUsername("fatmike");
+
+        // and so did myUsername
+        cachingUserService.onRegistered("myUsername");
+        cachingUserService.checkUsername("myUsername");
+        verify(userService, times(2)).checkUsername("myUsername");
+    }
+
+    @Test
+    public void test_reservations() {
+        final UsernameReservations reservations = new UsernameReservations(new UserProvider(Collections.emptySet()));
+        cachingUserService.setReservations(reservations);
+        when(userService.checkUsername("myUsername")).thenReturn(available);
+        cachingUserService.checkUsername("myUsername");
+
+        // reserving the username drops its cached Result
+        final Reservation reservation = reservations.reserve("myUsername", 1, TimeUnit.MINUTES).get();
+        final Result reserved = new Result(false, null, "Provided username 'myUsername' is already taken.");
+        reserved.setOutcome(Outcome.TAKEN);
+        when(userService.checkUsername("myUsername")).thenReturn(reserved);
+        assertThat(cachingUserService.checkUsername("myUsername").isSuccess(), is(false));
+        // taken only for being reserved, not cached as the reservation may expire any time
+        assertThat(cachingUserService.checkUsername("myUsername").isSuccess(), is(false));
+        verify(userService, times(3)).checkUsername("myUsername");
+
+        reservations.release(reservation);
+        when(userService.checkUsername("myUsername")).thenReturn(available);
+        assertThat(cachingUserService.checkUsername("myUsername").isSuccess(), is(true));
+    }
+
+    @Test
+    public void test_checkUsernames() {
+        when(userService.checkUsernames(Collections.singletonList("myUsername")))
+                .thenReturn(Collections.singletonList(available));
+        cachingUserService.checkUsername("fatmike");
+
+        List<Result> results = cachingUserService.checkUsernames(Arrays.asList("fatmike", "myUsername", "fatmike"));
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).isSuccess(), is(false));
+        assertThat(results.get(1).isSuccess(), is(true));
+        assertThat(results.get(2).isSuccess(), is(false));
+        assertThat(cachingUserService.checkUsernameAsync("myUsername").join().isSuccess(), is(true));
+        verify(userService, times(1)).checkUsername("fatmike");
+    }
+
+    @Test
+    public void test_checkUsernameAsync() {
+        when(userService.checkUsernameAsync("myUsername")).thenReturn(CompletableFuture.completedFuture(available));
+        assertThat(cachingUserService.checkUsernameAsync("myUsername").join().isSuccess(), is(true));
+        assertThat(cachingUserService.checkUsernameAsync("myUsername").join().isSuccess(), is(true));
+        verify(userService, times(1)).checkUsernameAsync("myUsername");
+    }
+}
@@ -0,0 +1,61 @@
+package service;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class CandidateBufferTest {
+    @Test
+    public void test_edit() {
+        final CandidateBuffer buffer = new CandidateBuffer(4);
+        buffer.reset("fatmike").appendCapitalized(0, 7).insert(3, '_').append('_').append(10);
+        assertThat(buffer.toString(), is("fat_mikeFatmike_10"));
+        assertThat(buffer.contentEquals("fat_mikeFatmike_10"), is(true));
+        assertThat(buffer.contentEquals("fat_mikeFatmike_1"), is(false));
+        assertThat(buffer.reset("elhefe").append(-2017).toString(), is("elhefe-2017"));
+        assertThat(buffer.reset("melvin").append(Integer.MIN_VALUE).toString(), is("melvin" + Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void test_decorateInPlace() {
+        // same random draws, same decorations whether decorating Strings or the buffer
+        final CandidateBuffer buffer = new CandidateBuffer(4);
+        final IRandomSource random = IRandomSource.seeded(2017L);
+        final IRandomSource sameRandom = IRandomSource.seeded(2017L);
+        final TextDecorator decorator = chain(random);
+        final TextDecorator sameDecorator = chain(sameRandom);
+        for (int i = 0; i < 1000; i++) {
+            sameDecorator.decorate(buffer.reset("fatmike"));
+            assertThat(buffer.toString(), is(decorator.decorate("fatmike")));
+        }
+    }
+
+    @Test
+    public void test_candidateSet() {
+        final CandidateSet set = new CandidateSet();
+        final CandidateBuffer buffer = new CandidateBuffer(4);
+        for (int i = 0; i < 100; i++) {
+            assertThat(set.add("fatmike" + i), is(true));
+        }
+        assertThat(set.add("fatmike7"), is(false));
+        assertThat(set.size(), is(100));
+        assertThat(set.contains(buffer.reset("fatmike").append(42)), is(true));
+        assertThat(set.contains(buffer.reset("fatmike").append(100)), is(false));
+    }
+
+    private static TextDecorator chain(IRandomSource random) {
+        final TextDecorator noop = new TextDecorator() {
+            @Override
+            public String decorate(String initial) {
+                return initial;
+            }
+        };
+        return new UsernameGenerator.DelimiterDecorator(
+                new UsernameGenerator.RandomNumberSuffixDecorator(
+                        new UsernameGenerator.RepeatTextDecorator(noop, random), random), random);
+    }
+}
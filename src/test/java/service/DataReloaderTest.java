@@ -0,0 +1,183 @@
+package service;
+
+import data.CompactUserProvider;
+import data.ReloadableUserProvider;
+import metrics.MetricsRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import validation.IUserValidator;
+import validation.ReloadableUserValidator;
+import validation.UserValidator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class DataReloaderTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_readEntries() throws IOException {
+        final Path file = write(folder.newFile().toPath(), "crack, damn\n\n  drunk\n,grass,\n");
+        assertThat(DataReloader.readEntries(file), is(Arrays.asList("crack", "damn", "drunk", "grass")));
+    }
+
+    @Test
+    public void test_reload() throws IOException {
+        final Path file = write(folder.newFile().toPath(), "crack");
+        final ReloadableUserValidator userValidator = new ReloadableUserValidator(validator(file));
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        final AtomicInteger reloaded = new AtomicInteger();
+        try (DataReloader dataReloader = new DataReloader()) {
+            dataReloader.setMetricsRegistry(metricsRegistry);
+            dataReloader.watch(file, words -> userValidator.swap(new UserValidator(6, new HashSet<>(words))));
+            dataReloader.addReloadListener(reloaded::incrementAndGet);
+            final Predicate<CharSequence> pinned = userValidator.restrictionCheck("crackdamn");
+            assertThat(userValidator.isRestricted("crackhead"), is(true));
+
+            write(file, "damn");
+            dataReloader.reload(file);
+            assertThat(userValidator.isRestricted("crackhead"), is(false));
+            assertThat(userValidator.isRestricted("damnit"), is(true));
+            // handed out before the reload, keeps the former words
+            assertThat(pinned.test("crackdamn1"), is(true));
+            assertThat(pinned.test("cr_ackdamn"), is(false));
+
+            assertThat(dataReloader.getVersion(), is(1L));
+            assertThat(reloaded.get(), is(1));
+            assertThat(metricsRegistry.counter("reload.version").getCount(), is(1L));
+            assertThat(metricsRegistry.timer("reload.duration").getCount(), is(1L));
+        }
+    }
+
+    @Test
+    public void test_reload_failed() throws IOException {
+        final Path file = write(folder.newFile().toPath(), "fatmike");
+        final ReloadableUserProvider userProvider =
+                new ReloadableUserProvider(new CompactUserProvider(DataReloader.readEntries(file)));
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        try (DataReloader dataReloader = new DataReloader()) {
+            dataReloader.setMetricsRegistry(metricsRegistry);
+            dataReloader.watch(file, usernames -> userProvider.swap(new CompactUserProvider(usernames)));
+            Files.delete(file);
+            try {
+                dataReloader.reload(file);
+            } catch (IOException e) {
+                // expected
+            }
+            assertThat(userProvider.exists("fatmike"), is(true));
+            assertThat(dataReloader.getVersion(), is(0L));
+            assertThat(metricsRegistry.counter("reload.failures").getCount(), is(1L));
+        }
+    }
+
+    @Test
+    public void test_watch() throws IOException, InterruptedException {
+        final Path file = write(folder.newFile().toPath(), "fatmike");
+        final ReloadableUserProvider userProvider =
+                new ReloadableUserProvider(new CompactUserProvider(DataReloader.readEntries(file)));
+        try (DataReloader dataReloader = new DataReloader()) {
+            dataReloader.watch(file, usernames -> userProvider.swap(new CompactUserProvider(usernames)));
+
+            write(file, "fatmike,elhefe");
+            awaitVersion(dataReloader, 1);
+            assertThat(userProvider.exists("elhefe"), is(true));
+
+            // replaced with a rename, as editors save files
+            final Path replacement = write(folder.newFile().toPath(), "smelly");
+            Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            awaitVersion(dataReloader, dataReloader.getVersion() + 1);
+            assertThat(userProvider.exists("fatmike"), is(false));
+            assertThat(userProvider.exists("smelly"), is(true));
+        }
+    }
+
+    @Test
+    public void test_watch_failed() throws IOException, InterruptedException {
+        final Path file = write(folder.newFile().toPath(), "fatmike");
+        final List<LogRecord> logged = new CopyOnWriteArrayList<>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final Logger logger = Logger.getLogger(DataReloader.class.getName());
+        logger.addHandler(handler);
+        logger.setUseParentHandlers(false);
+        try (DataReloader dataReloader = new DataReloader()) {
+            final MetricsRegistry metricsRegistry = new MetricsRegistry();
+            dataReloader.setMetricsRegistry(metricsRegistry);
+            dataReloader.watch(file, usernames -> {
+                throw new IllegalStateException("Bad data");
+            });
+
+            write(file, "fatmike,elhefe");
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (logged.isEmpty() && System.nanoTime() - deadline < 0) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            // counted and logged, the watcher goes on
+            assertThat(logged.isEmpty(), is(false));
+            assertThat(logged.get(0).getLevel(), is(Level.WARNING));
+            assertThat(logged.get(0).getThrown().getMessage(), is("Bad data"));
+            assertThat(metricsRegistry.counter("reload.failures").getCount() >= 1, is(true));
+        } finally {
+            logger.removeHandler(handler);
+            logger.setUseParentHandlers(true);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_reload_notWatched() throws IOException {
+        try (DataReloader dataReloader = new DataReloader()) {
+            dataReloader.reload(folder.newFile().toPath());
+        }
+    }
+
+    private static IUserValidator validator(final Path file) throws IOException {
+        return new UserValidator(6, new HashSet<>(DataReloader.readEntries(file)));
+    }
+
+    private static Path write(final Path file, final String content) throws IOException {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitVersion(final DataReloader dataReloader, final long version)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (dataReloader.getVersion() < version && System.nanoTime() - deadline < 0) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        // a single write may raise events far enough apart to be reloaded twice
+        assertThat(dataReloader.getVersion() >= version, is(true));
+    }
+}
@@ -0,0 +1,138 @@
+package service;
+
+import data.CompactUserProvider;
+import data.IPrefixIndex;
+import data.IUserProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import validation.IUserValidator;
+import validation.UserValidator;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author victor.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class EnumeratingUsernameGeneratorTest {
+    // restrictionCheck() goes through the stubbed isRestricted()
+    @Mock(answer = Answers.CALLS_REAL_METHODS) private IUserValidator userValidator;
+    private static final List<String> PREFIX_SUGGESTIONS = Arrays.asList("fatmike5", "fatmike_5", "fatmike6",
+            "fatmike_6", "fatmike7", "fatmike_7", "fatmike8", "fatmike_8", "fatmike9", "fatmike_9", "fatmike10",
+            "fatmike_10", "f_atmike", "fa_tmike");
+
+    @Mock private IUserProvider userProvider;
+    @InjectMocks private EnumeratingUsernameGenerator usernameGenerator;
+
+    @Before
+    public void setup() {
+        // mocks are not reloadable, checks run on the mocks themselves
+        when(userProvider.snapshot()).thenReturn(userProvider);
+        when(userProvider.findTaken(anyCollection())).thenReturn(Collections.emptySet());
+        when(userValidator.isRestricted(anyString())).thenReturn(false);
+    }
+
+    @Test
+    public void test_generateSuggestions() {
+        List<String> suggestions = usernameGenerator.generateSuggestions("fatmike");
+        assertThat(suggestions.size(), is(14));
+        assertThat(suggestions.subList(0, 4), is(Arrays.asList("fatmike1", "fatmike_1", "fatmike2", "fatmike_2")));
+        // same input, same suggestions, in a single lookup
+        assertThat(usernameGenerator.generateSuggestions("fatmike"), is(suggestions));
+        verify(userProvider, times(2)).findTaken(anyCollection());
+    }
+
+    @Test
+    public void test_generateSuggestions_taken() {
+        when(userProvider.findTaken(anyCollection())).thenAnswer(invocation -> {
+            Set<String> taken = new HashSet<>(invocation.<Collection<String>>getArgument(0));
+            taken.remove("fatmike_7");
+            return taken;
+        });
+        assertThat(usernameGenerator.generateSuggestions("fatmike"), is(Collections.singletonList("fatmike_7")));
+        // the work is bounded even when nothing is available
+        verify(userProvider, atMost(4)).findTaken(anyCollection());
+    }
+
+    @Test
+    public void test_generateSuggestions_prefixIndex() {
+        // the number suffix variants are told apart by the index, only the ones with a '_' inside are looked up
+        when(userProvider.prefixIndex()).thenReturn(Optional.of(prefixIndex()));
+        List<String> suggestions = usernameGenerator.generateSuggestions("fatmike");
+        assertThat(suggestions, is(PREFIX_SUGGESTIONS));
+        verify(userProvider).findTaken(Arrays.asList("f_atmike", "fa_tmike"));
+        verify(userProvider, times(1)).findTaken(anyCollection());
+
+        // unless turned off
+        usernameGenerator.setPrefixQueries(false);
+        assertThat(usernameGenerator.generateSuggestions("fatmike").get(0), is("fatmike1"));
+    }
+
+    @Test
+    public void test_generateSuggestionsAsync_prefixIndex() {
+        when(userProvider.prefixIndex()).thenReturn(Optional.of(prefixIndex()));
+        assertThat(usernameGenerator.generateSuggestionsAsync("fatmike").join(), is(PREFIX_SUGGESTIONS));
+        verify(userProvider).findTaken(Arrays.asList("f_atmike", "fa_tmike"));
+        verify(userProvider, times(1)).findTaken(anyCollection());
+    }
+
+    private static IPrefixIndex prefixIndex() {
+        return new CompactUserProvider(Arrays.asList("fatmike", "fatmike1", "fatmike_1", "fatmike2", "fatmike_2",
+                "fatmike3", "fatmike_3", "fatmike4", "fatmike_4", "elhefe"));
+    }
+
+    @Test
+    public void test_generateSuggestions_snapshot() {
+        // made on the validator and User source of the check, not on the generator's own
+        final CheckSnapshot snapshot = CheckSnapshot.of(new UserValidator(6, Collections.singleton("mike1")),
+                new CompactUserProvider(Arrays.asList("fatmike", "fatmike_1")));
+        assertThat(usernameGenerator.generateSuggestions("fatmike", snapshot).subList(0, 2),
+                is(Arrays.asList("fatmike2", "fatmike_2")));
+        assertThat(usernameGenerator.generateSuggestionsAsync("fatmike", snapshot).join().subList(0, 2),
+                is(Arrays.asList("fatmike2", "fatmike_2")));
+        verify(userProvider, never()).findTaken(anyCollection());
+    }
+
+    @Test
+    public void test_generateSuggestionsAsync() {
+        when(userValidator.isRestricted("fatmike1")).thenReturn(true);
+        List<String> suggestions = usernameGenerator.generateSuggestionsAsync("fatmike").join();
+        assertThat(suggestions.size(), is(14));
+        assertThat(suggestions.get(0), is("fatmike_1"));
+    }
+
+    @Test
+    public void test_candidates() {
+        Set<String> seen = new HashSet<>();
+        Iterator<String> candidates = new UsernameCandidates("ab");
+        while (candidates.hasNext()) {
+            String candidate = candidates.next();
+            assertThat(candidate, seen.add(candidate), is(true));
+        }
+        assertThat(seen.contains("ab"), is(false));
+        assertThat(seen.containsAll(Arrays.asList("ab10", "ab_10", "a_b", "abAb", "abAb_3", "a_b4", "a_bAb", "abA_b_9")),
+                is(true));
+    }
+}
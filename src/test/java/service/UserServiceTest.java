@@ -1,23 +1,43 @@
 package service;
 
 import data.IUserProvider;
+import data.Outcome;
+import data.ReloadableUserProvider;
 import data.Result;
 import data.User;
+import data.UserProvider;
+import metrics.MetricsRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import validation.IUserValidator;
+import validation.ReloadableUserValidator;
+import validation.UserValidator;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -37,9 +57,12 @@ public class UserServiceTest {
     public void setup() {
         emptyUserOpt = Optional.empty();
         userOpt = Optional.of(new User("myUsername"));
+        // mocks are not reloadable, checks run on the mocks themselves
+        when(userProvider.snapshot()).thenReturn(userProvider);
+        when(userValidator.snapshot()).thenReturn(userValidator);
         when(userProvider.get(anyString())).thenReturn(emptyUserOpt);
         when(userValidator.isRestricted(anyString())).thenReturn(false);
-        when(usernameGenerator.generateSuggestions(anyString())).thenReturn(Arrays.asList("myUsername100", "myUsernameMyUsername", "my_Username", "myUsername_2017"));
+        when(usernameGenerator.generateSuggestions(anyString(), any(CheckSnapshot.class))).thenReturn(Arrays.asList("myUsername100", "myUsernameMyUsername", "my_Username", "myUsername_2017"));
     }
 
     @Test
@@ -66,11 +89,138 @@ public class UserServiceTest {
         assertThat(result.getMessg(), is("Provided username 'myUsername' contains a restricted word. Here is some suggestions."));
     }
 
+    @Test
+    public void test_checkUsernameAsync() {
+        when(usernameGenerator.generateSuggestionsAsync(anyString(), any(CheckSnapshot.class)))
+                .thenReturn(CompletableFuture.completedFuture(Arrays.asList("myUsername100", "my_Username")));
+
+        // username is available and not restricted
+        Result result = userService.checkUsernameAsync("myUsername").join();
+        assertThat(result.isSuccess(), is(true));
+        assertThat(result.getMessg(), is("Provided username 'myUsername' is available"));
+
+        // user already taken
+        when(userProvider.get(anyString())).thenReturn(userOpt);
+        result = userService.checkUsernameAsync("myUsername").join();
+        assertThat(result.isSuccess(), is(false));
+        assertThat(result.getSuggestedUsernames().size(), is(2));
+        assertThat(result.getMessg(), is("Provided username 'myUsername' is already taken. Here is some suggestions."));
+
+        // username is restricted
+        when(userProvider.get(anyString())).thenReturn(emptyUserOpt);
+        when(userValidator.isRestricted(anyString())).thenReturn(true);
+        result = userService.checkUsernameAsync("myUsername").join();
+        assertThat(result.isSuccess(), is(false));
+        assertThat(result.getSuggestedUsernames().size(), is(2));
+        assertThat(result.getMessg(), is("Provided username 'myUsername' contains a restricted word. Here is some suggestions."));
+    }
+
+    @Test
+    public void test_checkUsernames() {
+        when(userProvider.get("fatmike")).thenReturn(userOpt);
+        List<Result> results = userService.checkUsernames(Arrays.asList("myUsername", "fatmike", " myUsername "));
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(1).isSuccess(), is(false));
+        assertThat(results.get(1).getSuggestedUsernames().isEmpty(), is(false));
+        assertThat(results.get(2), is(not(sameInstance(results.get(0)))));
+        assertThat(results.get(2).getMessg(), is(results.get(0).getMessg()));
+        // repeated usernames are checked only once
+        verify(userValidator, times(1)).validateUsername("myUsername");
+    }
+
+    @Test
+    public void test_checkUsernames_threadPerCheck() {
+        try (ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            userService.setCheckExecutor(virtualThreads, 2);
+            when(userProvider.get("fatmike")).thenReturn(userOpt);
+            List<Result> results = userService.checkUsernames(Arrays.asList("myUsername", "fatmike", " myUsername "));
+            assertThat(results.size(), is(3));
+            assertThat(results.get(0).isSuccess(), is(true));
+            assertThat(results.get(1).getSuggestedUsernames().size(), is(4));
+            assertThat(results.get(2), is(not(sameInstance(results.get(0)))));
+            assertThat(results.get(2).getMessg(), is(results.get(0).getMessg()));
+            verify(userValidator, times(1)).validateUsername("myUsername");
+
+            // the blocking chain runs on a thread of its own
+            assertThat(userService.checkUsernameAsync("fatmike").join().getOutcome(), is(Outcome.TAKEN));
+            verify(usernameGenerator, times(2)).generateSuggestions(eq("fatmike"), any(CheckSnapshot.class));
+        }
+    }
+
+    @Test
+    public void test_checkUsernames_threadPerCheck_bounded() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        when(userProvider.get(anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return emptyUserOpt;
+        });
+        try (ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            userService.setCheckExecutor(virtualThreads, 2);
+            final List<String> usernames = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                usernames.add("myUsername" + i);
+            }
+            assertThat(userService.checkUsernames(usernames).size(), is(20));
+            // a thread per check, yet no more than 2 of them at a time
+            assertThat(maxInFlight.get() <= 2, is(true));
+        }
+    }
+
+    @Test
+    public void test_checkUsername_reloadedMidCheck() {
+        final ReloadableUserValidator reloadableValidator =
+                new ReloadableUserValidator(new UserValidator(6, Collections.emptySet()));
+        // the restricted words are reloaded while the username is looked up
+        final IUserProvider reloadingProvider = new UserProvider(Collections.emptySet()) {
+            @Override
+            public Optional<User> get(String identifier) {
+                reloadableValidator.swap(new UserValidator(6, Collections.singleton("fatmike")));
+                return super.get(identifier);
+            }
+        };
+        try (AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext()) {
+            ctx.registerBean(IUserValidator.class, () -> reloadableValidator);
+            ctx.registerBean(IUserProvider.class, () -> new ReloadableUserProvider(reloadingProvider));
+            ctx.registerBean(IUsernameGenerator.class, () -> usernameGenerator);
+            ctx.registerBean(UserService.class);
+            ctx.refresh();
+            final UserService reloadedUserService = ctx.getBean(UserService.class);
+
+            // checked on the words in place when it started
+            assertThat(reloadedUserService.checkUsername("fatmike").getOutcome(), is(Outcome.AVAILABLE));
+            assertThat(reloadedUserService.checkUsername("fatmike").getOutcome(), is(Outcome.RESTRICTED));
+        }
+    }
+
     @Test
     public void test_checkUsername_invalidUsername() {
         doThrow(RuntimeException.class).when(userValidator).validateUsername(anyString());
         Result result = userService.checkUsername("myUsername");
         assertThat(result.isSuccess(), is(false));
+        assertThat(result.getOutcome(), is(Outcome.INVALID));
         assertThat(result.getSuggestedUsernames().isEmpty(), is(true));
     }
+
+    @Test
+    public void test_checkUsername_metrics() {
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        userService.setMetricsRegistry(metricsRegistry);
+
+        assertThat(userService.checkUsername("myUsername").getOutcome(), is(Outcome.AVAILABLE));
+        when(userProvider.get(anyString())).thenReturn(userOpt);
+        assertThat(userService.checkUsername("myUsername").getOutcome(), is(Outcome.TAKEN));
+        assertThat(userService.checkUsername("myUsername").getOutcome(), is(Outcome.TAKEN));
+
+        assertThat(metricsRegistry.counter("check.outcome.available").getCount(), is(1L));
+        assertThat(metricsRegistry.counter("check.outcome.taken").getCount(), is(2L));
+        assertThat(metricsRegistry.counter("check.outcome.restricted").getCount(), is(0L));
+        assertThat(metricsRegistry.timer("check.validation").getCount(), is(3L));
+        assertThat(metricsRegistry.timer("check.availability").getCount(), is(3L));
+        assertThat(metricsRegistry.timer("check.restriction").getCount(), is(1L));
+        assertThat(metricsRegistry.timer("check.suggestions").getCount(), is(2L));
+    }
 }
@@ -1,20 +1,31 @@
 package service;
 
 import data.IUserProvider;
-import data.User;
+import data.IUsernameReservations;
 import org.hamcrest.core.Is;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import validation.IUserValidator;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -22,27 +33,83 @@ import static org.mockito.Mockito.when;
  */
 @RunWith(MockitoJUnitRunner.class)
 public class UsernameGeneratorTest {
-    @Mock private IUserValidator userValidator;
+    // restrictionCheck() goes through the stubbed isRestricted()
+    @Mock(answer = Answers.CALLS_REAL_METHODS) private IUserValidator userValidator;
     @Mock private IUserProvider userProvider;
+    @Mock private IUsernameReservations reservations;
     @InjectMocks private UsernameGenerator usernameGenerator;
-    private Optional<User> emptyUserOpt;
-    private Optional<User> userOpt;
+    private Answer<Set<String>> noneTaken;
+    private Answer<Set<String>> allTaken;
 
     @Before
     public void setup() {
-        emptyUserOpt = Optional.empty();
-        userOpt = Optional.of(new User("myUsername"));
-        when(userProvider.get(anyString())).thenReturn(emptyUserOpt);
-        when(userValidator.isRestricted(anyString())).thenReturn(false);
+        noneTaken = invocation -> Collections.emptySet();
+        allTaken = invocation -> new HashSet<>(invocation.<Collection<String>>getArgument(0));
+        // mocks are not reloadable, checks run on the mocks themselves
+        when(userProvider.snapshot()).thenReturn(userProvider);
+        when(userProvider.findTaken(anyCollection())).thenAnswer(noneTaken);
+        when(userValidator.isRestricted(any(CharSequence.class))).thenReturn(false);
     }
 
     @Test
     public void test_generateSuggestions() {
         assertThat(usernameGenerator.generateSuggestions("myUsername").size(), Is.is(14));
-        when(userProvider.get(anyString())).thenReturn(userOpt);
+        // all the candidates are looked up at once
+        verify(userProvider, times(1)).findTaken(anyCollection());
+        // restricted candidates are ruled out before looking them up
+        when(userValidator.isRestricted(any(CharSequence.class))).thenReturn(true);
         assertThat(usernameGenerator.generateSuggestions("wrongUsername").size(), Is.is(0));
-        when(userProvider.get(anyString())).thenReturn(emptyUserOpt);
-        when(userValidator.isRestricted(anyString())).thenReturn(true);
+        when(userValidator.isRestricted(any(CharSequence.class))).thenReturn(false);
+        when(userProvider.findTaken(anyCollection())).thenAnswer(allTaken);
         assertThat(usernameGenerator.generateSuggestions("wrongUsername").size(), Is.is(0));
     }
+
+    @Test
+    public void test_generateSuggestions_fanOut() {
+        try (ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            usernameGenerator.setLookupExecutor(virtualThreads, 4, 16);
+            assertThat(usernameGenerator.generateSuggestions("myUsername").size(), Is.is(14));
+            // the single batch is split up in 4 lookups running side by side
+            verify(userProvider, times(4)).findTaken(anyCollection());
+
+            when(userProvider.findTaken(anyCollection())).thenAnswer(allTaken);
+            assertThat(usernameGenerator.generateSuggestions("myUsername").size(), Is.is(0));
+        }
+    }
+
+    @Test
+    public void test_generateSuggestions_fanOut_bounded() {
+        try (ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            usernameGenerator.setLookupExecutor(virtualThreads, 4, 1);
+            assertThat(usernameGenerator.generateSuggestions("myUsername").size(), Is.is(14));
+            // a single thread to spare, the calling thread looks the other 3 parts up at once
+            verify(userProvider, times(2)).findTaken(anyCollection());
+        }
+    }
+
+    @Test
+    public void test_generateSuggestions_reserved() {
+        // everything is reserved by somebody else, nothing worth looking up
+        when(reservations.isReserved(any(CharSequence.class))).thenReturn(true);
+        assertThat(usernameGenerator.generateSuggestions("myUsername").size(), Is.is(0));
+        verify(userProvider, times(0)).findTaken(anyCollection());
+    }
+
+    @Test
+    public void test_generateSuggestions_seeded() {
+        usernameGenerator.setRandomSource(IRandomSource.seeded(2017L));
+        final List<String> suggestions = usernameGenerator.generateSuggestions("myUsername");
+        usernameGenerator.setRandomSource(IRandomSource.seeded(2017L));
+        assertThat(usernameGenerator.generateSuggestions("myUsername"), Is.is(suggestions));
+    }
+
+    @Test
+    public void test_generateSuggestionsAsync() {
+        assertThat(usernameGenerator.generateSuggestionsAsync("myUsername").join().size(), Is.is(14));
+        when(userValidator.isRestricted(any(CharSequence.class))).thenReturn(true);
+        assertThat(usernameGenerator.generateSuggestionsAsync("wrongUsername").join().size(), Is.is(0));
+        when(userValidator.isRestricted(any(CharSequence.class))).thenReturn(false);
+        when(userProvider.findTaken(anyCollection())).thenAnswer(allTaken);
+        assertThat(usernameGenerator.generateSuggestionsAsync("wrongUsername").join().size(), Is.is(0));
+    }
 }
@@ -0,0 +1,36 @@
+package spring;
+
+import data.Outcome;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import service.BulkUsernameChecker;
+import service.IUserService;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+
+/**
+ * @author victor.
+ */
+public class FastStartTest {
+    @Test
+    public void test_context_sameAsAppConfig() throws IOException {
+        final List<String> usernames = Arrays.asList("fatmike", "myUsername", "crackhead", "FatMike", "short");
+        try (GenericApplicationContext fast = FastStart.context();
+             AnnotationConfigApplicationContext standard = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            final IUserService userService = fast.getBean(IUserService.class);
+            assertThat(userService.checkUsername("fatmike").getOutcome(), is(Outcome.TAKEN));
+            for (String username : usernames) {
+                assertThat(username, userService.checkUsername(username).getOutcome(),
+                        is(standard.getBean(IUserService.class).checkUsername(username).getOutcome()));
+            }
+            assertThat(fast.getBean(BulkUsernameChecker.class), notNullValue());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package validation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class IncrementalRestrictionCheckTest {
+    @Test
+    public void test_restrictionCheck() {
+        UserValidator validator = new UserValidator(6, new HashSet<>(Arrays.asList("crack", "damn")));
+        Predicate<CharSequence> restricted = validator.restrictionCheck("madam");
+        assertThat(restricted.test("madam_2"), is(false));
+        assertThat(restricted.test("madamMadam"), is(false));
+        // spans the base and the suffix
+        assertThat(restricted.test("madamn"), is(true));
+        assertThat(restricted.test("ma_damn"), is(true));
+        assertThat(restricted.test("mada_mn"), is(false));
+        assertThat(restricted.test("crack"), is(true));
+
+        restricted = validator.restrictionCheck("crackhead");
+        assertThat(restricted.test("crackhead1"), is(true));
+        assertThat(restricted.test("crack_head"), is(true));
+        assertThat(restricted.test("cr_ackhead"), is(false));
+    }
+
+    @Test
+    public void test_restrictionCheck_canonical() {
+        UserValidator validator = new UserValidator(6, new HashSet<>(Arrays.asList("crack", "damn")), true);
+        Predicate<CharSequence> restricted = validator.restrictionCheck("MyD4m");
+        assertThat(restricted.test("MyD4mN"), is(true));
+        assertThat(restricted.test("MyD4m_N"), is(false));
+        // not canonicalized char by char
+        assertThat(restricted.test("MyD4mｎ"), is(true));
+        assertThat(validator.restrictionCheck("ｍｙdamn").test("ｍｙdamn1"), is(true));
+        assertThat(validator.restrictionCheck("ｍｙdam").test("ｍｙdam1"), is(false));
+    }
+
+    @Test
+    public void test_restrictionCheck_sameAsRescan() {
+        // small alphabet so that words span the base and the edits
+        Random random = new Random(2017);
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            words.add(randomText(random, 2 + random.nextInt(3)));
+        }
+        for (boolean canonical : new boolean[] {false, true}) {
+            UserValidator validator = new UserValidator(6, words, canonical);
+            for (int i = 0; i < 200; i++) {
+                String base = randomText(random, random.nextInt(10));
+                Predicate<CharSequence> restricted = validator.restrictionCheck(base);
+                for (int j = 0; j < 20; j++) {
+                    StringBuilder candidate = new StringBuilder(base);
+                    candidate.insert(random.nextInt(base.length() + 1), randomText(random, 1 + random.nextInt(3)));
+                    String text = candidate.toString();
+                    assertThat(text, restricted.test(text), is(validator.isRestricted(text)));
+                }
+            }
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append("abcd3_".charAt(random.nextInt(6)));
+        }
+        return sb.toString();
+    }
+}
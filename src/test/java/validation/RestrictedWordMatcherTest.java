@@ -0,0 +1,59 @@
+package validation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class RestrictedWordMatcherTest {
+    @Test
+    public void test_matches() {
+        RestrictedWordMatcher matcher = new RestrictedWordMatcher(Arrays.asList("cannabis", "abuse", "crack", "damn"));
+        assertThat(matcher.matches("myUsername"), is(false));
+        assertThat(matcher.matches("crackhead"), is(true));
+        assertThat(matcher.matches("mycannabis"), is(true));
+        assertThat(matcher.matches("cannabuse"), is(true));
+        assertThat(matcher.matches("cracdamn"), is(true));
+        assertThat(matcher.matches("crac_k"), is(false));
+        assertThat(matcher.matches(""), is(false));
+    }
+
+    @Test
+    public void test_matches_emptyWords() {
+        assertThat(new RestrictedWordMatcher(Collections.emptySet()).matches("myUsername"), is(false));
+        assertThat(new RestrictedWordMatcher(Collections.singleton("")).matches("myUsername"), is(true));
+    }
+
+    @Test
+    public void test_matches_sameAsContains() {
+        // small alphabet so that overlapping words and failure transitions are exercised
+        Random random = new Random(42);
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            words.add(randomText(random, 2 + random.nextInt(4)));
+        }
+        RestrictedWordMatcher matcher = new RestrictedWordMatcher(words);
+
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, random.nextInt(16));
+            assertThat(text, matcher.matches(text), is(words.stream().anyMatch(text::contains)));
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+}
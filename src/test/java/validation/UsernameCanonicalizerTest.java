@@ -0,0 +1,53 @@
+package validation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author victor.
+ */
+public class UsernameCanonicalizerTest {
+    @Test
+    public void test_canonicalize() {
+        assertThat(UsernameCanonicalizer.canonicalize("fatmike"), is("fatmike"));
+        assertThat(UsernameCanonicalizer.canonicalize("FatMike"), is("fatmike"));
+        assertThat(UsernameCanonicalizer.canonicalize("fatm1ke"), is("fatmike"));
+        assertThat(UsernameCanonicalizer.canonicalize("F@TM1K3"), is("fatmike"));
+        assertThat(UsernameCanonicalizer.canonicalize("fat_mike"), is("fat_mike"));
+        assertThat(UsernameCanonicalizer.canonicalize(""), is(""));
+    }
+
+    @Test
+    public void test_canonicalize_unicode() {
+        // fullwidth latin
+        assertThat(UsernameCanonicalizer.canonicalize("\uff26\uff41\uff54mike"), is("fatmike"));
+        // cyrillic a, greek omicron
+        assertThat(UsernameCanonicalizer.canonicalize("f\u0430tmike"), is("fatmike"));
+        assertThat(UsernameCanonicalizer.canonicalize("elhef\u039f"), is("elhefo"));
+        // dotless i
+        assertThat(UsernameCanonicalizer.canonicalize("fatm\u0131ke"), is("fatmike"));
+        // ligature
+        assertThat(UsernameCanonicalizer.canonicalize("\ufb01sh"), is("fish"));
+        // no latin lookalike, kept as folded
+        assertThat(UsernameCanonicalizer.canonicalize("J\u00dcRGEN"), is("j\u00fcrgen"));
+    }
+
+    @Test
+    public void test_isRestricted_canonical() {
+        UserValidator validator = new UserValidator(6, new HashSet<>(Arrays.asList("crack", "Damn")), true);
+        assertThat(validator.isRestricted("crackhead"), is(true));
+        assertThat(validator.isRestricted("CR4CKhead"), is(true));
+        assertThat(validator.isRestricted("myd@mn"), is(true));
+        assertThat(validator.isRestricted("\u0441rackhead"), is(true));
+        assertThat(validator.isRestricted("myUsername"), is(false));
+
+        UserValidator exact = new UserValidator(6, new HashSet<>(Arrays.asList("crack", "Damn")));
+        assertThat(exact.isRestricted("CR4CKhead"), is(false));
+        assertThat(exact.isRestricted("myDamn"), is(true));
+    }
+}